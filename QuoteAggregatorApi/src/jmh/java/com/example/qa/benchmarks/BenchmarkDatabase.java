@@ -0,0 +1,126 @@
+package com.example.qa.benchmarks;
+
+import com.example.qa.entities.Quote;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory H2 in PostgreSQL mode with the same tables Hibernate generates for the entities, so the
+ * repositories' native SQL runs unchanged. Every instance gets its own database and counts the
+ * statements sent to it, so benchmarks can report round trips per operation.
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+    private static final String[] SCHEMA = {
+            """
+            CREATE TABLE quotes (
+                id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                quote_text VARCHAR(255),
+                author VARCHAR(255),
+                category VARCHAR(255),
+                source VARCHAR(255),
+                image VARCHAR(255),
+                character_direction VARCHAR(255),
+                character VARCHAR(255),
+                votes INTEGER,
+                content_hash VARCHAR(64) UNIQUE
+            )""",
+            "CREATE INDEX idx_quotes_votes_id ON quotes (votes, id)",
+            "CREATE INDEX idx_quotes_source_votes_id ON quotes (source, votes, id)",
+            "CREATE INDEX idx_quotes_source_id ON quotes (source, id)",
+            "CREATE INDEX idx_quotes_character_votes_id ON quotes (character, votes, id)",
+            "CREATE INDEX idx_quotes_character_id ON quotes (character, id)",
+            "CREATE INDEX idx_quotes_category_votes_id ON quotes (category, votes, id)",
+            "CREATE INDEX idx_quotes_category_id ON quotes (category, id)",
+            """
+            CREATE TABLE votes (
+                id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+                quote_id BIGINT NOT NULL REFERENCES quotes (id),
+                user_id VARCHAR(255) NOT NULL,
+                CONSTRAINT uk_votes_user_quote UNIQUE (user_id, quote_id)
+            )"""
+    };
+
+    private final HikariDataSource dataSource;
+    private final DataSource countingDataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final AtomicLong statements = new AtomicLong();
+
+    public BenchmarkDatabase(String name, int poolSize) {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:" + name + System.nanoTime()
+                + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;NON_KEYWORDS=CHARACTER,VALUE;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setMaximumPoolSize(poolSize);
+        countingDataSource = new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return countingStatements(super.getConnection());
+            }
+        };
+        jdbcTemplate = new JdbcTemplate(countingDataSource);
+        for (String statement : SCHEMA) {
+            jdbcTemplate.execute(statement);
+        }
+    }
+
+    public DataSource dataSource() {
+        return countingDataSource;
+    }
+
+    /**
+     * Statements prepared or executed so far, one per round trip (batches count once).
+     */
+    public long statements() {
+        return statements.get();
+    }
+
+    public JdbcTemplate jdbcTemplate() {
+        return jdbcTemplate;
+    }
+
+    /**
+     * Inserts {@code count} quotes alternating between the two sources and returns the first id.
+     */
+    public long insertQuotes(int count) {
+        for (int from = 0; from < count; from += 10_000) {
+            List<Object[]> rows = new ArrayList<>();
+            for (int i = from; i < Math.min(from + 10_000, count); i++) {
+                rows.add(i % 2 == 0
+                        ? new Object[]{"Simpsons quote " + i, null, null, "simpsons", "Character " + (i % 50), 0, Quote.contentHash("Simpsons quote " + i)}
+                        : new Object[]{"Ninjas quote " + i, "Author " + (i % 500), "category" + (i % 20), "ninjas", null, 0, Quote.contentHash("Ninjas quote " + i)});
+            }
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO quotes (quote_text, author, category, source, character, votes, content_hash) VALUES (?, ?, ?, ?, ?, ?, ?)", rows);
+        }
+        return jdbcTemplate.queryForObject("SELECT MIN(id) FROM quotes", Long.class);
+    }
+
+    private Connection countingStatements(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement") || method.getName().equals("createStatement")) {
+                        statements.incrementAndGet();
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    @Override
+    public void close() {
+        dataSource.close();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.qa.benchmarks;
+
+import com.example.qa.entities.Quote;
+import com.example.qa.services.QuoteLeaderboard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code /quotes/top} served by the ranking query the repository runs (ORDER BY votes DESC, id ASC,
+ * a mix of directions the (votes, id) index does not match, mapped to entities) against
+ * {@link QuoteLeaderboard#top}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class LeaderboardBenchmark {
+    private static final String TOP_QUOTES = "SELECT * FROM quotes ORDER BY votes DESC, id ASC LIMIT ?";
+
+    @Param({"10000", "100000", "1000000"})
+    public int quotes;
+
+    @Param({"10", "100"})
+    public int limit;
+
+    private BenchmarkDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private QuoteLeaderboard leaderboard;
+    private final BeanPropertyRowMapper<Quote> rowMapper = new BeanPropertyRowMapper<>(Quote.class);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase("leaderboard", 4);
+        jdbcTemplate = database.jdbcTemplate();
+        database.insertQuotes(quotes);
+        // Scatter the counts so the sort has real work to do and ties are common
+        jdbcTemplate.update("UPDATE quotes SET votes = MOD(id * 7919, 1000)");
+        leaderboard = new QuoteLeaderboard(1000);
+        leaderboard.merge(jdbcTemplate.query(TOP_QUOTES, rowMapper, leaderboard.capacity()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Quote> repositoryQuery() {
+        return jdbcTemplate.query(TOP_QUOTES, rowMapper, limit);
+    }
+
+    @Benchmark
+    public List<Quote> inMemoryLeaderboard() {
+        return leaderboard.top(limit);
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.qa.benchmarks;
+
+import com.example.qa.entities.Quote;
+import com.example.qa.repositories.QuoteJdbcRepository;
+import com.example.qa.repositories.QuoteOrder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A page of {@code /quotes} deep into a table of {@code quotes} quotes: the keyset query the repository
+ * runs, which seeks to the last quote of the previous page, against LIMIT/OFFSET, which reads and
+ * discards every row before the page. Keyset time should not depend on {@code page}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class PaginationBenchmark {
+    private static final int SIZE = 20;
+
+    // In-memory H2 needs most of the heap for two million; -p quotes=500000 fits smaller machines
+    @Param({"2000000"})
+    public int quotes;
+
+    @Param({"1", "100", "10000"})
+    public int page;
+
+    @Param({"VOTES", "RECENT"})
+    public QuoteOrder order;
+
+    private BenchmarkDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private QuoteJdbcRepository repository;
+    private Quote after;
+    private final BeanPropertyRowMapper<Quote> rowMapper = new BeanPropertyRowMapper<>(Quote.class);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase("pagination", 1);
+        jdbcTemplate = database.jdbcTemplate();
+        long first = database.insertQuotes(quotes);
+        // Most quotes have few votes, so the votes order has long runs of ties to page through. In
+        // chunks, since H2 takes minutes to commit one update of every row.
+        for (long from = first; from < first + quotes; from += 10_000) {
+            jdbcTemplate.update("UPDATE quotes SET votes = MOD(id * 7919, 100) * MOD(id * 7919, 100) / 1000 WHERE id >= ? AND id < ?",
+                    from, from + 10_000);
+        }
+        repository = new QuoteJdbcRepository(jdbcTemplate, new SimpleMeterRegistry());
+        after = page == 1 ? null : jdbcTemplate.queryForObject("SELECT votes, id FROM quotes" + orderBy() + " LIMIT 1 OFFSET ?",
+                (row, rowNumber) -> Quote.builder().votes(row.getInt("votes")).id(row.getLong("id")).build(), (page - 1) * SIZE - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public List<Quote> keyset() {
+        return repository.findPage(null, null, null, order, after, SIZE);
+    }
+
+    @Benchmark
+    public List<Quote> offset() {
+        return jdbcTemplate.query("SELECT * FROM quotes" + orderBy() + " LIMIT ? OFFSET ?", rowMapper, SIZE, (page - 1) * SIZE);
+    }
+
+    private String orderBy() {
+        return order == QuoteOrder.VOTES ? " ORDER BY votes DESC, id DESC" : " ORDER BY id DESC";
+    }
+}
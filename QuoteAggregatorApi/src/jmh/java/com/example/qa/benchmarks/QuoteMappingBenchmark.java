@@ -0,0 +1,90 @@
+package com.example.qa.benchmarks;
+
+import com.example.qa.entities.Quote;
+import com.example.qa.models.NinjasModel;
+import com.example.qa.models.SimpsonsModel;
+import com.example.qa.services.NinjasQuoteSource;
+import com.example.qa.services.SimpsonsQuoteSource;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * What a fetched upstream response costs before it reaches the database: decoding the JSON body,
+ * mapping it to quotes (which hashes each text) and dropping repeats within the page by content
+ * hash, as {@code /quotes/batch} and the character cache do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class QuoteMappingBenchmark {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final byte[] ninjasPage = """
+            [{"quote":"Be yourself; everyone else is already taken.","author":"Oscar Wilde","category":"inspirational"}]"""
+            .getBytes(StandardCharsets.UTF_8);
+
+    @State(Scope.Benchmark)
+    public static class SimpsonsPage {
+        /**
+         * Quotes per page; the upstream repeats quotes, so about one in five is a duplicate.
+         */
+        @Param({"1", "10", "50"})
+        public int pageSize;
+
+        private byte[] json;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            StringBuilder page = new StringBuilder("[");
+            for (int i = 0; i < pageSize; i++) {
+                page.append(i == 0 ? "" : ",").append("""
+                        {"quote":"Quote number %d, which is about as long as the ones the Simpsons API returns.",\
+                        "character":"Character %d","image":"https://cdn.glitch.com/image-%d.png","characterDirection":"Right"}"""
+                        .formatted(i - i / 5, i % 7, i % 7));
+            }
+            json = page.append("]").toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public List<Quote> simpsonsPage(SimpsonsPage page) throws IOException {
+        SimpsonsModel[] models = objectMapper.readValue(page.json, SimpsonsModel[].class);
+        return List.copyOf(Arrays.stream(models)
+                .map(SimpsonsQuoteSource::toQuote)
+                .collect(Collectors.toMap(Quote::getContentHash, quote -> quote, (first, duplicate) -> first, LinkedHashMap::new))
+                .values());
+    }
+
+    @Benchmark
+    public Quote ninjasQuote() throws IOException {
+        return NinjasQuoteSource.toQuote(objectMapper.readValue(ninjasPage, NinjasModel[].class)[0]);
+    }
+
+    @Benchmark
+    public String contentHash() {
+        return Quote.contentHash("Be yourself; everyone else is already taken.");
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.qa.benchmarks;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.repositories.QuoteJdbcRepository;
+import com.example.qa.services.KnownQuoteCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Storing a quote fetched from upstream, which is usually one the table already holds: the old
+ * path (a text lookup, an insert when missing, a second text lookup), the content-hash upsert, and
+ * the upsert behind {@link KnownQuoteCache}. Each mode prints its database round trips per call when
+ * it finishes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class QuotePersistBenchmark {
+    private static final String SELECT_BY_TEXT = "SELECT * FROM quotes WHERE quote_text = ?";
+    private static final String INSERT = "INSERT INTO quotes (quote_text, source, votes) VALUES (?, ?, 0)";
+
+    @Param({"100000"})
+    public int quotes;
+
+    /**
+     * Share of fetched quotes that are not stored yet.
+     */
+    @Param({"0.05"})
+    public double newRatio;
+
+    private BenchmarkDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private QuoteJdbcRepository quoteJdbcRepository;
+    private KnownQuoteCache knownQuotes;
+    private final BeanPropertyRowMapper<Quote> rowMapper = new BeanPropertyRowMapper<>(Quote.class);
+    private final AtomicLong calls = new AtomicLong();
+    private long statementsBefore;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase("persist", 4);
+        jdbcTemplate = database.jdbcTemplate();
+        database.insertQuotes(quotes);
+        quoteJdbcRepository = new QuoteJdbcRepository(jdbcTemplate, new SimpleMeterRegistry());
+        QuoteAggregatorProperties.Dedupe dedupe = new QuoteAggregatorProperties.Dedupe();
+        knownQuotes = new KnownQuoteCache(dedupe, new SimpleMeterRegistry());
+        statementsBefore = database.statements();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%n%.2f round trips per call%n", (double) (database.statements() - statementsBefore) / calls.get());
+        database.close();
+    }
+
+    @Benchmark
+    public Optional<Quote> textLookups() {
+        calls.incrementAndGet();
+        String text = fetchedText();
+        if (jdbcTemplate.query(SELECT_BY_TEXT, rowMapper, text).isEmpty()) {
+            jdbcTemplate.update(INSERT, text, "ninjas");
+        }
+        return jdbcTemplate.query(SELECT_BY_TEXT, rowMapper, text).stream().findFirst();
+    }
+
+    @Benchmark
+    public Quote hashUpsert() {
+        calls.incrementAndGet();
+        return quoteJdbcRepository.upsert(fetched());
+    }
+
+    @Benchmark
+    public Quote cachedHashUpsert() {
+        calls.incrementAndGet();
+        Quote quote = fetched();
+        return knownQuotes.get(quote.getContentHash()).orElseGet(() -> {
+            Quote upserted = quoteJdbcRepository.upsert(quote);
+            knownQuotes.put(upserted);
+            return upserted;
+        });
+    }
+
+    /**
+     * Mostly quotes among the stored ones (upstream catalogues are small and repeat), sometimes
+     * one never seen before.
+     */
+    private String fetchedText() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < newRatio) {
+            return "New quote " + random.nextLong();
+        }
+        int i = random.nextInt(quotes);
+        return (i % 2 == 0 ? "Simpsons quote " : "Ninjas quote ") + i;
+    }
+
+    private Quote fetched() {
+        String text = fetchedText();
+        return Quote.builder().quoteText(text).source("ninjas").votes(0).contentHash(Quote.contentHash(text)).build();
+    }
+}
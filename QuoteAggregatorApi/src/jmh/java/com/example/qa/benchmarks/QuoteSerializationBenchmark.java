@@ -0,0 +1,74 @@
+package com.example.qa.benchmarks;
+
+import com.example.qa.entities.Quote;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing quote lists as response bodies with an object mapper configured the way Spring Boot
+ * configures its own: a JSON array, as {@code /quotes/top} and {@code /quotes/search} answer, and
+ * one document per line, as {@code /quotes/batch} streams them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class QuoteSerializationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int quotes;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectWriter quoteWriter = objectMapper.writerFor(Quote.class);
+    private List<Quote> list;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        list = new ArrayList<>();
+        for (int i = 0; i < quotes; i++) {
+            String text = "Quote number " + i + ", which is about as long as the ones the upstreams return.";
+            list.add(i % 2 == 0
+                    ? Quote.builder().id((long) i).quoteText(text).character("Character " + i % 50).source("simpsons")
+                    .image("https://cdn.glitch.com/image-" + i % 50 + ".png").characterDirection("Right").votes(i % 1000)
+                    .contentHash(Quote.contentHash(text)).build()
+                    : Quote.builder().id((long) i).quoteText(text).author("Author " + i % 500).category("category" + i % 20)
+                    .source("ninjas").votes(i % 1000).contentHash(Quote.contentHash(text)).build());
+        }
+    }
+
+    @Benchmark
+    public byte[] jsonArray() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(list);
+    }
+
+    @Benchmark
+    public byte[] ndjson() throws JsonProcessingException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (Quote quote : list) {
+            body.writeBytes(quoteWriter.writeValueAsBytes(quote));
+            body.write('\n');
+        }
+        return body.toByteArray();
+    }
+}
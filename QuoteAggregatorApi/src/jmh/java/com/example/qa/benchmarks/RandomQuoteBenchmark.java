@@ -0,0 +1,98 @@
+package com.example.qa.benchmarks;
+
+import com.example.qa.entities.Quote;
+import com.example.qa.repositories.QuoteJdbcRepository;
+import com.example.qa.services.LocalQuoteCorpus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A random stored quote of one source: {@code ORDER BY RANDOM()} over the table, and a sample from
+ * {@link LocalQuoteCorpus} followed by a primary-key read. Setup prints the heap the corpus takes
+ * for the stored quotes, both as counted by the corpus and as measured around loading it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class RandomQuoteBenchmark {
+
+    @Param({"100000"})
+    public int quotes;
+
+    private BenchmarkDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private QuoteJdbcRepository quoteJdbcRepository;
+    private LocalQuoteCorpus corpus;
+    private final BeanPropertyRowMapper<Quote> rowMapper = new BeanPropertyRowMapper<>(Quote.class);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase("random", 4);
+        jdbcTemplate = database.jdbcTemplate();
+        database.insertQuotes(quotes);
+        quoteJdbcRepository = new QuoteJdbcRepository(jdbcTemplate, new SimpleMeterRegistry());
+
+        // Read the rows first, so the heap delta covers the corpus and not the database's caches
+        List<Object[]> rows = new ArrayList<>(quotes);
+        quoteJdbcRepository.forEachStoredAfter(0, quote -> rows.add(new Object[]{quote.getId(), quote.getSource(), quote.getCharacter()}));
+        long before = usedHeap();
+        corpus = new LocalQuoteCorpus(new SimpleMeterRegistry());
+        rows.forEach(row -> corpus.add((Long) row[0], (String) row[1], (String) row[2]));
+        long measured = usedHeap() - before;
+        System.out.printf("%ncorpus of %,d quotes: %,d bytes counted, %,d bytes measured (%.1f MB per million quotes)%n",
+                quotes, corpus.memoryBytes(), measured, measured * 1_000_000.0 / quotes / (1 << 20));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Optional<Quote> orderByRandom() {
+        return jdbcTemplate.query("SELECT * FROM quotes WHERE source = ? ORDER BY RANDOM() LIMIT 1", rowMapper, "simpsons")
+                .stream().findFirst();
+    }
+
+    @Benchmark
+    public Optional<Quote> corpusSample() {
+        return quoteJdbcRepository.findById(corpus.sample("simpsons").getAsLong());
+    }
+
+    @Benchmark
+    public Optional<Quote> corpusSampleByCharacter() {
+        return quoteJdbcRepository.findById(corpus.sampleByCharacter("simpsons", "character 8").getAsLong());
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
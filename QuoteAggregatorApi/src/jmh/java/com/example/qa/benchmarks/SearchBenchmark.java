@@ -0,0 +1,118 @@
+package com.example.qa.benchmarks;
+
+import com.example.qa.entities.Quote;
+import com.example.qa.services.QuoteSearchIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query latency of {@link QuoteSearchIndex} over synthetic quotes of 8 to 20 words. Words are drawn
+ * Zipf-like from a 50,000-word vocabulary, so a few words are in most quotes and most words are
+ * rare, as in real text. Setup prints the heap the index takes, measured around building it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class SearchBenchmark {
+    private static final int VOCABULARY = 50_000;
+
+    @Param({"1000000"})
+    public int quotes;
+
+    private QuoteSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        long before = usedHeap();
+        index = new QuoteSearchIndex(2);
+        for (int id = 1; id <= quotes; id++) {
+            StringBuilder text = new StringBuilder();
+            for (int word = 8 + random.nextInt(13); word > 0; word--) {
+                text.append(word(zipf(random))).append(' ');
+            }
+            index.add(Quote.builder().id((long) id).quoteText(text.toString()).author("Author " + word(random.nextInt(2_000)))
+                    .category(word(random.nextInt(30))).votes(random.nextInt(100)).build());
+        }
+        index.trimToSize();
+        long measured = usedHeap() - before;
+        System.out.printf("%nindex of %,d quotes, %,d terms: %,d bytes of postings counted, %,d bytes measured (%.1f MB per million quotes)%n",
+                index.size(), index.terms(), index.postingBytes(), measured, measured * 1_000_000.0 / quotes / (1 << 20));
+    }
+
+    /**
+     * A word in roughly one quote in six.
+     */
+    @Benchmark
+    public List<Long> commonWord() {
+        return index.search(word(5), 10);
+    }
+
+    /**
+     * A word in a few dozen quotes.
+     */
+    @Benchmark
+    public List<Long> rareWord() {
+        return index.search(word(20_000), 10);
+    }
+
+    @Benchmark
+    public List<Long> twoCommonWords() {
+        return index.search(word(5) + " " + word(12), 10);
+    }
+
+    @Benchmark
+    public List<Long> commonAndRareWord() {
+        return index.search(word(3) + " " + word(20_000), 10);
+    }
+
+    /**
+     * A three-letter prefix, which merges the posting lists of about 75 words, one of them common.
+     */
+    @Benchmark
+    public List<Long> prefix() {
+        return index.search("wbc*", 10);
+    }
+
+    // Words are base-26 spellings of their rank: 0 is "wa", 1 is "wb", ...
+    private static String word(int rank) {
+        StringBuilder word = new StringBuilder("w");
+        do {
+            word.append((char) ('a' + rank % 26));
+            rank /= 26;
+        } while (rank > 0);
+        return word.toString();
+    }
+
+    // Rank r is drawn with probability proportional to 1 / (r + 1)
+    private static int zipf(Random random) {
+        return (int) Math.min(Math.exp(random.nextDouble() * Math.log(VOCABULARY + 1)) - 1, VOCABULARY - 1);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
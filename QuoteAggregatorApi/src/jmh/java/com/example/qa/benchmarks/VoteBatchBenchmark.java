@@ -0,0 +1,90 @@
+package com.example.qa.benchmarks;
+
+import com.example.qa.repositories.VoteJdbcRepository;
+import com.example.qa.repositories.VoteJdbcRepository.NewVote;
+import com.example.qa.repositories.VoteJdbcRepository.VoteOutcome;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replaying 10,000 queued votes over 100 quotes: one {@link VoteJdbcRepository#castVote} per vote,
+ * as {@code POST /quotes/{id}/vote} runs it, against {@link VoteJdbcRepository#castVotes} in
+ * batches of 500, as {@code POST /quotes/votes:batch} runs it. Throughput is in votes per second;
+ * every invocation replays a fresh set of voters, so every vote is accepted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class VoteBatchBenchmark {
+    private static final int VOTES = 10_000;
+    private static final int BATCH_SIZE = 500;
+    private static final int QUOTES = 100;
+
+    private BenchmarkDatabase database;
+    private VoteJdbcRepository voteJdbcRepository;
+    private TransactionTemplate transactionTemplate;
+    private long firstQuoteId;
+    private int round;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase("vote-batches", 1);
+        voteJdbcRepository = new VoteJdbcRepository(database.jdbcTemplate());
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database.dataSource()));
+        firstQuoteId = database.insertQuotes(QUOTES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VOTES)
+    public void oneAtATime(Blackhole blackhole) {
+        for (NewVote vote : nextVotes()) {
+            blackhole.consume(transactionTemplate.execute(status -> voteJdbcRepository.castVote(vote.quoteId(), vote.userId())));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VOTES)
+    public void batchesOf500(Blackhole blackhole) {
+        List<NewVote> votes = nextVotes();
+        for (int from = 0; from < VOTES; from += BATCH_SIZE) {
+            List<NewVote> batch = votes.subList(from, from + BATCH_SIZE);
+            List<VoteOutcome> outcomes = transactionTemplate.execute(status -> voteJdbcRepository.castVotes(batch));
+            blackhole.consume(outcomes);
+        }
+    }
+
+    private List<NewVote> nextVotes() {
+        int voterRound = round++;
+        List<NewVote> votes = new ArrayList<>(VOTES);
+        for (int i = 0; i < VOTES; i++) {
+            votes.add(new NewVote(firstQuoteId + i % QUOTES, "user" + voterRound + "-" + i / QUOTES + "@example.com"));
+        }
+        return votes;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.qa.benchmarks;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.repositories.VoteJdbcRepository;
+import com.example.qa.services.VoteWriteBehindBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Vote throughput with many distinct voters contending on a few hot quotes: the original
+ * read-modify-write sequence (find quote, exists check, insert vote, save absolute count, each in its
+ * own auto-committed statement as the JPA calls ran) against {@link VoteJdbcRepository#castVote}, and
+ * against the write-behind mode of {@code voteForQuote}, where {@link VoteWriteBehindBuffer} queues
+ * the vote and its flusher writes batches. The queue is allowed to block for long, so that mode
+ * measures how fast votes are written, not how fast they can be queued. The trial teardown prints
+ * how many increments the read-modify-write path lost.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+public class VoteBenchmark {
+
+    @Param({"1", "10"})
+    public int hotQuotes;
+
+    private BenchmarkDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private VoteJdbcRepository voteJdbcRepository;
+    private TransactionTemplate transactionTemplate;
+    private VoteWriteBehindBuffer writeBehind;
+    private long firstQuoteId;
+    private final AtomicLong voters = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        database = new BenchmarkDatabase("votes", 16);
+        jdbcTemplate = database.jdbcTemplate();
+        voteJdbcRepository = new VoteJdbcRepository(jdbcTemplate);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(database.dataSource()));
+        firstQuoteId = database.insertQuotes(100);
+        QuoteAggregatorProperties properties = new QuoteAggregatorProperties();
+        properties.getWriteBehind().setEnabled(true);
+        properties.getWriteBehind().setEnqueueTimeout(Duration.ofSeconds(30));
+        // Batches commit in one transaction, as the @Transactional proxy makes them in the service
+        VoteJdbcRepository transactional = new VoteJdbcRepository(jdbcTemplate) {
+            @Override
+            public List<NewVote> applyVoteBatch(List<NewVote> votes) {
+                return transactionTemplate.execute(status -> super.applyVoteBatch(votes));
+            }
+        };
+        writeBehind = new VoteWriteBehindBuffer(transactional, properties, new SimpleMeterRegistry());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        writeBehind.flush();
+        long recordedVotes = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM votes", Long.class);
+        long countedVotes = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(votes), 0) FROM quotes", Long.class);
+        System.out.printf("%nvotes recorded: %d, counted on quotes: %d, lost increments: %d%n",
+                recordedVotes, countedVotes, recordedVotes - countedVotes);
+        database.close();
+    }
+
+    @Benchmark
+    public Object readModifyWrite() {
+        long quoteId = nextHotQuote();
+        String userId = nextVoter();
+        Map<String, Object> quote = jdbcTemplate.queryForMap("SELECT * FROM quotes WHERE id = ?", quoteId);
+        Boolean hasVoted = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) > 0 FROM votes WHERE quote_id = ? AND user_id = ?", Boolean.class, quoteId, userId);
+        if (Boolean.TRUE.equals(hasVoted)) {
+            throw new IllegalStateException("voters are unique");
+        }
+        jdbcTemplate.update("INSERT INTO votes (quote_id, user_id) VALUES (?, ?)", quoteId, userId);
+        int votes = ((Number) quote.get("votes")).intValue() + 1;
+        jdbcTemplate.update("UPDATE quotes SET votes = ? WHERE id = ?", votes, quoteId);
+        return votes;
+    }
+
+    @Benchmark
+    public Object atomicCastVote() {
+        long quoteId = nextHotQuote();
+        String userId = nextVoter();
+        return transactionTemplate.execute(status -> voteJdbcRepository.castVote(quoteId, userId));
+    }
+
+    @Benchmark
+    public boolean writeBehind() throws InterruptedException {
+        return writeBehind.accept(nextHotQuote(), nextVoter());
+    }
+
+    private long nextHotQuote() {
+        return firstQuoteId + ThreadLocalRandom.current().nextInt(hotQuotes);
+    }
+
+    private String nextVoter() {
+        return "user" + voters.incrementAndGet() + "@example.com";
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.qa.benchmarks;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.services.VoteJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * {@link VoteJournal} on local disk, per vote event: {@code append} writes a million votes over
+ * 10,000 quotes into a fresh journal with a group commit every 10,000, and {@code replay} rebuilds
+ * the counters from a journal of a million votes with no snapshot. Multiply by a million for the
+ * time per million events.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class VoteJournalBenchmark {
+    private static final int EVENTS = 1_000_000;
+    private static final int QUOTES = 10_000;
+    private static final int COMMIT_EVERY = 10_000;
+
+    private final String[] users = new String[1_000];
+    private Path replayDirectory;
+    private VoteJournal replayJournal;
+    private Path appendDirectory;
+    private VoteJournal appendJournal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        for (int i = 0; i < users.length; i++) {
+            users[i] = "user" + i + "@example.com";
+        }
+        replayDirectory = Files.createTempDirectory("vote-journal-replay");
+        replayJournal = journal(replayDirectory);
+        appendAll(replayJournal);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        replayJournal.close();
+        delete(replayDirectory);
+    }
+
+    @Setup(Level.Invocation)
+    public void openAppendJournal() throws IOException {
+        appendDirectory = Files.createTempDirectory("vote-journal-append");
+        appendJournal = journal(appendDirectory);
+    }
+
+    @TearDown(Level.Invocation)
+    public void dropAppendJournal() {
+        appendJournal.close();
+        delete(appendDirectory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long append() {
+        return appendAll(appendJournal);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public VoteJournal.Replay replay() {
+        return replayJournal.counts();
+    }
+
+    private long appendAll(VoteJournal journal) {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < EVENTS; i++) {
+            journal.append(1 + i % QUOTES, users[i / QUOTES % users.length], now + i);
+            if ((i + 1) % COMMIT_EVERY == 0) {
+                journal.commit();
+            }
+        }
+        journal.commit();
+        return journal.sequence();
+    }
+
+    private static VoteJournal journal(Path directory) {
+        QuoteAggregatorProperties.Journal config = new QuoteAggregatorProperties.Journal();
+        config.setDirectory(directory.toString());
+        return new VoteJournal(config, new SimpleMeterRegistry());
+    }
+
+    private static void delete(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -2,10 +2,14 @@ package com.example.qa;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.reactive.function.client.WebClient;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
+@EnableScheduling
 public class QuoteAggregatorApplication {
 
     public static void main(String[] args) {
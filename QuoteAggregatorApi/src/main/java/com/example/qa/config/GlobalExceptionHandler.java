@@ -1,19 +1,56 @@
 package com.example.qa.config;
 
+import com.example.qa.services.UpstreamUnavailableException;
+import com.example.qa.services.VoteQueueFullException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.reactive.function.client.WebClientException;
+
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
 
 @ControllerAdvice
 public class GlobalExceptionHandler {
 
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<Map<String, String>> handleRuntimeException(RuntimeException ex) {
+        return error(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handleUpstreamUnavailable(UpstreamUnavailableException ex) {
+        return error(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    // Overload rather than a bad request; Retry-After is in whole seconds, so it rounds up to at least one
+    @ExceptionHandler(VoteQueueFullException.class)
+    public ResponseEntity<Map<String, String>> handleVoteQueueFull(VoteQueueFullException ex) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(Math.max((ex.getRetryAfter().toMillis() + 999) / 1000, 1)));
+        return error(ex.getMessage(), HttpStatus.SERVICE_UNAVAILABLE, headers);
+    }
+
+    @ExceptionHandler(TimeoutException.class)
+    public ResponseEntity<Map<String, String>> handleUpstreamTimeout(TimeoutException ex) {
+        return error("Quote source did not answer in time", HttpStatus.GATEWAY_TIMEOUT);
+    }
+
+    @ExceptionHandler(WebClientException.class)
+    public ResponseEntity<Map<String, String>> handleUpstreamError(WebClientException ex) {
+        return error(ex.getMessage(), HttpStatus.BAD_GATEWAY);
+    }
+
+    private static ResponseEntity<Map<String, String>> error(String message, HttpStatus status) {
+        return error(message, status, new HttpHeaders());
+    }
+
+    private static ResponseEntity<Map<String, String>> error(String message, HttpStatus status, HttpHeaders headers) {
         Map<String, String> errorResponse = new HashMap<>();
-        errorResponse.put("error", ex.getMessage());
-        return new ResponseEntity<>(errorResponse, HttpStatus.BAD_REQUEST);
+        errorResponse.put("error", message);
+        return new ResponseEntity<>(errorResponse, headers, status);
     }
 }
\ No newline at end of file
@@ -0,0 +1,116 @@
+package com.example.qa.config;
+
+import com.example.qa.repositories.BulkQuery;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.ClassFilter;
+import org.springframework.aop.MethodMatcher;
+import org.springframework.aop.framework.autoproxy.AbstractBeanFactoryAwareAdvisingPostProcessor;
+import org.springframework.aop.support.ComposablePointcut;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Repository;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every call into the plain JDBC repositories as {@code spring.data.repository.invocations},
+ * with the tags Spring Boot uses for the Spring Data ones, so a single timer covers every query the
+ * service makes. Calls slower than {@code quotes.metrics.slow-query-threshold} are logged, or than
+ * {@code quotes.metrics.bulk-query-threshold} for {@link BulkQuery} methods; the statements
+ * Hibernate runs for the Spring Data repositories have their own threshold.
+ */
+public class JdbcRepositoryMetrics extends AbstractBeanFactoryAwareAdvisingPostProcessor {
+    public static final String TIMER = "spring.data.repository.invocations";
+    private static final Logger log = LoggerFactory.getLogger(JdbcRepositoryMetrics.class);
+    private static final MethodMatcher OWN_METHODS = new StaticMethodMatcher() {
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            return method.getDeclaringClass() != Object.class;
+        }
+    };
+
+    public JdbcRepositoryMetrics(ObjectProvider<MeterRegistry> meterRegistry, ObjectProvider<QuoteAggregatorProperties> properties) {
+        // Spring Data repositories are left to Spring Boot's own listener
+        ClassFilter jdbcRepositories = type -> AnnotatedElementUtils.hasAnnotation(type, Repository.class)
+                && !org.springframework.data.repository.Repository.class.isAssignableFrom(type);
+        this.advisor = new DefaultPointcutAdvisor(new ComposablePointcut(jdbcRepositories, OWN_METHODS), new Interceptor(meterRegistry, properties));
+        // Outside the transaction advice, so commits are part of the time
+        setBeforeExistingAdvisors(true);
+    }
+
+    private static class Interceptor implements MethodInterceptor {
+        private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+        private final ObjectProvider<QuoteAggregatorProperties> propertiesProvider;
+        // Resolved on the first call: a post-processor that pulled them in while being created would keep them from being post-processed themselves
+        private volatile MeterRegistry meterRegistry;
+        private volatile Duration slowQueryThreshold;
+        private volatile Duration bulkQueryThreshold;
+        // Registered once per method; failures are rare enough to look theirs up in the registry
+        private final Map<Method, Timer> successTimers = new ConcurrentHashMap<>();
+        private final Map<Method, Long> slowNanos = new ConcurrentHashMap<>();
+
+        Interceptor(ObjectProvider<MeterRegistry> meterRegistry, ObjectProvider<QuoteAggregatorProperties> properties) {
+            this.meterRegistryProvider = meterRegistry;
+            this.propertiesProvider = properties;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            long start = System.nanoTime();
+            Throwable failure = null;
+            try {
+                return invocation.proceed();
+            } catch (Throwable error) {
+                failure = error;
+                throw error;
+            } finally {
+                record(invocation, System.nanoTime() - start, failure);
+            }
+        }
+
+        private void record(MethodInvocation invocation, long nanos, Throwable failure) {
+            if (meterRegistry == null) {
+                QuoteAggregatorProperties.Metrics metrics = propertiesProvider.getIfAvailable(QuoteAggregatorProperties::new).getMetrics();
+                slowQueryThreshold = metrics.getSlowQueryThreshold();
+                bulkQueryThreshold = metrics.getBulkQueryThreshold();
+                MeterRegistry registry = meterRegistryProvider.getIfAvailable(() -> Metrics.globalRegistry);
+                // A removed timer would otherwise keep recording where no one reads it
+                registry.config().onMeterRemoved(meter -> successTimers.values().remove(meter));
+                meterRegistry = registry;
+            }
+            Method method = invocation.getMethod();
+            Timer timer = failure == null
+                    ? successTimers.computeIfAbsent(method, key -> timer(key, null))
+                    : timer(method, failure);
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+            long slow = slowNanos.computeIfAbsent(method, key -> AnnotatedElementUtils.hasAnnotation(key, BulkQuery.class)
+                    ? bulkQueryThreshold.toNanos() : slowQueryThreshold.toNanos());
+            if (nanos >= slow) {
+                log.warn("Slow repository call {}.{} took {} ms", method.getDeclaringClass().getSimpleName(), method.getName(),
+                        TimeUnit.NANOSECONDS.toMillis(nanos));
+            }
+        }
+
+        private Timer timer(Method method, Throwable failure) {
+            return Timer.builder(TIMER)
+                    .tag("repository", method.getDeclaringClass().getSimpleName())
+                    .tag("method", method.getName())
+                    .tag("state", failure == null ? "SUCCESS" : "ERROR")
+                    .tag("exception", failure == null ? "None" : failure.getClass().getSimpleName())
+                    .description("Duration of repository invocations")
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.qa.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    // Static, so the post-processor is registered without creating this configuration early
+    @Bean
+    public static JdbcRepositoryMetrics jdbcRepositoryMetrics(ObjectProvider<MeterRegistry> meterRegistry,
+                                                              ObjectProvider<QuoteAggregatorProperties> properties) {
+        return new JdbcRepositoryMetrics(meterRegistry, properties);
+    }
+}
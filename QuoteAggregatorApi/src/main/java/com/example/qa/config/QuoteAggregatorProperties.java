@@ -0,0 +1,204 @@
+package com.example.qa.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "quotes")
+public class QuoteAggregatorProperties {
+
+    private Prefetch prefetch = new Prefetch();
+    private CharacterCache characterCache = new CharacterCache();
+    private WriteBehind writeBehind = new WriteBehind();
+    private VoteFilter voteFilter = new VoteFilter();
+    private Journal journal = new Journal();
+    private Leaderboard leaderboard = new Leaderboard();
+    private Batch batch = new Batch();
+    private Dedupe dedupe = new Dedupe();
+    private Sources sources = new Sources();
+    private Corpus corpus = new Corpus();
+    private Search search = new Search();
+    private Browse browse = new Browse();
+    private Metrics metrics = new Metrics();
+
+    @Data
+    public static class Prefetch {
+        // Off unless configured, so the service never calls the upstreams on its own by default
+        private boolean enabled = false;
+        private int capacity = 32;
+        private int lowWatermark = 8;
+        private int refillConcurrency = 4;
+        private long refillIntervalMs = 1000;
+    }
+
+    @Data
+    public static class CharacterCache {
+        private long maximumSize = 500;
+        // Entries older than this are still served while a background reload replaces them
+        private Duration refreshAfter = Duration.ofMinutes(10);
+        // Hard TTL: refreshes are only triggered by reads, so entries nobody asks for are dropped after this
+        private Duration expireAfter = Duration.ofHours(6);
+        // How many quotes to request from the upstream when loading a character
+        private int fetchCount = 50;
+    }
+
+    @Data
+    public static class WriteBehind {
+        // Off by default: votes are then written synchronously and are durable once acknowledged
+        private boolean enabled = false;
+        private long flushIntervalMs = 200;
+        // A flush is also triggered as soon as this many votes are pending
+        private int flushBatchSize = 500;
+        private int queueCapacity = 10_000;
+        // How long a vote waits for queue space before it is rejected
+        private Duration enqueueTimeout = Duration.ofMillis(50);
+    }
+
+    @Data
+    public static class VoteFilter {
+        // In-memory Bloom filter of who voted for what; a vote it has never seen skips the "already voted?" query.
+        // Only built when write-behind is enabled, the one path that consults it
+        private boolean enabled = true;
+        // Sized for at least this many votes, or twice the stored votes at startup if that is more
+        private long expectedVotes = 1_000_000;
+        private double falsePositiveRate = 0.01;
+        // Picks up votes cast through other instances; the filter is rebuilt bigger once it outgrows its size
+        private long resyncIntervalMs = 60_000;
+    }
+
+    @Data
+    public static class Journal {
+        // Off unless configured, since it writes to local disk. Only for a single instance taking votes:
+        // the counter rebuild sets every counter from this instance's journal alone
+        private boolean enabled = false;
+        private String directory = "data/vote-journal";
+        // Votes per memory-mapped segment file, 32 bytes each
+        private int segmentRecords = 1 << 21;
+        // Appends since the previous commit are forced to disk together this often
+        private long commitIntervalMs = 100;
+        // Bounds how much of the journal a counter rebuild replays; covered segments are deleted
+        private long snapshotIntervalMs = 600_000;
+    }
+
+    @Data
+    public static class Leaderboard {
+        // Quotes kept ranked in memory; /quotes/top can return at most this many
+        private int capacity = 1000;
+        private int maxLimit = 100;
+        // Re-reads the stored top quotes, picking up votes cast through other instances
+        private long resyncIntervalMs = 300_000;
+        // Votes within one window reach /quotes/top/stream clients as a single delta event
+        private Duration streamWindow = Duration.ofMillis(500);
+        // Deltas held for a slow stream client before the oldest are dropped
+        private int streamBufferSize = 16;
+    }
+
+    @Data
+    public static class Batch {
+        private int maxCount = 100;
+        // Quotes asked for per upstream request; the Simpsons API takes a count parameter
+        private int simpsonsPageSize = 10;
+        // The Ninjas API only returns more than one quote per call (limit parameter) on premium plans
+        private int ninjasPageSize = 1;
+        // Upstream requests in flight at once for one batch
+        private int concurrency = 4;
+        // Largest POST /quotes/votes:batch
+        private int maxVotes = 1000;
+    }
+
+    @Data
+    public static class Dedupe {
+        // Stored quotes remembered by content hash; a hit skips the database entirely
+        private long cacheSize = 100_000;
+    }
+
+    @Data
+    public static class Sources {
+        private Upstream simpsons = new Upstream("https://thesimpsonsquoteapi.glitch.me");
+        private Upstream ninjas = new Upstream("https://api.api-ninjas.com/v1");
+        // Most recent call latencies kept per source for the percentiles
+        private int latencyWindow = 100;
+        // A single-quote call still running after the source's p95 gets a second, hedged request
+        private boolean hedgeEnabled = true;
+        // No hedging until the percentile rests on this many calls
+        private int hedgeMinSamples = 20;
+        private Duration hedgeMinDelay = Duration.ofMillis(20);
+    }
+
+    @Data
+    public static class Upstream {
+        private String baseUrl;
+        // A call still unanswered after this fails, and counts against the circuit breaker
+        private Duration timeout = Duration.ofSeconds(3);
+        // Calls in flight at once; further calls are rejected straight away
+        private int maxConcurrentCalls = 32;
+        // Failures in a row that open the circuit
+        private int failureThreshold = 5;
+        // How long an open circuit rejects calls before a single probe is let through
+        private Duration openFor = Duration.ofSeconds(30);
+        // Calls per second the upstream's quota allows, enforced here; 0 means no limit
+        private double ratePerSecond = 0;
+        // Calls that can go out at once after a quiet spell
+        private int rateBurst = 10;
+        private Connections connections = new Connections();
+
+        public Upstream() {
+        }
+
+        public Upstream(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+    }
+
+    /**
+     * The connection pool of one upstream; each upstream gets its own.
+     */
+    @Data
+    public static class Connections {
+        private int maxConnections = 50;
+        // Requests waiting for a connection once all are in use; beyond this they fail straight away
+        private int pendingAcquireMaxCount = 200;
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(2);
+        // Kept open between bursts, so a burst does not pay a TLS handshake per connection
+        private Duration maxIdleTime = Duration.ofSeconds(60);
+        private Duration maxLifeTime = Duration.ofMinutes(10);
+        private Duration evictInBackground = Duration.ofSeconds(30);
+        private Duration connectTimeout = Duration.ofSeconds(2);
+        // Longest wait for the response, or between two reads of its body
+        private Duration readTimeout = Duration.ofSeconds(3);
+        private boolean keepAlive = true;
+        // Asks for gzip responses
+        private boolean compression = true;
+    }
+
+    @Data
+    public static class Corpus {
+        // Serve /quotes/simpsons, /quotes/simpsons/filtered and /quotes/ninjas from stored quotes only, never calling the upstreams
+        private boolean offline = false;
+        // Picks up quotes stored through other instances
+        private long resyncIntervalMs = 60_000;
+    }
+
+    @Data
+    public static class Search {
+        private int maxLimit = 50;
+        // Shorter prefixes ("a*") are matched as whole words, so one query cannot merge most of the index
+        private int minPrefixLength = 2;
+    }
+
+    @Data
+    public static class Browse {
+        // Largest page of /quotes
+        private int maxSize = 100;
+    }
+
+    @Data
+    public static class Metrics {
+        // Repository calls taking at least this long are logged
+        private Duration slowQueryThreshold = Duration.ofMillis(200);
+        // The same for @BulkQuery methods: table scans and batches, which take longer by design
+        private Duration bulkQueryThreshold = Duration.ofSeconds(30);
+    }
+}
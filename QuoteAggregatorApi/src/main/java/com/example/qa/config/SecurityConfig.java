@@ -22,7 +22,9 @@ public class SecurityConfig {
                 .csrf(ServerHttpSecurity.CsrfSpec::disable)
                 .cors(cors -> {})
                 .authorizeExchange(exchanges -> exchanges
+                        .pathMatchers("/quotes/admin/**").authenticated()
                         .pathMatchers("/quotes/**").permitAll()
+                        .pathMatchers("/actuator/health", "/actuator/prometheus").permitAll()
                         .anyExchange().authenticated()
                 )
                 .httpBasic(httpBasic -> {})
@@ -36,6 +38,8 @@ public class SecurityConfig {
         corsConfig.setMaxAge(3600L);
         corsConfig.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         corsConfig.setAllowedHeaders(Collections.singletonList("*"));
+        // Lets the frontend read the validator it sends back in If-None-Match
+        corsConfig.setExposedHeaders(Collections.singletonList("ETag"));
         corsConfig.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
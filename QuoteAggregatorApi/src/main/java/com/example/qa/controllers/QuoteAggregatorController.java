@@ -1,22 +1,61 @@
 package com.example.qa.controllers;
 
 import com.example.qa.entities.Quote;
+import com.example.qa.models.BatchVote;
+import com.example.qa.models.BatchVoteResult;
+import com.example.qa.models.QuotePage;
+import com.example.qa.models.QuoteSourceStatus;
+import com.example.qa.models.QuoteStats;
+import com.example.qa.models.VoteRebuild;
 import com.example.qa.services.QuoteAggregatorService;
+import com.example.qa.services.QuoteReadModelService;
+import com.example.qa.services.VoteService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.HashMap;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 @RestController
 @RequestMapping("/quotes")
 public class QuoteAggregatorController {
     private final QuoteAggregatorService quoteAggregatorService;
+    private final VoteService voteService;
+    private final QuoteReadModelService readModels;
+    private final ObjectWriter quoteListWriter;
+    // Serialized /quotes/top bodies by limit, each tagged with the leaderboard version it was written at
+    private final Map<Integer, TopQuotesJson> topQuotesJson = new ConcurrentHashMap<>();
 
-    public QuoteAggregatorController(QuoteAggregatorService quoteAggregatorService) {
+    public QuoteAggregatorController(QuoteAggregatorService quoteAggregatorService, VoteService voteService, QuoteReadModelService readModels,
+                                     ObjectMapper objectMapper) {
         this.quoteAggregatorService = quoteAggregatorService;
+        this.voteService = voteService;
+        this.readModels = readModels;
+        this.quoteListWriter = objectMapper.writerFor(new TypeReference<List<Quote>>() {
+        });
+    }
+
+    @GetMapping
+    public Mono<QuotePage> browseQuotes(@RequestParam(required = false) String source,
+                                        @RequestParam(required = false) String character,
+                                        @RequestParam(required = false) String category,
+                                        @RequestParam(value = "sort", defaultValue = "votes") String sort,
+                                        @RequestParam(required = false) String after,
+                                        @RequestParam(value = "size", defaultValue = "20") int size) {
+        return readModels.browseQuotes(source, character, category, sort, after, size);
     }
 
     @GetMapping("/simpsons")
@@ -34,26 +73,118 @@ public class QuoteAggregatorController {
         return quoteAggregatorService.getNinjasQuote();
     }
 
+    @GetMapping(value = "/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Quote> getQuoteBatch(@RequestParam String source, @RequestParam(value = "count", defaultValue = "10") int count) {
+        return quoteAggregatorService.getQuoteBatch(source, count);
+    }
+
+    @GetMapping("/search")
+    public Flux<Quote> searchQuotes(@RequestParam String q, @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return readModels.searchQuotes(q, limit);
+    }
+
+    @DeleteMapping("/admin/cache/simpsons/{character}")
+    public Mono<Void> invalidateCharacterCache(@PathVariable String character) {
+        quoteAggregatorService.invalidateCharacterCache(character);
+        return Mono.empty();
+    }
+
+    @PostMapping("/admin/votes/rebuild")
+    public Mono<VoteRebuild> rebuildVoteCounts() {
+        return voteService.rebuildVoteCounts();
+    }
+
     @PostMapping("/{id}/vote")
-    public Quote voteForQuote(@PathVariable Long id, @RequestBody Map<String, String> requestData) {
+    public Mono<Quote> voteForQuote(@PathVariable Long id, @RequestBody Map<String, String> requestData) {
         String userEmail = requestData.get("userEmail");
         if (userEmail == null || userEmail.isEmpty()) {
             throw new RuntimeException("User email is required to vote.");
         }
-        return quoteAggregatorService.voteForQuote(id, userEmail);
+        return voteService.voteForQuote(id, userEmail);
+    }
+
+    @PostMapping("/votes:batch")
+    public Mono<List<BatchVoteResult>> voteForQuotes(@RequestBody List<BatchVote> votes) {
+        return voteService.voteForQuotes(votes);
     }
 
+    /**
+     * Clients must revalidate every time, but a client whose copy is still current gets an empty 304
+     * before the leaderboard is even read, and an unchanged ranking is only serialized once per limit.
+     * {@code source}, {@code character} and {@code category} narrow the ranking; filtered rankings are
+     * not kept serialized, since any client can ask for any value.
+     */
     @GetMapping("/top")
-    public List<Quote> getTopQuotes(@RequestParam(value = "limit", defaultValue = "10") int limit) {
-        return quoteAggregatorService.getTopQuotes(limit);
+    public Mono<ResponseEntity<byte[]>> getTopQuotes(@RequestParam(value = "limit", defaultValue = "10") int limit,
+                                                     @RequestParam(required = false) String source,
+                                                     @RequestParam(required = false) String character,
+                                                     @RequestParam(required = false) String category,
+                                                     ServerWebExchange exchange) {
+        boolean filtered = isSet(source) || isSet(character) || isSet(category);
+        String eTag = filtered ? readModels.getTopQuotesETag(source, character, category)
+                : readModels.getTopQuotesETag();
+        exchange.getResponse().getHeaders().setCacheControl(CacheControl.noCache());
+        if (exchange.checkNotModified(eTag)) {
+            return Mono.empty();
+        }
+        int validLimit = readModels.topQuotesLimit(limit);
+        Mono<TopQuotesJson> json;
+        if (filtered) {
+            json = readModels.getTopQuotes(source, character, category, validLimit).collectList()
+                    .map(quotes -> new TopQuotesJson(eTag, toJson(quotes)));
+        } else {
+            TopQuotesJson cached = topQuotesJson.get(validLimit);
+            json = cached != null && cached.eTag().equals(eTag)
+                    ? Mono.just(cached)
+                    : readModels.getTopQuotes(validLimit).collectList()
+                    .map(quotes -> new TopQuotesJson(eTag, toJson(quotes)))
+                    .doOnNext(written -> topQuotesJson.put(validLimit, written));
+        }
+        return json.map(body -> ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).eTag(body.eTag()).body(body.json()));
+    }
+
+    @GetMapping(value = "/top/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamTopQuotes(@RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return readModels.streamTopQuotes(limit);
+    }
+
+    @GetMapping("/stats")
+    public Mono<QuoteStats> getQuoteStats() {
+        return Mono.just(readModels.getQuoteStats());
+    }
+
+    @GetMapping("/random")
+    public Mono<Optional<Quote>> getRandomQuote() {
+        return quoteAggregatorService.getRandomQuote();
     }
 
     @GetMapping("/quote-sources")
-    public Mono<Map<String, String>> getQuoteSources() {
-        Map<String, String> quoteSources = new HashMap<>();
-        quoteSources.put("simpsons", "https://thesimpsonsquoteapi.glitch.me");
-        quoteSources.put("ninjas", "https://api.api-ninjas.com/v1");
+    public Mono<ResponseEntity<Map<String, String>>> getQuoteSources(ServerWebExchange exchange) {
+        String eTag = quoteAggregatorService.getQuoteSourcesETag();
+        exchange.getResponse().getHeaders().setCacheControl(CacheControl.maxAge(Duration.ofMinutes(5)));
+        if (exchange.checkNotModified(eTag)) {
+            return Mono.empty();
+        }
+        return Mono.just(ResponseEntity.ok().eTag(eTag).body(quoteAggregatorService.getQuoteSources()));
+    }
+
+    @GetMapping("/quote-sources/status")
+    public Mono<List<QuoteSourceStatus>> getQuoteSourceStatuses() {
+        return Mono.just(quoteAggregatorService.getQuoteSourceStatuses());
+    }
+
+    private static boolean isSet(String filter) {
+        return filter != null && !filter.isBlank();
+    }
+
+    private byte[] toJson(List<Quote> quotes) {
+        try {
+            return quoteListWriter.writeValueAsBytes(quotes);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize top quotes", e);
+        }
+    }
 
-        return Mono.just(quoteSources);
+    private record TopQuotesJson(String eTag, byte[] json) {
     }
 }
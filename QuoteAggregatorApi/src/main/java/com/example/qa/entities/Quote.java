@@ -1,18 +1,35 @@
 package com.example.qa.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
 @Entity
-@Table(name = "quotes")
+@Table(name = "quotes", indexes = {
+        // Keyset pages of /quotes, ordered by (votes, id) or by id and filtered on at most one column by index
+        @Index(name = "idx_quotes_votes_id", columnList = "votes, id"),
+        @Index(name = "idx_quotes_source_votes_id", columnList = "source, votes, id"),
+        @Index(name = "idx_quotes_source_id", columnList = "source, id"),
+        @Index(name = "idx_quotes_character_votes_id", columnList = "character, votes, id"),
+        @Index(name = "idx_quotes_character_id", columnList = "character, id"),
+        @Index(name = "idx_quotes_category_votes_id", columnList = "category, votes, id"),
+        @Index(name = "idx_quotes_category_id", columnList = "category, id")
+})
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Quote {
+    public static final int MAX_TEXT_LENGTH = 255;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -25,4 +42,35 @@ public class Quote {
     private String characterDirection;
     private String character;
     private Integer votes = 0;
-}
\ No newline at end of file
+
+    // SHA-256 of the stored text: a fixed-width, uniquely indexed key for deduplicating fetched quotes
+    @JsonIgnore
+    @Column(name = "content_hash", length = 64, unique = true)
+    private String contentHash;
+
+    @PrePersist
+    void assignContentHash() {
+        if (contentHash == null && quoteText != null) {
+            contentHash = contentHash(quoteText);
+        }
+    }
+
+    /**
+     * The text as it fits the column; longer upstream quotes are cut off.
+     */
+    public static String storedText(String quoteText) {
+        return quoteText != null && quoteText.length() > MAX_TEXT_LENGTH ? quoteText.substring(0, MAX_TEXT_LENGTH) : quoteText;
+    }
+
+    /**
+     * Hash of the stored text, so a quote matches its stored row even when the text was cut off.
+     */
+    public static String contentHash(String quoteText) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(storedText(quoteText).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.qa.models;
+
+/**
+ * One vote of a {@code POST /quotes/votes:batch} request.
+ */
+public record BatchVote(Long quoteId, String userEmail) {
+}
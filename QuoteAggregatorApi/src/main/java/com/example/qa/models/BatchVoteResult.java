@@ -0,0 +1,8 @@
+package com.example.qa.models;
+
+/**
+ * What became of one vote of a {@code POST /quotes/votes:batch} request: {@code accepted},
+ * {@code already_voted}, {@code quote_not_found} or {@code invalid} (no quote id or no email).
+ */
+public record BatchVoteResult(Long quoteId, String userEmail, String status) {
+}
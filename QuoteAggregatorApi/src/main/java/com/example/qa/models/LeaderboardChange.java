@@ -0,0 +1,17 @@
+package com.example.qa.models;
+
+import com.example.qa.entities.Quote;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One entry of a leaderboard delta event. Ranks are 1-based; a null {@code rank} means the quote
+ * left the streamed top, a null {@code previousRank} that it just entered it. The full quote is
+ * only sent with entries the client has not seen before.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record LeaderboardChange(long id, int votes, Integer rank, Integer previousRank, Quote quote) {
+
+    public LeaderboardChange withoutQuote() {
+        return quote == null ? this : new LeaderboardChange(id, votes, rank, previousRank, null);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.qa.models;
+
+/**
+ * Stored quotes and their votes for one source, character or category.
+ */
+public record QuoteGroupStats(String name, long quotes, long votes) {
+}
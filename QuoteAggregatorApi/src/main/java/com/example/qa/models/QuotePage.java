@@ -0,0 +1,12 @@
+package com.example.qa.models;
+
+import com.example.qa.entities.Quote;
+
+import java.util.List;
+
+/**
+ * One page of {@code /quotes}. {@code next} is the opaque cursor of the following page, passed back
+ * as {@code after}; it is null on the last page.
+ */
+public record QuotePage(List<Quote> quotes, String next) {
+}
@@ -0,0 +1,13 @@
+package com.example.qa.models;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Circuit state, load and latency of one quote source, as reported by
+ * {@code /quotes/quote-sources/status}. Percentiles are in milliseconds over the most recent calls
+ * and are absent until the first call.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record QuoteSourceStatus(String name, String baseUrl, String circuit, int consecutiveFailures, int inFlight,
+                                int samples, Long p50Millis, Long p95Millis) {
+}
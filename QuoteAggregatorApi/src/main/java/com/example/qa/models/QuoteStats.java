@@ -0,0 +1,12 @@
+package com.example.qa.models;
+
+import java.util.List;
+
+/**
+ * {@code /quotes/stats}: stored quotes and votes overall, then per source, per character and per
+ * category, most voted first. Quotes without a character or a category are only in the totals
+ * and their source.
+ */
+public record QuoteStats(long quotes, long votes, List<QuoteGroupStats> sources, List<QuoteGroupStats> characters,
+                         List<QuoteGroupStats> categories) {
+}
@@ -0,0 +1,9 @@
+package com.example.qa.models;
+
+/**
+ * Outcome of rebuilding the vote counters from the vote journal: the journal position the counts
+ * cover, how many journal records were replayed on top of the latest snapshot, how many quotes
+ * have votes, how many stored counters were corrected, and how long the replay took.
+ */
+public record VoteRebuild(long sequence, long replayed, int quotes, int corrected, long replayMillis) {
+}
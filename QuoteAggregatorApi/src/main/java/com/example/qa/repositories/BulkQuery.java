@@ -0,0 +1,19 @@
+package com.example.qa.repositories;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a repository method that reads or writes a whole table or a whole batch, such as the scans
+ * run at startup and by the scheduled resyncs, whose time grows with the data and, for the
+ * streaming ones, includes the caller's handler. Calls are timed like any other, but only logged as
+ * slow past {@code quotes.metrics.bulk-query-threshold}.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface BulkQuery {
+}
@@ -0,0 +1,257 @@
+package com.example.qa.repositories;
+
+import com.example.qa.entities.Quote;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Quote writes as plain SQL keyed on the unique {@code content_hash}: storing a fetched quote is one
+ * insert that the database skips when the hash is already taken, and a whole batch is one batched
+ * insert plus one indexed read, instead of text lookups and a save per quote.
+ */
+@Repository
+public class QuoteJdbcRepository {
+    private static final String INSERT_IF_ABSENT = """
+            INSERT INTO quotes (quote_text, author, category, source, image, character_direction, character, votes, content_hash)
+            VALUES (?, ?, ?, ?, ?, ?, ?, 0, ?)
+            ON CONFLICT DO NOTHING""";
+    private static final String SELECT_BY_HASH = "SELECT * FROM quotes WHERE content_hash = ?";
+    // Ids bound per IN list, well under PostgreSQL's 32767 bind parameters a statement
+    private static final int IDS_PER_QUERY = 1000;
+    // Rows a streaming read pulls from the database at a time
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Counter duplicatesSkipped;
+
+    public QuoteJdbcRepository(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.duplicatesSkipped = Counter.builder("quotes.dedupe.hits")
+                .tag("via", "database")
+                .description("Fetched quotes that were already stored")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stores the quote unless one with the same content hash exists.
+     *
+     * @return the stored row: the new one, read back from the insert, or the existing one
+     */
+    public Quote upsert(Quote quote) {
+        KeyHolder insertedRow = new GeneratedKeyHolder();
+        int inserted = jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_IF_ABSENT, QuoteRows.COLUMNS);
+            bind(statement, quote);
+            return statement;
+        }, insertedRow);
+        if (inserted == 1) {
+            return QuoteRows.toQuote(insertedRow.getKeys());
+        }
+        duplicatesSkipped.increment();
+        return findByContentHash(quote.getContentHash())
+                .orElseThrow(() -> new IllegalStateException("Quote vanished after a conflicting insert: " + quote.getContentHash()));
+    }
+
+    public Optional<Quote> findByContentHash(String contentHash) {
+        return jdbcTemplate.queryForList(SELECT_BY_HASH, contentHash).stream().findFirst().map(QuoteRows::toQuote);
+    }
+
+    public Optional<Quote> findById(long id) {
+        return jdbcTemplate.queryForList("SELECT * FROM quotes WHERE id = ?", id).stream().findFirst().map(QuoteRows::toQuote);
+    }
+
+    /**
+     * The stored quotes with the given ids, in the order of the ids; missing ids are skipped. Long
+     * lists are read {@value #IDS_PER_QUERY} ids a query.
+     */
+    public List<Quote> findAllById(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Quote> stored = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += IDS_PER_QUERY) {
+            List<Long> chunk = ids.subList(from, Math.min(from + IDS_PER_QUERY, ids.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.queryForList("SELECT * FROM quotes WHERE id IN (" + placeholders + ")", chunk.toArray())
+                    .forEach(row -> {
+                        Quote quote = QuoteRows.toQuote(row);
+                        stored.put(quote.getId(), quote);
+                    });
+        }
+        return ids.stream().map(stored::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Streams every quote stored after {@code afterId}, in id order, without holding them all: the
+     * read runs in a read-only transaction with a fetch size, since the PostgreSQL driver only reads
+     * a result through a cursor outside autocommit.
+     *
+     * @return the highest id read, or {@code afterId} when there were none
+     */
+    @Transactional(readOnly = true)
+    @BulkQuery
+    public long forEachStoredAfter(long afterId, Consumer<Quote> handler) {
+        long[] highest = {afterId};
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT * FROM quotes WHERE id > ? ORDER BY id");
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setLong(1, afterId);
+            return statement;
+        }, row -> {
+            Quote quote = QuoteRows.toQuote(row);
+            handler.accept(quote);
+            highest[0] = Math.max(highest[0], quote.getId());
+        });
+        return highest[0];
+    }
+
+    /**
+     * Up to {@code limit} stored quotes whose source, character and category are each one of the
+     * given values, in {@code order}, starting right after {@code after} (the last quote of the
+     * previous page, or null for the first page). A null list filters nothing; an empty one matches
+     * nothing. The position is a row comparison on the indexed sort key rather than an offset, so a
+     * deep page costs one index seek like the first one.
+     */
+    public List<Quote> findPage(List<String> sources, List<String> characters, List<String> categories,
+                                QuoteOrder order, Quote after, int limit) {
+        if (Stream.of(sources, characters, categories).anyMatch(values -> values != null && values.isEmpty())) {
+            return List.of();
+        }
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        Map<String, List<String>> filters = new LinkedHashMap<>();
+        filters.put("source", sources);
+        filters.put("character", characters);
+        filters.put("category", categories);
+        // Exact values keep the (column, votes, id) and (column, id) indexes usable
+        filters.forEach((column, values) -> {
+            if (values != null) {
+                conditions.add(values.size() == 1 ? column + " = ?"
+                        : column + " IN (" + String.join(", ", Collections.nCopies(values.size(), "?")) + ")");
+                args.addAll(values);
+            }
+        });
+        if (after != null && order == QuoteOrder.VOTES) {
+            conditions.add("(votes, id) < (?, ?)");
+            args.add(after.getVotes());
+            args.add(after.getId());
+        } else if (after != null) {
+            conditions.add("id < ?");
+            args.add(after.getId());
+        }
+        args.add(limit);
+        String where = conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions);
+        String orderBy = order == QuoteOrder.VOTES ? " ORDER BY votes DESC, id DESC" : " ORDER BY id DESC";
+        return jdbcTemplate.query("SELECT * FROM quotes" + where + orderBy + " LIMIT ?",
+                (row, rowNumber) -> QuoteRows.toQuote(row), args.toArray());
+    }
+
+    /**
+     * Stores the quotes whose content hash is not taken yet.
+     *
+     * @return the stored row for every given quote, in the given order
+     */
+    @Transactional
+    @BulkQuery
+    public List<Quote> saveAllIfAbsent(List<Quote> quotes) {
+        if (quotes.isEmpty()) {
+            return List.of();
+        }
+        int[] inserted = jdbcTemplate.batchUpdate(INSERT_IF_ABSENT, quotes, quotes.size(), QuoteJdbcRepository::bind)[0];
+        // Drivers that rewrite batches report SUCCESS_NO_INFO (-2) rather than a row count
+        duplicatesSkipped.increment(Arrays.stream(inserted).filter(count -> count == 0).count());
+        List<String> hashes = quotes.stream().map(Quote::getContentHash).toList();
+        String placeholders = String.join(", ", Collections.nCopies(hashes.size(), "?"));
+        Map<String, Quote> stored = new HashMap<>();
+        jdbcTemplate.queryForList("SELECT * FROM quotes WHERE content_hash IN (" + placeholders + ")", hashes.toArray())
+                .forEach(row -> stored.put((String) row.get("content_hash"), QuoteRows.toQuote(row)));
+        return hashes.stream().map(stored::get).filter(Objects::nonNull).toList();
+    }
+
+    /**
+     * Sets every stored quote's counter to its entry in {@code votes}, or to zero without one,
+     * rewriting only the rows that differ with one batched update. The counters are read through a
+     * cursor and compared in memory, so the votes table is never aggregated.
+     *
+     * @return ids of the quotes whose counter changed
+     */
+    @Transactional
+    @BulkQuery
+    public List<Long> resetVotes(Map<Long, Long> votes) {
+        List<Object[]> updates = new ArrayList<>();
+        List<Long> changed = new ArrayList<>();
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT id, votes FROM quotes ORDER BY id");
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, row -> {
+            long id = row.getLong("id");
+            long count = votes.getOrDefault(id, 0L);
+            if (row.getLong("votes") != count) {
+                updates.add(new Object[]{count, id});
+                changed.add(id);
+            }
+        });
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE quotes SET votes = ? WHERE id = ?", updates);
+        }
+        return changed;
+    }
+
+    /**
+     * Fills in the hash of rows stored before the column existed. Where older rows share a text, only
+     * the first one gets the hash, so the unique index holds and lookups resolve to the row the old
+     * text lookup found.
+     *
+     * @return the number of rows updated
+     */
+    @Transactional
+    @BulkQuery
+    public int backfillContentHashes() {
+        Set<String> taken = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT content_hash FROM quotes WHERE content_hash IS NOT NULL", String.class));
+        List<Object[]> updates = new ArrayList<>();
+        jdbcTemplate.query("SELECT id, quote_text FROM quotes WHERE content_hash IS NULL AND quote_text IS NOT NULL ORDER BY id", row -> {
+            String hash = Quote.contentHash(row.getString("quote_text"));
+            if (taken.add(hash)) {
+                updates.add(new Object[]{hash, row.getLong("id")});
+            }
+        });
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE quotes SET content_hash = ? WHERE id = ?", updates);
+        }
+        return updates.size();
+    }
+
+    private static void bind(PreparedStatement statement, Quote quote) throws SQLException {
+        statement.setString(1, quote.getQuoteText());
+        statement.setString(2, quote.getAuthor());
+        statement.setString(3, quote.getCategory());
+        statement.setString(4, quote.getSource());
+        statement.setString(5, quote.getImage());
+        statement.setString(6, quote.getCharacterDirection());
+        statement.setString(7, quote.getCharacter());
+        statement.setString(8, quote.getContentHash());
+    }
+}
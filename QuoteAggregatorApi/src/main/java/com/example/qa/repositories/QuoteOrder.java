@@ -0,0 +1,22 @@
+package com.example.qa.repositories;
+
+import java.util.Locale;
+
+/**
+ * Orders of the keyset-paginated quote listing. Both are total, so the last quote of a page is
+ * enough to find where the next one starts.
+ */
+public enum QuoteOrder {
+    // Most votes first, newest first among equal counts
+    VOTES,
+    // Newest first
+    RECENT;
+
+    public static QuoteOrder parse(String sort) {
+        try {
+            return valueOf(sort.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unknown sort: " + sort + " (expected votes or recent)");
+        }
+    }
+}
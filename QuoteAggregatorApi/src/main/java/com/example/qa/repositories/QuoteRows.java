@@ -0,0 +1,50 @@
+package com.example.qa.repositories;
+
+import com.example.qa.entities.Quote;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Maps a {@code quotes} row read through plain JDBC back to the entity.
+ */
+final class QuoteRows {
+    // Read back through getGeneratedKeys, which the PostgreSQL driver turns into ... RETURNING
+    static final String[] COLUMNS = {
+            "id", "quote_text", "author", "category", "source", "image", "character_direction", "character", "votes", "content_hash"
+    };
+
+    private QuoteRows() {
+    }
+
+    static Quote toQuote(Map<String, Object> row) {
+        return Quote.builder()
+                .id(((Number) row.get("id")).longValue())
+                .quoteText((String) row.get("quote_text"))
+                .author((String) row.get("author"))
+                .category((String) row.get("category"))
+                .source((String) row.get("source"))
+                .image((String) row.get("image"))
+                .characterDirection((String) row.get("character_direction"))
+                .character((String) row.get("character"))
+                .votes(((Number) row.get("votes")).intValue())
+                .contentHash((String) row.get("content_hash"))
+                .build();
+    }
+
+    static Quote toQuote(ResultSet row) throws SQLException {
+        return Quote.builder()
+                .id(row.getLong("id"))
+                .quoteText(row.getString("quote_text"))
+                .author(row.getString("author"))
+                .category(row.getString("category"))
+                .source(row.getString("source"))
+                .image(row.getString("image"))
+                .characterDirection(row.getString("character_direction"))
+                .character(row.getString("character"))
+                .votes(row.getInt("votes"))
+                .contentHash(row.getString("content_hash"))
+                .build();
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.qa.repositories;
+
+import com.example.qa.entities.Quote;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Vote writes as plain SQL, so deduplication and the counter increment happen inside the database
+ * instead of as a read-modify-write on a loaded entity.
+ */
+@Repository
+public class VoteJdbcRepository {
+    // Inserts nothing when the quote does not exist or the unique (user_id, quote_id) constraint already holds the vote
+    private static final String INSERT_VOTE = """
+            INSERT INTO votes (quote_id, user_id)
+            SELECT id, ? FROM quotes WHERE id = ?
+            ON CONFLICT DO NOTHING""";
+    private static final String INCREMENT_VOTES = "UPDATE quotes SET votes = votes + 1 WHERE id = ?";
+    private static final String ADD_VOTES = "UPDATE quotes SET votes = votes + ? WHERE id = ?";
+    // Rows a streaming read pulls from the database at a time
+    private static final int FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public VoteJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Records the vote and increments the quote's counter in one transaction.
+     *
+     * @return the quote as it was updated, or empty if the vote was rejected because the quote does
+     * not exist or the user already voted for it
+     */
+    @Transactional
+    public Optional<Quote> castVote(long quoteId, String userId) {
+        if (jdbcTemplate.update(INSERT_VOTE, userId, quoteId) == 0) {
+            return Optional.empty();
+        }
+        KeyHolder updatedRow = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INCREMENT_VOTES, QuoteRows.COLUMNS);
+            statement.setLong(1, quoteId);
+            return statement;
+        }, updatedRow);
+        return Optional.of(QuoteRows.toQuote(updatedRow.getKeys()));
+    }
+
+    /**
+     * Inserts a batch of votes and adds the accepted ones to their quotes' counters, one batched
+     * statement each, in one transaction. Votes for unknown quotes or repeat votes are skipped.
+     *
+     * @return the accepted votes
+     */
+    @Transactional
+    @BulkQuery
+    public List<NewVote> applyVoteBatch(List<NewVote> votes) {
+        int[] inserted = insertVotes(votes);
+        List<NewVote> accepted = new ArrayList<>();
+        // Sorted so concurrent batches lock quote rows in the same order
+        Map<Long, Integer> increments = new TreeMap<>();
+        for (int i = 0; i < votes.size(); i++) {
+            // Drivers that rewrite batches report SUCCESS_NO_INFO (-2) rather than a row count
+            if (inserted[i] != 0) {
+                accepted.add(votes.get(i));
+                increments.merge(votes.get(i).quoteId(), 1, Integer::sum);
+            }
+        }
+        addVotes(increments);
+        return accepted;
+    }
+
+    /**
+     * Casts many votes at once, in one transaction: one query finds which quotes exist, one finds
+     * which of the votes are stored already, the rest are inserted as one batch, and the counters
+     * get their summed increments as another. A vote repeated within {@code votes} counts once.
+     *
+     * @return the outcome of each vote, in the order of {@code votes}
+     */
+    @Transactional
+    @BulkQuery
+    public List<VoteOutcome> castVotes(List<NewVote> votes) {
+        if (votes.isEmpty()) {
+            return List.of();
+        }
+        Set<Long> quoteIds = existingQuoteIds(votes.stream().map(NewVote::quoteId).distinct().toList());
+        Set<NewVote> stored = storedVotes(votes.stream().filter(vote -> quoteIds.contains(vote.quoteId())).distinct().toList());
+        List<VoteOutcome> outcomes = new ArrayList<>(votes.size());
+        List<Integer> fresh = new ArrayList<>();
+        Set<NewVote> seen = new HashSet<>();
+        for (int i = 0; i < votes.size(); i++) {
+            NewVote vote = votes.get(i);
+            if (!quoteIds.contains(vote.quoteId())) {
+                outcomes.add(VoteOutcome.QUOTE_NOT_FOUND);
+            } else if (stored.contains(vote) || !seen.add(vote)) {
+                outcomes.add(VoteOutcome.ALREADY_VOTED);
+            } else {
+                outcomes.add(VoteOutcome.ACCEPTED);
+                fresh.add(i);
+            }
+        }
+        int[] inserted = insertVotes(fresh.stream().map(votes::get).toList());
+        Map<Long, Integer> accepted = new TreeMap<>();
+        for (int i = 0; i < fresh.size(); i++) {
+            // Zero only when a concurrent vote for the same pair committed after the lookup
+            if (inserted[i] == 0) {
+                outcomes.set(fresh.get(i), VoteOutcome.ALREADY_VOTED);
+            } else {
+                accepted.merge(votes.get(fresh.get(i)).quoteId(), 1, Integer::sum);
+            }
+        }
+        addVotes(accepted);
+        return outcomes;
+    }
+
+    private int[] insertVotes(List<NewVote> votes) {
+        if (votes.isEmpty()) {
+            return new int[0];
+        }
+        return jdbcTemplate.batchUpdate(INSERT_VOTE, votes, votes.size(), (statement, vote) -> {
+            statement.setString(1, vote.userId());
+            statement.setLong(2, vote.quoteId());
+        })[0];
+    }
+
+    private void addVotes(Map<Long, Integer> increments) {
+        if (!increments.isEmpty()) {
+            jdbcTemplate.batchUpdate(ADD_VOTES, increments.entrySet(), increments.size(), (statement, increment) -> {
+                statement.setInt(1, increment.getValue());
+                statement.setLong(2, increment.getKey());
+            });
+        }
+    }
+
+    private Set<Long> existingQuoteIds(List<Long> ids) {
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT id FROM quotes WHERE id IN (" + placeholders + ")", Long.class, ids.toArray()));
+    }
+
+    private Set<NewVote> storedVotes(List<NewVote> votes) {
+        if (votes.isEmpty()) {
+            return Set.of();
+        }
+        String pairs = String.join(", ", Collections.nCopies(votes.size(), "(?, ?)"));
+        Object[] args = votes.stream().flatMap(vote -> Stream.of(vote.quoteId(), vote.userId())).toArray();
+        return new HashSet<>(jdbcTemplate.query("SELECT quote_id, user_id FROM votes WHERE (quote_id, user_id) IN (" + pairs + ")",
+                (row, rowNumber) -> new NewVote(row.getLong("quote_id"), row.getString("user_id")), args));
+    }
+
+    public boolean hasVoted(long quoteId, String userId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM votes WHERE quote_id = ? AND user_id = ?)", Boolean.class, quoteId, userId));
+    }
+
+    /**
+     * Stored votes per quote id, for quotes with at least one.
+     */
+    @BulkQuery
+    public Map<Long, Long> countVotesByQuote() {
+        Map<Long, Long> counts = new HashMap<>();
+        jdbcTemplate.query("SELECT quote_id, COUNT(*) AS votes FROM votes GROUP BY quote_id",
+                row -> {
+                    counts.put(row.getLong("quote_id"), row.getLong("votes"));
+                });
+        return counts;
+    }
+
+    @BulkQuery
+    public long countVotes() {
+        Long votes = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM votes", Long.class);
+        return votes == null ? 0 : votes;
+    }
+
+    /**
+     * Streams every vote stored after the vote with id {@code afterId}, in id order, without holding
+     * them all: the read runs in a read-only transaction with a fetch size, since the PostgreSQL
+     * driver only reads a result through a cursor outside autocommit and otherwise buffers all of it.
+     *
+     * @return the highest vote id read, or {@code afterId} when there were none
+     */
+    @Transactional(readOnly = true)
+    @BulkQuery
+    public long forEachVoteAfter(long afterId, Consumer<NewVote> handler) {
+        long[] highest = {afterId};
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("SELECT id, quote_id, user_id FROM votes WHERE id > ? ORDER BY id");
+            statement.setFetchSize(FETCH_SIZE);
+            statement.setLong(1, afterId);
+            return statement;
+        }, row -> {
+            handler.accept(new NewVote(row.getLong("quote_id"), row.getString("user_id")));
+            highest[0] = Math.max(highest[0], row.getLong("id"));
+        });
+        return highest[0];
+    }
+
+    public boolean quoteExists(long quoteId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM quotes WHERE id = ?)", Boolean.class, quoteId));
+    }
+
+    public record NewVote(long quoteId, String userId) {
+    }
+
+    public enum VoteOutcome {
+        ACCEPTED, ALREADY_VOTED, QUOTE_NOT_FOUND
+    }
+}
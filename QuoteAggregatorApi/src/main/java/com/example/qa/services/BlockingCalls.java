@@ -0,0 +1,20 @@
+package com.example.qa.services;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+
+final class BlockingCalls {
+
+    private BlockingCalls() {
+    }
+
+    /**
+     * JPA calls block the calling thread on a JDBC round trip, so they must never run on the
+     * reactor-netty event loop that delivered the upstream response or the HTTP request.
+     */
+    static <T> Mono<T> blocking(Callable<T> repositoryCall) {
+        return Mono.fromCallable(repositoryCall).subscribeOn(Schedulers.boundedElastic());
+    }
+}
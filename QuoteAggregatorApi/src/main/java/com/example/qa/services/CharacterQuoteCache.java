@@ -0,0 +1,49 @@
+package com.example.qa.services;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Full upstream result set per Simpsons character, mapped but not stored, keyed by normalized
+ * character name. Entries past {@code refreshAfter} keep being served while a single background
+ * reload replaces them; entries past {@code expireAfter} or beyond {@code maximumSize} are evicted.
+ */
+public class CharacterQuoteCache {
+    private final AsyncLoadingCache<String, List<Quote>> cache;
+
+    public CharacterQuoteCache(QuoteAggregatorProperties.CharacterCache config,
+                               Function<String, Mono<List<Quote>>> loader, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaximumSize())
+                .refreshAfterWrite(config.getRefreshAfter())
+                .expireAfterWrite(config.getExpireAfter())
+                .recordStats()
+                .buildAsync((character, executor) -> loader.apply(character).toFuture());
+        // Publishes cache.gets{result=hit|miss}, cache.evictions, cache.size, cache.load... tagged cache=quotes.character
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "quotes.character");
+    }
+
+    /**
+     * Cancelling the returned Mono does not cancel the shared load other callers may be waiting on.
+     */
+    public Mono<List<Quote>> get(String character) {
+        return Mono.fromFuture(() -> cache.get(normalize(character)), true);
+    }
+
+    public void invalidate(String character) {
+        cache.synchronous().invalidate(normalize(character));
+    }
+
+    public static String normalize(String character) {
+        return character.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
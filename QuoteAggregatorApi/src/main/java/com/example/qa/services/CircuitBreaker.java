@@ -0,0 +1,140 @@
+package com.example.qa.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Stops calling an upstream that keeps failing. {@code failureThreshold} failures in a row open
+ * the circuit, and calls are rejected without being attempted. Once {@code openFor} has passed
+ * the circuit is half-open: a single probe call goes through, and its outcome closes the circuit
+ * or opens it again. A probe that is cancelled before it completes leaves the circuit half-open
+ * for the next caller.
+ */
+public class CircuitBreaker {
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private enum Permit {
+        REJECTED, CALL, PROBE
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openForNanos;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private final Map<State, Counter> transitions = new EnumMap<>(State.class);
+    private volatile long openedAt;
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openFor, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.failureThreshold = Math.max(failureThreshold, 1);
+        this.openForNanos = openFor.toNanos();
+        Gauge.builder("quotes.source.circuit.state", state, current -> current.get().ordinal())
+                .tag("source", name)
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
+        for (State target : State.values()) {
+            transitions.put(target, Counter.builder("quotes.source.circuit.transitions")
+                    .tag("source", name)
+                    .tag("state", target.name().toLowerCase(Locale.ROOT))
+                    .description("Circuit breaker state changes, by the state entered")
+                    .register(meterRegistry));
+        }
+    }
+
+    public <T> Mono<T> call(Mono<T> call) {
+        return Mono.defer(() -> {
+            Permit permit = acquire();
+            if (permit == Permit.REJECTED) {
+                return Mono.error(new UpstreamUnavailableException("Circuit open for quote source: " + name));
+            }
+            return call
+                    .doOnSuccess(value -> onSuccess(permit))
+                    .doOnError(error -> onFailure(permit))
+                    .doOnCancel(() -> {
+                        if (permit == Permit.PROBE) {
+                            probing.set(false);
+                        }
+                    });
+        });
+    }
+
+    public State state() {
+        return state.get();
+    }
+
+    /**
+     * Whether a call made now would be attempted (or at least be allowed to probe).
+     */
+    public boolean allowsCalls() {
+        return state.get() != State.OPEN || System.nanoTime() - openedAt >= openForNanos;
+    }
+
+    public int consecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    private Permit acquire() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return Permit.CALL;
+        }
+        if (current == State.OPEN) {
+            if (System.nanoTime() - openedAt < openForNanos) {
+                return Permit.REJECTED;
+            }
+            transition(State.OPEN, State.HALF_OPEN);
+        }
+        if (state.get() == State.CLOSED) {
+            return Permit.CALL;
+        }
+        return state.get() == State.HALF_OPEN && probing.compareAndSet(false, true) ? Permit.PROBE : Permit.REJECTED;
+    }
+
+    private void onSuccess(Permit permit) {
+        consecutiveFailures.set(0);
+        if (permit == Permit.PROBE) {
+            transition(State.HALF_OPEN, State.CLOSED);
+            probing.set(false);
+        }
+    }
+
+    private void onFailure(Permit permit) {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (permit == Permit.PROBE) {
+            open(State.HALF_OPEN);
+            probing.set(false);
+        } else if (failures >= failureThreshold) {
+            open(State.CLOSED);
+        }
+    }
+
+    private void open(State from) {
+        if (state.get() == from) {
+            // Set before the state flips, so nobody sees the new open state with an old timestamp
+            openedAt = System.nanoTime();
+            transition(from, State.OPEN);
+        }
+    }
+
+    private boolean transition(State from, State to) {
+        if (state.compareAndSet(from, to)) {
+            transitions.get(to).increment();
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.qa.services;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.util.Optional;
+
+/**
+ * Stored quotes by content hash, so a quote the upstream returns again is answered without a
+ * database round trip. Holds up to {@code maximumSize} snapshots and evicts the least useful ones;
+ * votes cast through this instance keep the cached counts current.
+ */
+public class KnownQuoteCache {
+    private final Cache<String, Quote> cache;
+
+    public KnownQuoteCache(QuoteAggregatorProperties.Dedupe config, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getCacheSize())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "quotes.known");
+    }
+
+    public Optional<Quote> get(String contentHash) {
+        return Optional.ofNullable(cache.getIfPresent(contentHash)).map(quote -> quote.toBuilder().build());
+    }
+
+    public void put(Quote quote) {
+        cache.put(quote.getContentHash(), quote.toBuilder().build());
+    }
+
+    /**
+     * Refreshes the vote count of a cached quote; counts never go back, whatever order votes land in.
+     */
+    public void recordVotes(Quote quote) {
+        if (quote.getContentHash() == null) {
+            return;
+        }
+        cache.asMap().computeIfPresent(quote.getContentHash(),
+                (hash, cached) -> cached.getVotes() >= quote.getVotes() ? cached : quote.toBuilder().build());
+    }
+}
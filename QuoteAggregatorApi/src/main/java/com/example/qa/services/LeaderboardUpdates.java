@@ -0,0 +1,149 @@
+package com.example.qa.services;
+
+import com.example.qa.entities.Quote;
+import com.example.qa.models.LeaderboardChange;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live leaderboard feed for SSE clients. Every subscriber gets the current top on connect, then
+ * delta events. Deltas are not produced per vote: once per {@code window} a single shared ticker
+ * diffs the leaderboard against what it last published, so a burst of votes reaches each client as
+ * one event. The ticker starts with the first subscriber and then only checks the leaderboard
+ * version while nothing changes. A subscriber that cannot keep up keeps only its newest
+ * {@code bufferSize} deltas; entries carry absolute counts and ranks, so skipping an older delta
+ * never corrupts a newer one.
+ */
+public class LeaderboardUpdates {
+    private final QuoteLeaderboard leaderboard;
+    private final int trackedSize;
+    private final int bufferSize;
+    private final Flux<Long> ticks;
+    // Nothing is buffered for clients that are not connected; each client buffers for itself
+    private final Sinks.Many<Delta> deltas = Sinks.many().multicast().directBestEffort();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final Counter dropped;
+    // Only touched by the ticker, which never runs concurrently with itself, and once before it starts
+    private long publishedVersion = -1;
+    private Map<Long, LeaderboardChange> published = Map.of();
+
+    public LeaderboardUpdates(QuoteLeaderboard leaderboard, int trackedSize, Duration window, int bufferSize,
+                              MeterRegistry meterRegistry) {
+        this.leaderboard = leaderboard;
+        this.trackedSize = trackedSize;
+        this.bufferSize = bufferSize;
+        this.ticks = Flux.interval(window).onBackpressureDrop();
+        Gauge.builder("quotes.leaderboard.stream.subscribers", subscribers, AtomicInteger::get)
+                .description("Connected leaderboard stream clients")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("quotes.leaderboard.stream.dropped")
+                .description("Delta events discarded because a client was not reading fast enough")
+                .register(meterRegistry);
+    }
+
+    /**
+     * A {@code snapshot} event with the top {@code limit} quotes followed by {@code delta} events
+     * restricted to that range.
+     */
+    public Flux<ServerSentEvent<Object>> subscribe(int limit) {
+        return Flux.defer(() -> {
+            // Started before the snapshot is taken, so the first diff can't skip changes the snapshot missed
+            startTicker();
+            long snapshotVersion = leaderboard.version();
+            ServerSentEvent<Object> snapshot = ServerSentEvent.<Object>builder(leaderboard.top(limit))
+                    .id(Long.toString(snapshotVersion))
+                    .event("snapshot")
+                    .build();
+            Flux<ServerSentEvent<Object>> updates = deltas.asFlux()
+                    .filter(delta -> delta.version() > snapshotVersion)
+                    .map(delta -> ServerSentEvent.<Object>builder(visibleChanges(delta.changes(), limit))
+                            .id(Long.toString(delta.version()))
+                            .event("delta")
+                            .build())
+                    .filter(event -> !((List<?>) event.data()).isEmpty())
+                    .onBackpressureBuffer(bufferSize, event -> dropped.increment(), BufferOverflowStrategy.DROP_OLDEST);
+            return Flux.concat(Mono.just(snapshot), updates);
+        })
+                .doOnSubscribe(subscription -> subscribers.incrementAndGet())
+                .doFinally(signal -> subscribers.decrementAndGet());
+    }
+
+    public int subscriberCount() {
+        return subscribers.get();
+    }
+
+    private void startTicker() {
+        if (started.compareAndSet(false, true)) {
+            diff();
+            ticks.subscribe(tick -> {
+                Delta delta = diff();
+                if (delta != null) {
+                    deltas.tryEmitNext(delta);
+                }
+            });
+        }
+    }
+
+    private static List<LeaderboardChange> visibleChanges(List<LeaderboardChange> changes, int limit) {
+        List<LeaderboardChange> visible = new ArrayList<>();
+        for (LeaderboardChange change : changes) {
+            boolean inside = within(change.rank(), limit);
+            boolean wasInside = within(change.previousRank(), limit);
+            if (inside || wasInside) {
+                // The client already has the quote if it was inside its range before
+                visible.add(inside && !wasInside ? change : change.withoutQuote());
+            }
+        }
+        return visible;
+    }
+
+    private static boolean within(Integer rank, int limit) {
+        return rank != null && rank <= limit;
+    }
+
+    private Delta diff() {
+        long version = leaderboard.version();
+        if (version == publishedVersion) {
+            return null;
+        }
+        List<Quote> top = leaderboard.top(trackedSize);
+        Map<Long, LeaderboardChange> current = new HashMap<>();
+        List<LeaderboardChange> changes = new ArrayList<>();
+        for (int i = 0; i < top.size(); i++) {
+            Quote quote = top.get(i);
+            int rank = i + 1;
+            LeaderboardChange previous = published.get(quote.getId());
+            if (previous == null || previous.votes() != quote.getVotes() || previous.rank() != rank) {
+                changes.add(new LeaderboardChange(quote.getId(), quote.getVotes(), rank,
+                        previous == null ? null : previous.rank(), quote));
+            }
+            current.put(quote.getId(), new LeaderboardChange(quote.getId(), quote.getVotes(), rank, null, null));
+        }
+        for (LeaderboardChange previous : published.values()) {
+            if (!current.containsKey(previous.id())) {
+                changes.add(new LeaderboardChange(previous.id(), previous.votes(), null, previous.rank(), null));
+            }
+        }
+        published = current;
+        publishedVersion = version;
+        return changes.isEmpty() ? null : new Delta(version, changes);
+    }
+
+    private record Delta(long version, List<LeaderboardChange> changes) {
+    }
+}
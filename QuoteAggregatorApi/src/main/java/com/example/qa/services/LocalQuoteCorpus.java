@@ -0,0 +1,182 @@
+package com.example.qa.services;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The ids of every stored quote, held as primitive arrays per source and per character, so a
+ * uniformly random stored quote is one array read instead of an {@code ORDER BY RANDOM()} scan.
+ * Ids are only ever appended: a row is added once (a bitset of the ids seen guards against
+ * duplicates, which would skew the sampling) and quotes are never deleted.
+ * <p>
+ * Ids are stored as ints, four bytes each, and are expected to stay below
+ * {@link Integer#MAX_VALUE}; larger ids are ignored. Readers never lock: an {@link IdPool} publishes
+ * the new element before its new size.
+ */
+public class LocalQuoteCorpus {
+    private final Map<String, IdPool> bySource = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, IdPool>> byCharacter = new ConcurrentHashMap<>();
+    private final BitSet ids = new BitSet();
+    private final MeterRegistry meterRegistry;
+
+    public LocalQuoteCorpus(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("quotes.corpus.memory", this, LocalQuoteCorpus::memoryBytes)
+                .baseUnit("bytes")
+                .description("Heap held by the id arrays and the seen-id bitset of the local quote corpus")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds a stored quote; {@code character} may be null.
+     *
+     * @return false if the id was already there or is too large
+     */
+    public synchronized boolean add(long id, String source, String character) {
+        if (id < 0 || id > Integer.MAX_VALUE || source == null || ids.get((int) id)) {
+            return false;
+        }
+        ids.set((int) id);
+        bySource.computeIfAbsent(source, this::sourcePool).add((int) id);
+        if (character != null && !character.isBlank()) {
+            byCharacter.computeIfAbsent(source, name -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(character.toLowerCase(Locale.ROOT), name -> new IdPool())
+                    .add((int) id);
+        }
+        return true;
+    }
+
+    public OptionalLong sample(String source) {
+        IdPool pool = bySource.get(source);
+        return pool == null ? OptionalLong.empty() : pool.sample();
+    }
+
+    /**
+     * A stored quote of any source, every quote equally likely.
+     */
+    public OptionalLong sampleAny() {
+        return sampleAcross(List.copyOf(bySource.values()));
+    }
+
+    /**
+     * A stored quote of {@code source} whose character name contains {@code character}, ignoring
+     * case, the way the Simpsons API matches it. An exact name is a single lookup; a partial one
+     * walks the character names of the source, which number in the hundreds, not the quotes.
+     */
+    public OptionalLong sampleByCharacter(String source, String character) {
+        Map<String, IdPool> characters = byCharacter.get(source);
+        if (characters == null) {
+            return OptionalLong.empty();
+        }
+        String wanted = character.toLowerCase(Locale.ROOT);
+        IdPool exact = characters.get(wanted);
+        if (exact != null) {
+            return exact.sample();
+        }
+        List<IdPool> matching = new ArrayList<>();
+        characters.forEach((name, pool) -> {
+            if (name.contains(wanted)) {
+                matching.add(pool);
+            }
+        });
+        return sampleAcross(matching);
+    }
+
+    public int size(String source) {
+        IdPool pool = bySource.get(source);
+        return pool == null ? 0 : pool.size();
+    }
+
+    /**
+     * Bytes held by the id arrays (including their unused headroom) and the bitset; map entries and
+     * object headers add a few dozen bytes per source and character on top.
+     */
+    public synchronized long memoryBytes() {
+        long bytes = ids.size() / 8;
+        for (IdPool pool : bySource.values()) {
+            bytes += pool.capacityBytes();
+        }
+        for (Map<String, IdPool> characters : byCharacter.values()) {
+            for (IdPool pool : characters.values()) {
+                bytes += pool.capacityBytes();
+            }
+        }
+        return bytes;
+    }
+
+    private IdPool sourcePool(String source) {
+        IdPool pool = new IdPool();
+        Gauge.builder("quotes.corpus.size", pool, IdPool::size)
+                .tag("source", source)
+                .description("Stored quotes of the source that offline serving and fallbacks sample from")
+                .register(meterRegistry);
+        return pool;
+    }
+
+    // Picks a pool with probability proportional to its size, so every id is equally likely
+    private static OptionalLong sampleAcross(List<IdPool> pools) {
+        int[] sizes = new int[pools.size()];
+        long total = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = pools.get(i).size();
+            total += sizes[i];
+        }
+        if (total == 0) {
+            return OptionalLong.empty();
+        }
+        long pick = ThreadLocalRandom.current().nextLong(total);
+        for (int i = 0; i < sizes.length; i++) {
+            if (pick < sizes[i]) {
+                return OptionalLong.of(pools.get(i).get((int) pick));
+            }
+            pick -= sizes[i];
+        }
+        throw new IllegalStateException("Sampled past the end of the corpus");
+    }
+
+    /**
+     * An append-only int array. Only {@link LocalQuoteCorpus#add} writes, under the corpus lock; a
+     * reader that reads the size first sees every element below it.
+     */
+    private static final class IdPool {
+        private volatile int[] ids = new int[16];
+        private volatile int size;
+
+        void add(int id) {
+            int[] current = ids;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                ids = current;
+            }
+            current[size] = id;
+            size = size + 1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            return ids[index];
+        }
+
+        OptionalLong sample() {
+            int n = size;
+            return n == 0 ? OptionalLong.empty() : OptionalLong.of(ids[ThreadLocalRandom.current().nextInt(n)]);
+        }
+
+        long capacityBytes() {
+            return 4L * ids.length;
+        }
+    }
+}
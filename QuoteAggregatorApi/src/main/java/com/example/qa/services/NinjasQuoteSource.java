@@ -0,0 +1,101 @@
+package com.example.qa.services;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.models.NinjasModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.Arrays;
+import java.util.List;
+
+@Component
+public class NinjasQuoteSource implements QuoteSource {
+    private final ConnectionProvider connections;
+    private final WebClient client;
+    private final String baseUrl;
+    private final String apiKey;
+    private final int pageSize;
+    private final UpstreamGuard guard;
+
+    public NinjasQuoteSource(@Value("${web.api.apiKey}") String apiKey, WebClient.Builder webClientBuilder,
+                             QuoteAggregatorProperties properties, MeterRegistry meterRegistry) {
+        this.baseUrl = properties.getSources().getNinjas().getBaseUrl();
+        QuoteAggregatorProperties.Connections connectionConfig = properties.getSources().getNinjas().getConnections();
+        this.connections = UpstreamConnections.pool(name(), connectionConfig);
+        // A copy, so configuring this client leaves the shared builder untouched
+        this.client = webClientBuilder.clone()
+                .baseUrl(baseUrl)
+                .clientConnector(UpstreamConnections.connector(connections, connectionConfig))
+                .build();
+        this.apiKey = apiKey;
+        this.pageSize = properties.getBatch().getNinjasPageSize();
+        this.guard = new UpstreamGuard(name(), properties.getSources().getNinjas(), properties.getSources().getLatencyWindow(), meterRegistry);
+    }
+
+    @Override
+    public String name() {
+        return "ninjas";
+    }
+
+    @Override
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    @Override
+    public int pageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public Mono<Quote> fetchQuote() {
+        return request("/quotes").map(quotes -> quotes.get(0));
+    }
+
+    /**
+     * Asking for more than one quote (the {@code limit} parameter) needs a premium API key.
+     */
+    @Override
+    public Mono<List<Quote>> fetchQuotes(int count) {
+        return request(count == 1 ? "/quotes" : "/quotes?limit=" + count);
+    }
+
+    @Override
+    public UpstreamGuard guard() {
+        return guard;
+    }
+
+    @PreDestroy
+    public void close() {
+        connections.dispose();
+    }
+
+    private Mono<List<Quote>> request(String uri) {
+        return guard.call(client
+                .get()
+                .uri(uri)
+                .accept(MediaType.APPLICATION_JSON)
+                .header("X-Api-Key", apiKey)
+                .retrieve()
+                .bodyToMono(NinjasModel[].class)
+                .map(quotes -> Arrays.stream(quotes).map(NinjasQuoteSource::toQuote).toList()));
+    }
+
+    public static Quote toQuote(NinjasModel model) {
+        return Quote.builder()
+                .quoteText(Quote.storedText(model.getQuote()))
+                .author(model.getAuthor())
+                .category(model.getCategory())
+                .source("ninjas")
+                .votes(0)
+                .contentHash(Quote.contentHash(model.getQuote()))
+                .build();
+    }
+}
@@ -1,172 +1,267 @@
 package com.example.qa.services;
 
+import com.example.qa.config.QuoteAggregatorProperties;
 import com.example.qa.entities.Quote;
-import com.example.qa.entities.Vote;
-import com.example.qa.models.NinjasModel;
-import com.example.qa.models.SimpsonsModel;
-import com.example.qa.repositories.QuoteRepository;
-import com.example.qa.repositories.VoteRepository;
+import com.example.qa.models.QuoteSourceStatus;
+import com.example.qa.repositories.QuoteJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static com.example.qa.services.BlockingCalls.blocking;
 
 @Service
 public class QuoteAggregatorService {
-    private final WebClient simpsonsClient;
-    private final WebClient ninjasClient;
-    private final String ninjasAPIKey;
-    private final QuoteRepository quoteRepository;
-    private final VoteRepository voteRepository;
+    private final QuoteSourceRegistry sources;
+    private final QuoteJdbcRepository quoteJdbcRepository;
+    private final QuoteReadModelService readModels;
+    private final boolean prefetchEnabled;
+    private final Map<String, QuotePrefetchBuffer> prefetchBuffers = new LinkedHashMap<>();
+    private final CharacterQuoteCache characterCache;
+    private final int characterFetchCount;
+    private final QuoteAggregatorProperties.Batch batch;
+    // Concurrent misses for the same content hash share one insert
+    private final SingleFlight<String, Optional<Quote>> quotePersists = new SingleFlight<>();
+    private final boolean offline;
+    // Duplicates the database turned away are counted by QuoteJdbcRepository
+    private final Counter cachedDuplicates;
+    // Per source, or "any", then per reason
+    private final Map<String, Map<String, Counter>> fallbacks = new HashMap<>();
 
 
     @Autowired
-    public QuoteAggregatorService(@Value("${web.api.apiKey}") String ninjasAPIKey, WebClient.Builder webClientBuilder, QuoteRepository quoteRepository, VoteRepository voteRepository) {
-        this.simpsonsClient = webClientBuilder.baseUrl("https://thesimpsonsquoteapi.glitch.me").build();
-        this.ninjasClient = webClientBuilder.baseUrl("https://api.api-ninjas.com/v1").build();
-        this.ninjasAPIKey = ninjasAPIKey;
-        this.quoteRepository = quoteRepository;
-        this.voteRepository = voteRepository;
+    public QuoteAggregatorService(QuoteSourceRegistry sources, QuoteJdbcRepository quoteJdbcRepository, QuoteReadModelService readModels,
+                                  QuoteAggregatorProperties properties, MeterRegistry meterRegistry) {
+        this.sources = sources;
+        this.quoteJdbcRepository = quoteJdbcRepository;
+        this.readModels = readModels;
+        this.prefetchEnabled = properties.getPrefetch().isEnabled();
+        for (QuoteSource source : sources.all()) {
+            prefetchBuffers.put(source.name(), new QuotePrefetchBuffer(source.name(), properties.getPrefetch(),
+                    () -> fetchQuote(source.name()), meterRegistry));
+        }
+        this.characterFetchCount = properties.getCharacterCache().getFetchCount();
+        this.characterCache = new CharacterQuoteCache(properties.getCharacterCache(), this::fetchCharacterQuotes, meterRegistry);
+        this.batch = properties.getBatch();
+        this.offline = properties.getCorpus().isOffline();
+        this.cachedDuplicates = Counter.builder("quotes.dedupe.hits")
+                .tag("via", "cache")
+                .description("Fetched quotes that were already stored")
+                .register(meterRegistry);
+        List<String> fallbackSources = new ArrayList<>(sources.all().stream().map(QuoteSource::name).toList());
+        fallbackSources.add("any");
+        for (String source : fallbackSources) {
+            Map<String, Counter> reasons = new HashMap<>();
+            for (String reason : List.of("throttled", "unavailable", "timeout", "error")) {
+                reasons.put(reason, Counter.builder("quotes.source.fallbacks")
+                        .tag("source", source)
+                        .tag("reason", reason)
+                        .description("Quotes served from the local corpus because the upstream failed")
+                        .register(meterRegistry));
+            }
+            fallbacks.put(source, reasons);
+        }
     }
 
     public Mono<Optional<Quote>> getSimpsonsQuote() {
-        return simpsonsClient
-                .get()
-                .uri("/quotes")
-                .accept(MediaType.APPLICATION_JSON)
-                .retrieve()
-                .bodyToMono(SimpsonsModel[].class)
-                .map(quotes ->
-                {
-                    SimpsonsModel simpsonsModel = quotes[0];
-                    saveQuote(Quote.builder()
-                            .quoteText(simpsonsModel.getQuote())
-                            .image(simpsonsModel.getImage())
-                            .characterDirection(simpsonsModel.getCharacterDirection())
-                            .character(simpsonsModel.getCharacter())
-                            .source("simpsons")
-                            .build()
-                    );
-                    return convertModelToQuote(simpsonsModel);
-                });
+        return getQuote("simpsons");
     }
 
-    public Mono<Optional<Quote>> getFilteredSimpsonsQuote(String character) {
-        return simpsonsClient
-                .get()
-                .uri("/quotes?character=" + character)
-                .accept(MediaType.APPLICATION_JSON)
-                .retrieve()
-                .bodyToMono(SimpsonsModel[].class)
-                .map(quotes ->
-                {
-                    SimpsonsModel simpsonsModel = quotes[0];
-                    saveQuote(Quote.builder()
-                            .quoteText(simpsonsModel.getQuote())
-                            .image(simpsonsModel.getImage())
-                            .characterDirection(simpsonsModel.getCharacterDirection())
-                            .character(simpsonsModel.getCharacter())
-                            .source("simpsons")
-                            .build()
-                    );
-                    return convertModelToQuote(simpsonsModel);
-                });
+    public Mono<Optional<Quote>> getNinjasQuote() {
+        return getQuote("ninjas");
+    }
 
+    public Mono<Optional<Quote>> getQuote(String source) {
+        QuotePrefetchBuffer buffer = prefetchBuffers.get(source);
+        if (buffer == null) {
+            return Mono.error(new RuntimeException("Unknown quote source: " + source));
+        }
+        if (offline) {
+            return storedQuote(readModels.corpus().sample(source), () -> new RuntimeException("No stored quotes for source: " + source));
+        }
+        return servePrefetched(buffer, () -> fetchQuote(source))
+                .onErrorResume(QuoteAggregatorService::isUpstreamFailure,
+                        error -> fallback(source, error, () -> readModels.corpus().sample(source)));
     }
 
-    public Mono<Optional<Quote>> getNinjasQuote() {
-        return ninjasClient
-                .get()
-                .uri("/quotes")
-                .accept(MediaType.APPLICATION_JSON)
-                .header("X-Api-Key", ninjasAPIKey)
-                .retrieve()
-                .bodyToMono(NinjasModel[].class)
-                .map(quotes ->
-                {
-                    NinjasModel ninjasModel = quotes[0];
-                    saveQuote(Quote.builder()
-                            .quoteText(ninjasModel.getQuote())
-                            .author(ninjasModel.getAuthor())
-                            .category(ninjasModel.getCategory())
-                            .source("ninjas")
-                            .build()
-                    );
-                    return convertNinjasModelToQuote(ninjasModel);
-                });
-    }
-
-    public List<Quote> getTopQuotes(int limit) {
-        int validLimit = Math.min(Math.max(limit, 5), 20);
-        return quoteRepository.findByOrderByVotesDesc(PageRequest.of(0, validLimit));
-    }
-
-    public Quote voteForQuote(Long quoteId, String userId) {
-        Quote quote = quoteRepository.findById(quoteId)
-                .orElseThrow(() -> new RuntimeException("Quote not found with id: " + quoteId));
-
-        // Check if the user has already voted
-        boolean hasVoted = voteRepository.existsByQuoteIdAndUserId(quoteId, userId);
-        if (hasVoted) {
-            throw new RuntimeException("User has already voted for this quote.");
+    private Mono<Optional<Quote>> fetchQuote(String source) {
+        return sources.fetchQuote(source).flatMap(this::persistQuote);
+    }
+
+    /**
+     * A quote from whichever source answers first.
+     */
+    public Mono<Optional<Quote>> getRandomQuote() {
+        return sources.fetchFromAny().flatMap(this::persistQuote)
+                .onErrorResume(QuoteAggregatorService::isUpstreamFailure,
+                        error -> fallback("any", error, () -> readModels.corpus().sampleAny()));
+    }
+
+    public Map<String, String> getQuoteSources() {
+        return sources.baseUrls();
+    }
+
+    /**
+     * Strong ETag of {@link #getQuoteSources()}, which only changes with the configuration.
+     */
+    public String getQuoteSourcesETag() {
+        return "\"" + Integer.toHexString(sources.baseUrls().hashCode()) + "\"";
+    }
+
+    public List<QuoteSourceStatus> getQuoteSourceStatuses() {
+        return sources.statuses();
+    }
+
+    public Mono<Optional<Quote>> getFilteredSimpsonsQuote(String character) {
+        if (offline) {
+            return storedQuote(readModels.corpus().sampleByCharacter("simpsons", character),
+                    () -> new RuntimeException("No quotes found for character: " + character));
         }
+        return characterCache.get(character)
+                .flatMap(quotes -> persistQuote(quotes.get(ThreadLocalRandom.current().nextInt(quotes.size()))))
+                .onErrorResume(QuoteAggregatorService::isUpstreamFailure,
+                        error -> fallback("simpsons", error, () -> readModels.corpus().sampleByCharacter("simpsons", character)));
+    }
 
-        // Save the vote
-        Vote vote = new Vote(null, quote, userId);
-        voteRepository.save(vote);
-
-        // Increment vote count
-        quote.setVotes(quote.getVotes() + 1);
-        return quoteRepository.save(quote);
-    }
-
-
-    private Quote saveQuote(Quote quoteToBeSaved) {
-        Optional<Quote> existingQuoteEntity = quoteRepository.findByQuoteText(quoteToBeSaved.getQuoteText());
-
-        if (existingQuoteEntity.isPresent()) {
-            return existingQuoteEntity.get();
-        } else if(quoteToBeSaved.getSource().equals("simpsons")){
-            Quote newQuote = new Quote();
-            newQuote.setQuoteText(quoteToBeSaved.getQuoteText());
-            newQuote.setCharacter(quoteToBeSaved.getCharacter());
-            newQuote.setSource("simpsons");
-            newQuote.setImage(quoteToBeSaved.getImage());
-            newQuote.setCharacterDirection(quoteToBeSaved.getCharacterDirection());
-            newQuote.setVotes(0);
-            return quoteRepository.save(newQuote);
-        } else{
-            Quote newQuote = new Quote();
-            String quoteText = quoteToBeSaved.getQuoteText();
-            if (quoteText != null && quoteText.length() > 255) {
-                quoteText = quoteText.substring(0, 255);
-            }
-            newQuote.setQuoteText(quoteText);
-            newQuote.setAuthor(quoteToBeSaved.getAuthor());
-            newQuote.setCategory(quoteToBeSaved.getCategory());
-            newQuote.setSource("ninjas");
-            newQuote.setVotes(0);
-            return quoteRepository.save(newQuote);
+    public void invalidateCharacterCache(String character) {
+        characterCache.invalidate(character);
+    }
+
+    private Mono<List<Quote>> fetchCharacterQuotes(String character) {
+        return sources.get("simpsons").fetchQuotesBy(character, characterFetchCount)
+                .map(quotes -> List.copyOf(quotes.stream()
+                        .collect(Collectors.toMap(Quote::getContentHash, quote -> quote, (first, duplicate) -> first, LinkedHashMap::new))
+                        .values()))
+                .filter(quotes -> !quotes.isEmpty())
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("No quotes found for character: " + character)));
+    }
 
+    /**
+     * Up to {@code count} distinct quotes from one source, fetched in pages of as many quotes as the
+     * upstream returns per call, with at most {@code concurrency} pages in flight. Quotes not already
+     * known are stored with a single bulk insert. Pages that fail are skipped, so the batch may come
+     * back short.
+     */
+    public Flux<Quote> getQuoteBatch(String source, int count) {
+        Optional<QuoteSource> quoteSource = sources.find(source);
+        if (quoteSource.isEmpty()) {
+            return Flux.error(new RuntimeException("Unknown quote source: " + source));
         }
+        QuoteSource page = quoteSource.get();
+        int validCount = Math.min(Math.max(count, 1), batch.getMaxCount());
+        int pageSize = Math.max(page.pageSize(), 1);
+        int pages = (validCount + pageSize - 1) / pageSize;
+        return Flux.range(0, pages)
+                .flatMap(i -> page.fetchQuotes(Math.min(pageSize, validCount - i * pageSize))
+                        .onErrorResume(e -> Mono.empty()), batch.getConcurrency())
+                .flatMapIterable(quotes -> quotes)
+                .collect(Collectors.toMap(Quote::getContentHash, quote -> quote, (first, duplicate) -> first, LinkedHashMap::new))
+                .map(quotes -> List.copyOf(quotes.values()))
+                .filter(quotes -> !quotes.isEmpty())
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("No quotes available from source: " + source)))
+                .flatMap(quotes -> blocking(() -> persistQuotes(quotes)))
+                .flatMapIterable(stored -> stored);
     }
 
-    private Optional<Quote> convertNinjasModelToQuote(NinjasModel model) {
-        return quoteRepository.findByQuoteText(model.getQuote());
+    @Scheduled(fixedDelayString = "${quotes.prefetch.refill-interval-ms:1000}")
+    public void refillPrefetchBuffers() {
+        if (!prefetchEnabled || offline) {
+            return;
+        }
+        for (QuotePrefetchBuffer buffer : prefetchBuffers.values()) {
+            if (buffer.belowLowWatermark()) {
+                buffer.refill().subscribe();
+            }
+        }
+    }
 
+    private Mono<Optional<Quote>> servePrefetched(QuotePrefetchBuffer buffer, Supplier<Mono<Optional<Quote>>> upstream) {
+        if (!prefetchEnabled) {
+            return upstream.get();
+        }
+        return Mono.defer(() -> {
+            Optional<Quote> prefetched = buffer.poll();
+            if (buffer.belowLowWatermark()) {
+                buffer.refill().subscribe();
+            }
+            return prefetched.isPresent() ? Mono.just(prefetched) : upstream.get();
+        });
     }
 
-    private Optional<Quote> convertModelToQuote(SimpsonsModel model) {
-        return quoteRepository.findByQuoteText(model.getQuote());
+    /**
+     * A quote seen before is answered from the known-quote cache; otherwise one insert keyed on its
+     * content hash stores it or finds the existing row.
+     */
+    private Mono<Optional<Quote>> persistQuote(Quote quote) {
+        return Mono.defer(() -> {
+            Optional<Quote> known = readModels.known(quote.getContentHash());
+            if (known.isPresent()) {
+                cachedDuplicates.increment();
+                return Mono.just(known);
+            }
+            return quotePersists.execute(quote.getContentHash(),
+                    () -> blocking(() -> Optional.of(readModels.remember(quoteJdbcRepository.upsert(quote)))));
+        });
     }
 
+    private List<Quote> persistQuotes(List<Quote> quotes) {
+        Map<String, Quote> stored = new HashMap<>();
+        List<Quote> unknown = new ArrayList<>();
+        for (Quote quote : quotes) {
+            readModels.known(quote.getContentHash()).ifPresentOrElse(known -> {
+                cachedDuplicates.increment();
+                stored.put(known.getContentHash(), known);
+            }, () -> unknown.add(quote));
+        }
+        if (!unknown.isEmpty()) {
+            quoteJdbcRepository.saveAllIfAbsent(unknown).forEach(quote -> stored.put(quote.getContentHash(), readModels.remember(quote)));
+        }
+        return quotes.stream().map(quote -> stored.get(quote.getContentHash())).filter(Objects::nonNull).toList();
+    }
 
+    /**
+     * Serves a stored quote when the upstream could not be asked (its circuit is open, it is at its
+     * concurrency limit or out of rate tokens) or did not answer in time; the original error stands
+     * when nothing suitable is stored.
+     */
+    private Mono<Optional<Quote>> fallback(String source, Throwable error, Supplier<OptionalLong> sample) {
+        fallbacks.get(source).get(error instanceof UpstreamThrottledException ? "throttled"
+                : error instanceof UpstreamUnavailableException ? "unavailable"
+                : error instanceof TimeoutException ? "timeout" : "error").increment();
+        return storedQuote(sample.get(), () -> error);
+    }
 
+    /**
+     * Reads the sampled quote by primary key; {@code missing} is raised when there was nothing to
+     * sample.
+     */
+    private Mono<Optional<Quote>> storedQuote(OptionalLong id, Supplier<Throwable> missing) {
+        if (id.isEmpty()) {
+            return Mono.error(missing);
+        }
+        return blocking(() -> quoteJdbcRepository.findById(id.getAsLong()))
+                .flatMap(stored -> stored.isPresent() ? Mono.just(stored) : Mono.<Optional<Quote>>error(missing));
+    }
 
+    private static boolean isUpstreamFailure(Throwable error) {
+        return error instanceof UpstreamUnavailableException || error instanceof TimeoutException || error instanceof WebClientException;
+    }
 }
@@ -0,0 +1,236 @@
+package com.example.qa.services;
+
+import com.example.qa.entities.Quote;
+import com.example.qa.models.QuoteGroupStats;
+import com.example.qa.models.QuoteStats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * A {@link QuoteLeaderboard} and running totals for every source, character and category, and for
+ * every combination of them that a stored quote has, kept current as quotes are stored and voted
+ * for, so a filtered {@code /quotes/top} and {@code /quotes/stats} never aggregate over the table.
+ * A quote with a source, a character and a category is in seven groups.
+ * <p>
+ * Groups are keyed on names trimmed and lower-cased, so filters match regardless of case and
+ * spacing, and a character filter that names no character exactly matches every character whose
+ * name contains it, the way the Simpsons API and {@link LocalQuoteCorpus} match characters. Stats
+ * show each name as first stored; every stored spelling of a name is kept for filters that run
+ * against the table.
+ * <p>
+ * Totals add the rise of a quote's count since it was last offered, so a stale snapshot arriving
+ * after a newer one adds nothing. That count is kept per quote id in an int array, four bytes a
+ * quote; as in {@link LocalQuoteCorpus}, ids above {@link Integer#MAX_VALUE} are ignored.
+ */
+public class QuoteGroups {
+    private static final Comparator<QuoteGroupStats> BY_VOTES = Comparator.comparingLong(QuoteGroupStats::votes).reversed()
+            .thenComparing(Comparator.comparingLong(QuoteGroupStats::quotes).reversed())
+            .thenComparing(QuoteGroupStats::name);
+
+    private final int capacity;
+    private final long generation;
+    // Guarded by this
+    private final Map<Group, Totals> groups = new HashMap<>();
+    private final BitSet seen = new BitSet();
+    private int[] votes = new int[1024];
+    private long quotes;
+    private long totalVotes;
+
+    /**
+     * @param capacity   quotes ranked per group
+     * @param generation tells these groups apart from the ones they replace, whose versions overlap
+     */
+    public QuoteGroups(int capacity, long generation) {
+        this.capacity = capacity;
+        this.generation = generation;
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * Counts a quote not offered before into each of its groups, or the votes it gained since it
+     * was last offered.
+     */
+    public void offer(Quote quote) {
+        if (quote.getId() == null || quote.getId() < 0 || quote.getId() > Integer.MAX_VALUE || quote.getSource() == null) {
+            return;
+        }
+        int id = quote.getId().intValue();
+        List<QuoteLeaderboard> leaderboards = new ArrayList<>(7);
+        synchronized (this) {
+            if (id >= votes.length) {
+                votes = Arrays.copyOf(votes, Math.max(votes.length * 2, id + 1));
+            }
+            boolean added = !seen.get(id);
+            long gained = added ? quote.getVotes() : quote.getVotes() - votes[id];
+            if (!added && gained <= 0) {
+                return;
+            }
+            seen.set(id);
+            votes[id] = quote.getVotes();
+            quotes += added ? 1 : 0;
+            totalVotes += gained;
+            for (Group group : groupsOf(quote)) {
+                Totals totals = groups.computeIfAbsent(group, key -> new Totals(new QuoteLeaderboard(capacity), value(key, quote).trim()));
+                if (added && group.dimensions() == 1) {
+                    totals.spellings.add(value(group, quote));
+                }
+                totals.quotes += added ? 1 : 0;
+                totals.votes += gained;
+                leaderboards.add(totals.top);
+            }
+        }
+        // Leaderboards keep the higher of two counts, so offers may land in any order outside the lock
+        leaderboards.forEach(leaderboard -> leaderboard.offer(quote));
+    }
+
+    /**
+     * The top {@code limit} quotes of the group with exactly these filters; null filters nothing.
+     */
+    public List<Quote> top(String source, String character, String category, int limit) {
+        List<QuoteLeaderboard> leaderboards = leaderboards(source, character, category);
+        if (leaderboards.size() == 1) {
+            return leaderboards.get(0).top(limit);
+        }
+        // Each group's top covers its share of the merged top, and a quote has only one character
+        return leaderboards.stream()
+                .flatMap(leaderboard -> leaderboard.top(limit).stream())
+                .sorted(QuoteLeaderboard.RANKING)
+                .limit(limit)
+                .toList();
+    }
+
+    /**
+     * The version of the matching groups' leaderboards, 0 while none has a quote. Versions only go
+     * up, so their sum changes whenever any of them does.
+     */
+    public long version(String source, String character, String category) {
+        return leaderboards(source, character, category).stream().mapToLong(QuoteLeaderboard::version).sum();
+    }
+
+    /**
+     * Quotes and votes overall and per source, per character and per category, most voted first.
+     */
+    public synchronized QuoteStats stats() {
+        List<QuoteGroupStats> sources = new ArrayList<>();
+        List<QuoteGroupStats> characters = new ArrayList<>();
+        List<QuoteGroupStats> categories = new ArrayList<>();
+        groups.forEach((group, totals) -> {
+            if (group.character() == null && group.category() == null) {
+                sources.add(new QuoteGroupStats(totals.name, totals.quotes, totals.votes));
+            } else if (group.source() == null && group.category() == null) {
+                characters.add(new QuoteGroupStats(totals.name, totals.quotes, totals.votes));
+            } else if (group.source() == null && group.character() == null) {
+                categories.add(new QuoteGroupStats(totals.name, totals.quotes, totals.votes));
+            }
+        });
+        sources.sort(BY_VOTES);
+        characters.sort(BY_VOTES);
+        categories.sort(BY_VOTES);
+        return new QuoteStats(quotes, totalVotes, sources, characters, categories);
+    }
+
+    /**
+     * Every spelling stored quotes have of this source, character or category, which differ from
+     * it at most in case and spacing; empty while no quote offered here has it.
+     */
+    public List<String> sources(String source) {
+        return spellings(new Group(key(source), null, null));
+    }
+
+    public List<String> characters(String character) {
+        return spellings(new Group(null, key(character), null));
+    }
+
+    public List<String> categories(String category) {
+        return spellings(new Group(null, null, key(category)));
+    }
+
+    private synchronized List<String> spellings(Group group) {
+        Totals totals = groups.get(group);
+        return totals == null ? List.of() : List.copyOf(totals.spellings);
+    }
+
+    public synchronized int size() {
+        return groups.size();
+    }
+
+    // The exact group, or else every group whose character contains the wanted one; the walk is over groups, not quotes
+    private synchronized List<QuoteLeaderboard> leaderboards(String source, String character, String category) {
+        Group wanted = new Group(key(source), key(character), key(category));
+        Totals exact = groups.get(wanted);
+        if (exact != null || wanted.character() == null) {
+            return exact == null ? List.of() : List.of(exact.top);
+        }
+        List<QuoteLeaderboard> matching = new ArrayList<>();
+        groups.forEach((group, totals) -> {
+            if (Objects.equals(group.source(), wanted.source()) && Objects.equals(group.category(), wanted.category())
+                    && group.character() != null && group.character().contains(wanted.character())) {
+                matching.add(totals.top);
+            }
+        });
+        return matching;
+    }
+
+    // Every non-empty combination of the quote's source, character and category
+    private static List<Group> groupsOf(Quote quote) {
+        String[] values = {key(quote.getSource()), key(quote.getCharacter()), key(quote.getCategory())};
+        List<Group> groups = new ArrayList<>(7);
+        for (int mask = 1; mask < 8; mask++) {
+            boolean complete = true;
+            String[] key = new String[3];
+            for (int dimension = 0; dimension < 3; dimension++) {
+                if ((mask & 1 << dimension) != 0) {
+                    complete &= values[dimension] != null;
+                    key[dimension] = values[dimension];
+                }
+            }
+            if (complete) {
+                groups.add(new Group(key[0], key[1], key[2]));
+            }
+        }
+        return groups;
+    }
+
+    // The name of a single-dimension group exactly as the quote has it
+    private static String value(Group group, Quote quote) {
+        return group.source() != null ? quote.getSource()
+                : group.character() != null ? quote.getCharacter() : quote.getCategory();
+    }
+
+    private static String key(String value) {
+        return value == null || value.isBlank() ? null : CharacterQuoteCache.normalize(value);
+    }
+
+    private record Group(String source, String character, String category) {
+        int dimensions() {
+            return (int) Stream.of(source, character, category).filter(Objects::nonNull).count();
+        }
+    }
+
+    private static final class Totals {
+        private final QuoteLeaderboard top;
+        private final String name;
+        // Only kept for single-dimension groups
+        private final Set<String> spellings = new HashSet<>(2);
+        private long quotes;
+        private long votes;
+
+        Totals(QuoteLeaderboard top, String name) {
+            this.top = top;
+            this.name = name;
+        }
+    }
+}
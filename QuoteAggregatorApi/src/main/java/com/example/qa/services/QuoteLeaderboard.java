@@ -0,0 +1,136 @@
+package com.example.qa.services;
+
+import com.example.qa.entities.Quote;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The {@code capacity} most-voted quotes, ordered by votes descending and then id ascending, kept as
+ * quote snapshots so the top of the ranking is served from memory in O(limit).
+ * <p>
+ * Vote counts only ever grow, so a quote that falls off the end can only come back by being voted
+ * for, and every vote offers the voted quote again: the structure stays equal to the stored top
+ * {@code capacity} as long as every vote and every new quote is offered. For the same reason an
+ * offer never lowers a quote's count, so snapshots from concurrent votes may arrive in any order.
+ */
+public class QuoteLeaderboard {
+    static final Comparator<Quote> RANKING = Comparator.comparing(Quote::getVotes).reversed()
+            .thenComparing(Quote::getId);
+
+    private final int capacity;
+    private final TreeSet<Quote> ranking = new TreeSet<>(RANKING);
+    private final Map<Long, Quote> byId = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong version = new AtomicLong();
+
+    public QuoteLeaderboard(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Offers every quote in one step, e.g. the stored top {@code capacity} at startup.
+     */
+    public void merge(List<Quote> quotes) {
+        lock.writeLock().lock();
+        try {
+            quotes.forEach(quote -> upsert(quote.toBuilder().build()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the whole ranking for {@code quotes}, e.g. after the stored counters were rebuilt and may
+     * have gone down, which {@link #merge} would ignore.
+     */
+    public void replace(List<Quote> quotes) {
+        lock.writeLock().lock();
+        try {
+            ranking.clear();
+            byId.clear();
+            version.incrementAndGet();
+            quotes.forEach(quote -> upsert(quote.toBuilder().build()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Inserts or repositions the quote with its current vote count. A quote that ranks below a full
+     * leaderboard is ignored.
+     *
+     * @return true if the quote is on the leaderboard afterwards
+     */
+    public boolean offer(Quote quote) {
+        Quote snapshot = quote.toBuilder().build();
+        lock.writeLock().lock();
+        try {
+            upsert(snapshot);
+            return byId.containsKey(snapshot.getId());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Quote> top(int limit) {
+        lock.readLock().lock();
+        try {
+            List<Quote> top = new ArrayList<>(Math.min(limit, ranking.size()));
+            Iterator<Quote> quotes = ranking.iterator();
+            while (top.size() < limit && quotes.hasNext()) {
+                top.add(quotes.next().toBuilder().build());
+            }
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Incremented on every change to the ranking, so readers can skip work when nothing moved.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ranking.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Caller holds the write lock
+    private void upsert(Quote quote) {
+        Quote previous = byId.get(quote.getId());
+        if (previous != null) {
+            if (previous.getVotes() >= quote.getVotes()) {
+                return;
+            }
+            ranking.remove(previous);
+        } else if (ranking.size() >= capacity && RANKING.compare(quote, ranking.last()) > 0) {
+            return;
+        }
+        ranking.add(quote);
+        byId.put(quote.getId(), quote);
+        version.incrementAndGet();
+        if (ranking.size() > capacity) {
+            byId.remove(ranking.pollLast().getId());
+        }
+    }
+}
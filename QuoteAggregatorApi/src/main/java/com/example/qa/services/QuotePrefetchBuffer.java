@@ -0,0 +1,77 @@
+package com.example.qa.services;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Bounded ring of already-persisted quotes for one upstream source. Requests take from the ring
+ * and only fall through to the upstream when it is empty; refills run in the background whenever
+ * the fill level drops below the low watermark.
+ */
+public class QuotePrefetchBuffer {
+    private final ArrayBlockingQueue<Quote> ring;
+    private final int lowWatermark;
+    private final int refillConcurrency;
+    private final Supplier<Mono<Optional<Quote>>> upstream;
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    private final Counter misses;
+
+    public QuotePrefetchBuffer(String source, QuoteAggregatorProperties.Prefetch prefetch,
+                               Supplier<Mono<Optional<Quote>>> upstream, MeterRegistry meterRegistry) {
+        this.ring = new ArrayBlockingQueue<>(prefetch.getCapacity());
+        this.lowWatermark = Math.min(prefetch.getLowWatermark(), prefetch.getCapacity());
+        this.refillConcurrency = Math.max(prefetch.getRefillConcurrency(), 1);
+        this.upstream = upstream;
+        Gauge.builder("quotes.prefetch.size", ring, ArrayBlockingQueue::size)
+                .tag("source", source)
+                .description("Ready-to-serve quotes in the prefetch buffer")
+                .register(meterRegistry);
+        this.misses = Counter.builder("quotes.prefetch.misses")
+                .tag("source", source)
+                .description("Requests that found the prefetch buffer empty and went to the upstream")
+                .register(meterRegistry);
+    }
+
+    public Optional<Quote> poll() {
+        Quote quote = ring.poll();
+        if (quote == null) {
+            misses.increment();
+        }
+        return Optional.ofNullable(quote);
+    }
+
+    public int size() {
+        return ring.size();
+    }
+
+    public boolean belowLowWatermark() {
+        return ring.size() < lowWatermark;
+    }
+
+    /**
+     * Tops the ring back up to capacity. Only one refill runs at a time; a call made while another
+     * refill is in flight completes immediately.
+     */
+    public Mono<Void> refill() {
+        return Mono.defer(() -> {
+            if (!refilling.compareAndSet(false, true)) {
+                return Mono.empty();
+            }
+            return Flux.range(0, ring.remainingCapacity())
+                    .flatMap(i -> Mono.defer(upstream).onErrorResume(e -> Mono.empty()), refillConcurrency)
+                    .doOnNext(quote -> quote.ifPresent(ring::offer))
+                    .doFinally(signal -> refilling.set(false))
+                    .then();
+        });
+    }
+}
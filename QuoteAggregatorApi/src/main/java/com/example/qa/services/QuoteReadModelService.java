@@ -0,0 +1,293 @@
+package com.example.qa.services;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.models.QuotePage;
+import com.example.qa.models.QuoteStats;
+import com.example.qa.repositories.QuoteJdbcRepository;
+import com.example.qa.repositories.QuoteOrder;
+import com.example.qa.repositories.QuoteRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+import static com.example.qa.services.BlockingCalls.blocking;
+
+/**
+ * The in-memory views of the stored quotes: the leaderboard and its stream, the per-group
+ * leaderboards and stats, the search index, the local corpus the fallbacks sample and the cache of
+ * known quotes. Stored quotes and new counts are offered to all of them at once.
+ */
+@Service
+public class QuoteReadModelService {
+    private final QuoteRepository quoteRepository;
+    private final QuoteJdbcRepository quoteJdbcRepository;
+    private final VoteWriteBehindBuffer voteWriteBehind;
+    private final QuoteLeaderboard leaderboard;
+    private final int topQuotesMaxLimit;
+    private final LeaderboardUpdates leaderboardUpdates;
+    // Replaced whole when the vote counters are rebuilt, since group totals only ever go up
+    private volatile QuoteGroups quoteGroups;
+    private final KnownQuoteCache knownQuotes;
+    private final LocalQuoteCorpus corpus;
+    private final QuoteSearchIndex searchIndex;
+    private final int searchMaxLimit;
+    private final int browseMaxSize;
+    // Highest id read from the table into the corpus and the search index; quotes stored here are added as they are stored
+    private volatile long corpusSyncedTo;
+    // Leaderboard versions start over with every run and count separately on every instance, so ETags carry this too
+    private final String instanceTag = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, Character.MAX_RADIX);
+
+    public QuoteReadModelService(QuoteRepository quoteRepository, QuoteJdbcRepository quoteJdbcRepository,
+                                 VoteWriteBehindBuffer voteWriteBehind, QuoteAggregatorProperties properties, MeterRegistry meterRegistry) {
+        this.quoteRepository = quoteRepository;
+        this.quoteJdbcRepository = quoteJdbcRepository;
+        this.voteWriteBehind = voteWriteBehind;
+        this.leaderboard = new QuoteLeaderboard(properties.getLeaderboard().getCapacity());
+        this.topQuotesMaxLimit = Math.min(properties.getLeaderboard().getMaxLimit(), leaderboard.capacity());
+        this.leaderboardUpdates = new LeaderboardUpdates(leaderboard, topQuotesMaxLimit, properties.getLeaderboard().getStreamWindow(),
+                properties.getLeaderboard().getStreamBufferSize(), meterRegistry);
+        this.quoteGroups = new QuoteGroups(topQuotesMaxLimit, 0);
+        Gauge.builder("quotes.leaderboard.groups", this, service -> service.quoteGroups.size())
+                .description("Sources, characters, categories and combinations of them with a leaderboard of their own")
+                .register(meterRegistry);
+        this.knownQuotes = new KnownQuoteCache(properties.getDedupe(), meterRegistry);
+        this.corpus = new LocalQuoteCorpus(meterRegistry);
+        this.searchIndex = new QuoteSearchIndex(properties.getSearch().getMinPrefixLength());
+        this.searchMaxLimit = properties.getSearch().getMaxLimit();
+        this.browseMaxSize = properties.getBrowse().getMaxSize();
+        Gauge.builder("quotes.search.indexed", searchIndex, QuoteSearchIndex::size)
+                .description("Stored quotes in the search index")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void initialize() {
+        // Every other service reads quotes through this one, so older rows get their hashes first
+        quoteJdbcRepository.backfillContentHashes();
+        loadLeaderboard();
+        resyncCorpus();
+        searchIndex.trimToSize();
+    }
+
+    /**
+     * Seeds the leaderboard with the stored top quotes before the first request is served; from
+     * then on every vote and every new quote updates it in place.
+     */
+    public void loadLeaderboard() {
+        leaderboard.merge(storedTopQuotes());
+    }
+
+    private List<Quote> storedTopQuotes() {
+        return voteWriteBehind.readCounted(() -> quoteRepository.findByOrderByVotesDescIdAsc(PageRequest.of(0, leaderboard.capacity())).stream()
+                .map(this::withPendingVotes)
+                .toList());
+    }
+
+    @Scheduled(initialDelayString = "${quotes.leaderboard.resync-interval-ms:300000}",
+            fixedDelayString = "${quotes.leaderboard.resync-interval-ms:300000}")
+    public void resyncLeaderboard() {
+        loadLeaderboard();
+    }
+
+    @Scheduled(initialDelayString = "${quotes.corpus.resync-interval-ms:60000}",
+            fixedDelayString = "${quotes.corpus.resync-interval-ms:60000}")
+    public synchronized void resyncCorpus() {
+        corpusSyncedTo = voteWriteBehind.readCounted(() -> quoteJdbcRepository.forEachStoredAfter(corpusSyncedTo, quote -> {
+            corpus.add(quote.getId(), quote.getSource(), quote.getCharacter());
+            Quote counted = withPendingVotes(quote);
+            searchIndex.add(counted);
+            quoteGroups.offer(counted);
+        }));
+    }
+
+    /**
+     * Puts the quotes whose counters were rewritten back as stored, since cached copies only ever
+     * move up, and reloads the leaderboard and the groups from the table.
+     */
+    void reload(List<Quote> corrected) {
+        corrected.forEach(knownQuotes::put);
+        leaderboard.replace(storedTopQuotes());
+        QuoteGroups reloaded = new QuoteGroups(topQuotesMaxLimit, quoteGroups.generation() + 1);
+        long readTo = voteWriteBehind.readCounted(() -> quoteJdbcRepository.forEachStoredAfter(0, quote -> reloaded.offer(withPendingVotes(quote))));
+        quoteGroups = reloaded;
+        // Quotes stored while the table was read went to the groups being replaced
+        voteWriteBehind.readCounted(() -> quoteJdbcRepository.forEachStoredAfter(readTo, quote -> reloaded.offer(withPendingVotes(quote))));
+    }
+
+    /**
+     * The best {@code limit} stored quotes containing every word of {@code query}; a word ending in
+     * {@code *} also matches longer words it starts.
+     */
+    public Flux<Quote> searchQuotes(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            return Flux.error(new RuntimeException("Search query must not be empty"));
+        }
+        int validLimit = Math.min(Math.max(limit, 1), searchMaxLimit);
+        return blocking(() -> voteWriteBehind.readCounted(() -> quoteJdbcRepository.findAllById(searchIndex.search(query, validLimit)).stream()
+                        .map(this::withPendingVotes)
+                        .toList()))
+                .flatMapIterable(quotes -> quotes);
+    }
+
+    /**
+     * One page of stored quotes matching every given filter regardless of case and spacing, sorted
+     * by {@code votes} or {@code recent}. {@code after} is the {@code next} cursor of the previous
+     * page. Counts include votes not flushed yet; the order and the cursors follow the stored counts.
+     */
+    public Mono<QuotePage> browseQuotes(String source, String character, String category, String sort, String after, int size) {
+        return Mono.defer(() -> {
+            QuoteOrder order = QuoteOrder.parse(sort);
+            Quote position = after == null || after.isEmpty() ? null : decodeCursor(order, after);
+            int validSize = Math.min(Math.max(size, 1), browseMaxSize);
+            QuoteGroups groups = quoteGroups;
+            List<String> sources = spellings(source, groups::sources);
+            List<String> characters = spellings(character, groups::characters);
+            List<String> categories = spellings(category, groups::categories);
+            // One extra row tells whether another page follows
+            return blocking(() -> voteWriteBehind.readCounted(() -> {
+                List<Quote> quotes = quoteJdbcRepository.findPage(sources, characters, categories, order, position, validSize + 1);
+                List<Quote> page = quotes.subList(0, Math.min(quotes.size(), validSize));
+                String next = quotes.size() > validSize ? encodeCursor(order, page.get(page.size() - 1)) : null;
+                return new QuotePage(page.stream().map(this::withPendingVotes).toList(), next);
+            }));
+        });
+    }
+
+    // An empty parameter (?source=) filters nothing
+    private static String filter(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    // The stored spellings of a filter, so the table is still matched on exact, indexed values. One
+    // no quote here has yet may have been stored by another instance since the last resync.
+    private static List<String> spellings(String value, Function<String, List<String>> stored) {
+        if (filter(value) == null) {
+            return null;
+        }
+        List<String> spellings = stored.apply(value);
+        return spellings.isEmpty() ? List.of(value) : spellings;
+    }
+
+    // The sort key of the last quote on a page; the order is part of it, so a cursor cannot be reused across orders
+    private static String encodeCursor(QuoteOrder order, Quote last) {
+        String key = order == QuoteOrder.VOTES ? "votes:" + last.getVotes() + ":" + last.getId() : "recent:" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Quote decodeCursor(QuoteOrder order, String cursor) {
+        try {
+            String[] key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (order == QuoteOrder.VOTES && key.length == 3 && key[0].equals("votes")) {
+                return Quote.builder().votes(Integer.parseInt(key[1])).id(Long.parseLong(key[2])).build();
+            }
+            if (order == QuoteOrder.RECENT && key.length == 2 && key[0].equals("recent")) {
+                return Quote.builder().id(Long.parseLong(key[1])).build();
+            }
+        } catch (IllegalArgumentException e) {
+            // Not Base64 or not numbers: reported like any other foreign cursor
+        }
+        throw new RuntimeException("Invalid cursor for sort " + order.name().toLowerCase(Locale.ROOT) + ": " + cursor);
+    }
+
+    public Flux<Quote> getTopQuotes(int limit) {
+        return Flux.defer(() -> Flux.fromIterable(leaderboard.top(topQuotesLimit(limit))));
+    }
+
+    /**
+     * Strong ETag of {@link #getTopQuotes} for every limit, taken from the leaderboard version: it
+     * changes with every vote or new quote that changes the ranking and stays put otherwise. Read
+     * it before the quotes, so the quotes are never older than the tag.
+     */
+    public String getTopQuotesETag() {
+        return "\"" + instanceTag + "-" + leaderboard.version() + "\"";
+    }
+
+    /**
+     * The top quotes with the given source, character and category, each optional and matched
+     * ignoring case, a character also by part of its name. Every group of them keeps its own
+     * leaderboard, so this is as cheap as the unfiltered ranking.
+     */
+    public Flux<Quote> getTopQuotes(String source, String character, String category, int limit) {
+        if (filter(source) == null && filter(character) == null && filter(category) == null) {
+            return getTopQuotes(limit);
+        }
+        return Flux.defer(() -> Flux.fromIterable(quoteGroups.top(filter(source), filter(character), filter(category),
+                topQuotesLimit(limit))));
+    }
+
+    /**
+     * Strong ETag of the filtered {@link #getTopQuotes(String, String, String, int)}, from the
+     * group's own leaderboard version.
+     */
+    public String getTopQuotesETag(String source, String character, String category) {
+        if (filter(source) == null && filter(character) == null && filter(category) == null) {
+            return getTopQuotesETag();
+        }
+        QuoteGroups groups = quoteGroups;
+        return "\"" + instanceTag + "-g" + groups.generation() + "-"
+                + groups.version(filter(source), filter(character), filter(category)) + "\"";
+    }
+
+    public QuoteStats getQuoteStats() {
+        return quoteGroups.stats();
+    }
+
+    public Flux<ServerSentEvent<Object>> streamTopQuotes(int limit) {
+        return leaderboardUpdates.subscribe(topQuotesLimit(limit));
+    }
+
+    /**
+     * The limit {@link #getTopQuotes} and {@link #streamTopQuotes} actually apply to {@code limit}.
+     */
+    public int topQuotesLimit(int limit) {
+        return Math.min(Math.max(limit, 5), topQuotesMaxLimit);
+    }
+
+    Optional<Quote> known(String contentHash) {
+        return knownQuotes.get(contentHash);
+    }
+
+    LocalQuoteCorpus corpus() {
+        return corpus;
+    }
+
+    // New quotes only make it onto the leaderboard while it still has room
+    Quote remember(Quote storedQuote) {
+        knownQuotes.put(storedQuote);
+        if (storedQuote.getId() != null) {
+            corpus.add(storedQuote.getId(), storedQuote.getSource(), storedQuote.getCharacter());
+            searchIndex.add(storedQuote);
+            quoteGroups.offer(storedQuote);
+        }
+        leaderboard.offer(storedQuote);
+        return storedQuote;
+    }
+
+    void recordVotes(Quote votedQuote) {
+        leaderboard.offer(votedQuote);
+        knownQuotes.recordVotes(votedQuote);
+        searchIndex.recordVotes(votedQuote);
+        quoteGroups.offer(votedQuote);
+    }
+
+    // Only inside VoteWriteBehindBuffer.readCounted, together with the read of the stored counter
+    Quote withPendingVotes(Quote quote) {
+        quote.setVotes(quote.getVotes() + voteWriteBehind.pendingVotes(quote.getId()));
+        return quote;
+    }
+}
@@ -0,0 +1,347 @@
+package com.example.qa.services;
+
+import com.example.qa.entities.Quote;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * An inverted index over the text, author, character and category of every stored quote. Each
+ * term maps to a sorted int array of quote ids. A query is a list of terms that must all match.
+ * A term ending in {@code *} matches every indexed term it starts, as long as the prefix is at
+ * least {@code minPrefixLength} characters.
+ * <p>
+ * Results are ranked by how well the terms match and then by votes. A whole-word match scores
+ * above a prefix-only match. Vote counts are kept per id and only ever go up, like on the
+ * leaderboard. Quotes are only added, never removed.
+ */
+public class QuoteSearchIndex {
+    private static final Pattern APOSTROPHES = Pattern.compile("['’]");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final int minPrefixLength;
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();
+    private final BitSet indexed = new BitSet();
+    private int[] votes = new int[1024];
+    private int size;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public QuoteSearchIndex(int minPrefixLength) {
+        this.minPrefixLength = Math.max(minPrefixLength, 1);
+    }
+
+    /**
+     * Indexes a stored quote. A quote already indexed only has its vote count refreshed.
+     *
+     * @return false if the quote was indexed before or its id does not fit an int
+     */
+    public boolean add(Quote quote) {
+        Long id = quote.getId();
+        if (id == null || id < 0 || id > Integer.MAX_VALUE) {
+            return false;
+        }
+        int doc = id.intValue();
+        Set<String> words = new LinkedHashSet<>();
+        for (String field : new String[]{quote.getQuoteText(), quote.getAuthor(), quote.getCharacter(), quote.getCategory()}) {
+            words.addAll(tokenize(field));
+        }
+        lock.writeLock().lock();
+        try {
+            recordVotes(doc, quote.getVotes());
+            if (indexed.get(doc)) {
+                return false;
+            }
+            indexed.set(doc);
+            size++;
+            for (String word : words) {
+                terms.computeIfAbsent(word, term -> new Postings()).add(doc);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Raises the vote count the ranking uses; lower counts from stale snapshots are ignored.
+     */
+    public void recordVotes(Quote quote) {
+        if (quote.getId() == null || quote.getId() < 0 || quote.getId() > Integer.MAX_VALUE) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            recordVotes(quote.getId().intValue(), quote.getVotes());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the best {@code limit} quotes matching every term of {@code query}, best first.
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> words = new ArrayList<>();
+        List<Boolean> prefixes = new ArrayList<>();
+        for (String part : query.trim().split("\\s+")) {
+            boolean prefix = part.endsWith("*");
+            List<String> tokens = tokenize(part);
+            for (int i = 0; i < tokens.size(); i++) {
+                words.add(tokens.get(i));
+                // Only the last token of "foo-ba*" is a prefix
+                prefixes.add(prefix && i == tokens.size() - 1 && tokens.get(i).length() >= minPrefixLength);
+            }
+        }
+        if (words.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Postings[] exact = new Postings[words.size()];
+            Postings[] matches = new Postings[words.size()];
+            for (int i = 0; i < words.size(); i++) {
+                exact[i] = terms.getOrDefault(words.get(i), Postings.EMPTY);
+                matches[i] = prefixes.get(i) ? union(terms.subMap(words.get(i), true, words.get(i) + Character.MAX_VALUE, true).values()) : exact[i];
+                if (matches[i].size == 0) {
+                    return List.of();
+                }
+            }
+            return rank(intersect(matches), matches, exact, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int terms() {
+        lock.readLock().lock();
+        try {
+            return terms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bytes held by the posting arrays (including their unused headroom), the vote counts and the
+     * bitset. The term strings and the tree nodes above them come on top, roughly 100 bytes per term.
+     */
+    public long postingBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = 4L * votes.length + indexed.size() / 8;
+            for (Postings postings : terms.values()) {
+                bytes += 4L * postings.ids.length;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the headroom the posting arrays grew into, e.g. once the stored quotes are loaded; lists
+     * that grow afterwards regain some.
+     */
+    public void trimToSize() {
+        lock.writeLock().lock();
+        try {
+            terms.values().forEach(Postings::trimToSize);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+        String normalized = APOSTROPHES.matcher(text.toLowerCase(Locale.ROOT)).replaceAll("");
+        return Arrays.stream(SEPARATORS.split(normalized)).filter(word -> !word.isEmpty()).distinct().toList();
+    }
+
+    private void recordVotes(int doc, int count) {
+        if (doc >= votes.length) {
+            votes = Arrays.copyOf(votes, Math.max(votes.length * 2, doc + 1));
+        }
+        votes[doc] = Math.max(votes[doc], count);
+    }
+
+    // Two points per term the quote holds as a whole word, one per term it only matched by prefix
+    private List<Long> rank(int[] candidates, Postings[] matches, Postings[] exact, int limit) {
+        int[] scores = new int[candidates.length];
+        for (int term = 0; term < exact.length; term++) {
+            boolean prefixOnly = matches[term] != exact[term];
+            for (int i = 0; i < candidates.length; i++) {
+                scores[i] += !prefixOnly || exact[term].contains(candidates[i]) ? 2 : 1;
+            }
+        }
+        // A min-heap of candidate indexes: the worst of the best so far sits on top, ready to be replaced
+        int[] heap = new int[Math.min(limit, candidates.length)];
+        int size = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            if (size < heap.length) {
+                heap[size] = i;
+                siftUp(heap, size++, candidates, scores);
+            } else if (better(i, heap[0], candidates, scores)) {
+                heap[0] = i;
+                siftDown(heap, size, candidates, scores);
+            }
+        }
+        Long[] ids = new Long[size];
+        while (size > 0) {
+            ids[size - 1] = (long) candidates[heap[0]];
+            heap[0] = heap[--size];
+            siftDown(heap, size, candidates, scores);
+        }
+        return List.of(ids);
+    }
+
+    private boolean better(int a, int b, int[] candidates, int[] scores) {
+        if (scores[a] != scores[b]) {
+            return scores[a] > scores[b];
+        }
+        int votesA = votes[candidates[a]];
+        int votesB = votes[candidates[b]];
+        return votesA != votesB ? votesA > votesB : candidates[a] < candidates[b];
+    }
+
+    private void siftUp(int[] heap, int at, int[] candidates, int[] scores) {
+        while (at > 0) {
+            int parent = (at - 1) / 2;
+            if (!better(heap[parent], heap[at], candidates, scores)) {
+                return;
+            }
+            swap(heap, parent, at);
+            at = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int size, int[] candidates, int[] scores) {
+        int at = 0;
+        while (true) {
+            int worst = at;
+            for (int child = 2 * at + 1; child <= 2 * at + 2 && child < size; child++) {
+                if (better(heap[worst], heap[child], candidates, scores)) {
+                    worst = child;
+                }
+            }
+            if (worst == at) {
+                return;
+            }
+            swap(heap, at, worst);
+            at = worst;
+        }
+    }
+
+    private static void swap(int[] heap, int a, int b) {
+        int held = heap[a];
+        heap[a] = heap[b];
+        heap[b] = held;
+    }
+
+    // Marks the ids in a bitset, which comes out sorted and without duplicates
+    private static Postings union(Collection<Postings> lists) {
+        if (lists.size() == 1) {
+            return lists.iterator().next();
+        }
+        BitSet ids = new BitSet();
+        for (Postings postings : lists) {
+            for (int i = 0; i < postings.size; i++) {
+                ids.set(postings.ids[i]);
+            }
+        }
+        return new Postings(ids.stream().toArray(), ids.cardinality());
+    }
+
+    // Walks the shortest list: a much longer list is binary-searched, one of similar length is merged
+    private static int[] intersect(Postings[] lists) {
+        Postings[] bySize = lists.clone();
+        Arrays.sort(bySize, Comparator.comparingInt(postings -> postings.size));
+        int[] result = Arrays.copyOf(bySize[0].ids, bySize[0].size);
+        int count = result.length;
+        for (int list = 1; list < bySize.length && count > 0; list++) {
+            Postings other = bySize[list];
+            int kept = 0;
+            if (other.size / count > 32) {
+                for (int i = 0; i < count; i++) {
+                    if (other.contains(result[i])) {
+                        result[kept++] = result[i];
+                    }
+                }
+            } else {
+                int at = 0;
+                for (int i = 0; i < count && at < other.size; i++) {
+                    while (at < other.size && other.ids[at] < result[i]) {
+                        at++;
+                    }
+                    if (at < other.size && other.ids[at] == result[i]) {
+                        result[kept++] = result[i];
+                    }
+                }
+            }
+            count = kept;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Ids in ascending order. Quotes mostly arrive in id order; one that does not is inserted in place.
+     */
+    private static final class Postings {
+        static final Postings EMPTY = new Postings(new int[0], 0);
+
+        private int[] ids;
+        private int size;
+
+        Postings() {
+            this(new int[2], 0);
+        }
+
+        Postings(int[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, ids.length * 2);
+            }
+            int at = size;
+            if (size > 0 && ids[size - 1] > id) {
+                at = -Arrays.binarySearch(ids, 0, size, id) - 1;
+                System.arraycopy(ids, at, ids, at + 1, size - at);
+            }
+            ids[at] = id;
+            size++;
+        }
+
+        void trimToSize() {
+            ids = Arrays.copyOf(ids, Math.max(size, 1));
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.qa.services;
+
+import com.example.qa.entities.Quote;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * One upstream quote provider. Implementations fetch from their API, map the response to
+ * {@link Quote}s that are not stored yet, and send every call through their {@link UpstreamGuard};
+ * {@link QuoteSourceRegistry} picks up every bean implementing this interface.
+ */
+public interface QuoteSource {
+
+    String name();
+
+    String baseUrl();
+
+    /**
+     * How many quotes to ask for per request when fetching many.
+     */
+    int pageSize();
+
+    Mono<Quote> fetchQuote();
+
+    /**
+     * Up to {@code count} quotes in one request.
+     */
+    Mono<List<Quote>> fetchQuotes(int count);
+
+    /**
+     * Up to {@code count} quotes by one character, for sources whose API can filter by it.
+     */
+    default Mono<List<Quote>> fetchQuotesBy(String character, int count) {
+        return Mono.error(new RuntimeException("Quote source " + name() + " cannot filter by character"));
+    }
+
+    UpstreamGuard guard();
+}
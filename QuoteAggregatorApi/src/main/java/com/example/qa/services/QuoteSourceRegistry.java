@@ -0,0 +1,121 @@
+package com.example.qa.services;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.models.QuoteSourceStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Every {@link QuoteSource} bean by name. Single-quote calls are hedged: once a source has enough
+ * latency samples, a call still running after the source's p95 gets a second request, and
+ * whichever answers first wins. Only one extra request is ever sent per call, so hedging costs at
+ * most about 5% more upstream traffic.
+ */
+@Component
+public class QuoteSourceRegistry {
+    private final Map<String, QuoteSource> sources = new LinkedHashMap<>();
+    private final Map<String, Counter> hedges = new LinkedHashMap<>();
+    private final boolean hedgeEnabled;
+    private final int hedgeMinSamples;
+    private final Duration hedgeMinDelay;
+
+    public QuoteSourceRegistry(List<QuoteSource> sources, QuoteAggregatorProperties properties, MeterRegistry meterRegistry) {
+        for (QuoteSource source : sources) {
+            if (this.sources.putIfAbsent(source.name(), source) != null) {
+                throw new IllegalStateException("Duplicate quote source: " + source.name());
+            }
+            hedges.put(source.name(), Counter.builder("quotes.source.hedged")
+                    .tag("source", source.name())
+                    .description("Single-quote calls that sent a hedged second request")
+                    .register(meterRegistry));
+        }
+        this.hedgeEnabled = properties.getSources().isHedgeEnabled();
+        this.hedgeMinSamples = properties.getSources().getHedgeMinSamples();
+        this.hedgeMinDelay = properties.getSources().getHedgeMinDelay();
+    }
+
+    public Collection<QuoteSource> all() {
+        return sources.values();
+    }
+
+    public Optional<QuoteSource> find(String name) {
+        return Optional.ofNullable(sources.get(name));
+    }
+
+    public QuoteSource get(String name) {
+        return find(name).orElseThrow(() -> new RuntimeException("Unknown quote source: " + name));
+    }
+
+    public Map<String, String> baseUrls() {
+        Map<String, String> baseUrls = new LinkedHashMap<>();
+        sources.values().forEach(source -> baseUrls.put(source.name(), source.baseUrl()));
+        return baseUrls;
+    }
+
+    public List<QuoteSourceStatus> statuses() {
+        return sources.values().stream().map(source -> {
+            UpstreamGuard guard = source.guard();
+            QuoteSourceStats stats = guard.stats();
+            return new QuoteSourceStatus(source.name(), source.baseUrl(), guard.circuitBreaker().state().name().toLowerCase(Locale.ROOT),
+                    guard.circuitBreaker().consecutiveFailures(), guard.inFlight(), stats.samples(),
+                    stats.percentile(50).map(Duration::toMillis).orElse(null), stats.percentile(95).map(Duration::toMillis).orElse(null));
+        }).toList();
+    }
+
+    public Mono<Quote> fetchQuote(String name) {
+        return Mono.defer(() -> hedged(get(name)));
+    }
+
+    /**
+     * One quote from whichever source answers first; the other calls are cancelled. Sources whose
+     * circuit is open are left out.
+     */
+    public Mono<Quote> fetchFromAny() {
+        return Mono.defer(() -> {
+            List<Mono<Quote>> calls = sources.values().stream()
+                    .filter(source -> source.guard().circuitBreaker().allowsCalls())
+                    .map(this::hedged)
+                    .toList();
+            if (calls.isEmpty()) {
+                return Mono.error(new UpstreamUnavailableException("Every quote source circuit is open"));
+            }
+            return Mono.firstWithValue(calls)
+                    .onErrorMap(error -> new UpstreamUnavailableException("No quote source answered"));
+        });
+    }
+
+    private Mono<Quote> hedged(QuoteSource source) {
+        QuoteSourceStats stats = source.guard().stats();
+        if (!hedgeEnabled || stats.samples() < hedgeMinSamples) {
+            return source.fetchQuote();
+        }
+        Duration p95 = stats.percentile(95).orElse(hedgeMinDelay);
+        Duration delay = p95.compareTo(hedgeMinDelay) < 0 ? hedgeMinDelay : p95;
+        Counter hedged = hedges.get(source.name());
+        // A call that already failed is not hedged: the hedge is for slow answers, not a retry
+        AtomicBoolean failed = new AtomicBoolean();
+        return Mono.firstWithValue(source.fetchQuote().doOnError(error -> failed.set(true)),
+                        Mono.delay(delay).then(Mono.defer(() -> {
+                            if (failed.get()) {
+                                return Mono.empty();
+                            }
+                            hedged.increment();
+                            return source.fetchQuote();
+                        })))
+                .onErrorMap(NoSuchElementException.class,
+                        error -> error.getSuppressed().length > 0 ? error.getSuppressed()[0] : error);
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.qa.services;
+
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Latency percentiles of one quote source over its most recent {@code window} calls. A call
+ * cancelled before it completed (the losing side of a hedge) still counts with the time it had
+ * run, so slow attempts are not dropped from the percentiles; failed calls are left out.
+ */
+public class QuoteSourceStats {
+    private final long[] latencies;
+    // Guarded by latencies
+    private int next;
+    private int samples;
+
+    public QuoteSourceStats(int window) {
+        this.latencies = new long[Math.max(window, 1)];
+    }
+
+    /**
+     * Records the latency of {@code call} each time it is subscribed.
+     */
+    public <T> Mono<T> track(Mono<T> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call
+                    .doOnSuccess(value -> record(System.nanoTime() - start))
+                    .doOnCancel(() -> record(System.nanoTime() - start));
+        });
+    }
+
+    public int samples() {
+        synchronized (latencies) {
+            return samples;
+        }
+    }
+
+    /**
+     * The {@code percentile} (0-100) latency over the recorded calls, empty before the first one.
+     */
+    public Optional<Duration> percentile(double percentile) {
+        long[] sorted;
+        synchronized (latencies) {
+            if (samples == 0) {
+                return Optional.empty();
+            }
+            sorted = Arrays.copyOf(latencies, samples);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return Optional.of(Duration.ofNanos(sorted[Math.min(Math.max(index, 0), sorted.length - 1)]));
+    }
+
+    private void record(long nanos) {
+        synchronized (latencies) {
+            latencies[next] = nanos;
+            next = (next + 1) % latencies.length;
+            samples = Math.min(samples + 1, latencies.length);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.qa.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket holding up to {@code burst} calls to one upstream and refilled at
+ * {@code ratePerSecond}. The whole bucket is a single timestamp, the time at which it will next be
+ * full, moved forward by one call's worth with compare-and-set, so taking a token never blocks.
+ * A rate of zero or less means no limit.
+ */
+public class RateGovernor {
+    private final long intervalNanos;
+    // How far ahead of now the bucket may be drawn before it is empty
+    private final long burstNanos;
+    private final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+    private final Counter consumed;
+    private final Counter throttled;
+
+    public RateGovernor(String name, double ratePerSecond, int burst, MeterRegistry meterRegistry) {
+        this.intervalNanos = ratePerSecond > 0 ? Math.max((long) (1_000_000_000L / ratePerSecond), 1) : 0;
+        this.burstNanos = intervalNanos * Math.max(burst, 1);
+        this.consumed = Counter.builder("quotes.source.rate.tokens")
+                .tag("source", name)
+                .description("Tokens taken from the upstream's rate governor, one per call let through")
+                .register(meterRegistry);
+        this.throttled = Counter.builder("quotes.source.rate.throttled")
+                .tag("source", name)
+                .description("Upstream calls turned away because the rate governor had no token")
+                .register(meterRegistry);
+        if (isLimited()) {
+            Gauge.builder("quotes.source.rate.available", this, RateGovernor::availableTokens)
+                    .tag("source", name)
+                    .description("Tokens currently in the upstream's rate governor")
+                    .register(meterRegistry);
+        }
+    }
+
+    public boolean isLimited() {
+        return intervalNanos > 0;
+    }
+
+    /**
+     * Takes a token if there is one.
+     */
+    public boolean tryAcquire() {
+        if (!isLimited()) {
+            consumed.increment();
+            return true;
+        }
+        long now = System.nanoTime();
+        while (true) {
+            long current = fullAt.get();
+            // A bucket that filled up in the past is just full
+            long from = current - now < 0 ? now : current;
+            if (from + intervalNanos - now > burstNanos) {
+                throttled.increment();
+                return false;
+            }
+            if (fullAt.compareAndSet(current, from + intervalNanos)) {
+                consumed.increment();
+                return true;
+            }
+        }
+    }
+
+    public int availableTokens() {
+        if (!isLimited()) {
+            return Integer.MAX_VALUE;
+        }
+        long drawn = Math.max(fullAt.get() - System.nanoTime(), 0);
+        return (int) ((burstNanos - drawn) / intervalNanos);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.qa.services;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.models.SimpsonsModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.Arrays;
+import java.util.List;
+
+@Component
+public class SimpsonsQuoteSource implements QuoteSource {
+    private final ConnectionProvider connections;
+    private final WebClient client;
+    private final String baseUrl;
+    private final int pageSize;
+    private final UpstreamGuard guard;
+    // Only deterministic resources are coalesced: sharing a random-quote call would hand every caller the same quote
+    private final SingleFlight<String, List<Quote>> filteredRequests = new SingleFlight<>();
+
+    public SimpsonsQuoteSource(WebClient.Builder webClientBuilder, QuoteAggregatorProperties properties,
+                              MeterRegistry meterRegistry) {
+        this.baseUrl = properties.getSources().getSimpsons().getBaseUrl();
+        QuoteAggregatorProperties.Connections connectionConfig = properties.getSources().getSimpsons().getConnections();
+        this.connections = UpstreamConnections.pool(name(), connectionConfig);
+        // A copy, so configuring this client leaves the shared builder untouched
+        this.client = webClientBuilder.clone()
+                .baseUrl(baseUrl)
+                .clientConnector(UpstreamConnections.connector(connections, connectionConfig))
+                .build();
+        this.pageSize = properties.getBatch().getSimpsonsPageSize();
+        this.guard = new UpstreamGuard(name(), properties.getSources().getSimpsons(), properties.getSources().getLatencyWindow(), meterRegistry);
+    }
+
+    @Override
+    public String name() {
+        return "simpsons";
+    }
+
+    @Override
+    public String baseUrl() {
+        return baseUrl;
+    }
+
+    @Override
+    public int pageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public Mono<Quote> fetchQuote() {
+        return request("/quotes").map(quotes -> quotes.get(0));
+    }
+
+    @Override
+    public Mono<List<Quote>> fetchQuotes(int count) {
+        return request("/quotes?count=" + count);
+    }
+
+    @Override
+    public Mono<List<Quote>> fetchQuotesBy(String character, int count) {
+        String uri = "/quotes?count=" + count + "&character=" + character;
+        return filteredRequests.execute(uri, () -> request(uri));
+    }
+
+    @Override
+    public UpstreamGuard guard() {
+        return guard;
+    }
+
+    @PreDestroy
+    public void close() {
+        connections.dispose();
+    }
+
+    private Mono<List<Quote>> request(String uri) {
+        return guard.call(client
+                .get()
+                .uri(uri)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(SimpsonsModel[].class)
+                .map(quotes -> Arrays.stream(quotes).map(SimpsonsQuoteSource::toQuote).toList()));
+    }
+
+    public static Quote toQuote(SimpsonsModel model) {
+        return Quote.builder()
+                .quoteText(Quote.storedText(model.getQuote()))
+                .image(model.getImage())
+                .characterDirection(model.getCharacterDirection())
+                .character(model.getCharacter())
+                .source("simpsons")
+                .votes(0)
+                .contentHash(Quote.contentHash(model.getQuote()))
+                .build();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.qa.services;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import io.netty.channel.ChannelOption;
+import org.springframework.http.client.reactive.ClientHttpConnector;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * The HTTP plumbing of one upstream: a connection pool named after it, so a busy upstream cannot
+ * hold connections another one needs, plus its connect and read timeouts, keep-alive and gzip.
+ * <p>
+ * The pool publishes {@code reactor.netty.connection.provider.*} meters tagged with its name:
+ * total, active, idle and pending connections, and {@code pending.connections.time} for how long
+ * requests waited for a connection. They go to the global Micrometer registry, which Spring Boot
+ * links to its own.
+ */
+public final class UpstreamConnections {
+
+    private UpstreamConnections() {
+    }
+
+    public static ConnectionProvider pool(String name, QuoteAggregatorProperties.Connections config) {
+        return ConnectionProvider.builder(name)
+                .maxConnections(config.getMaxConnections())
+                .pendingAcquireMaxCount(config.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(config.getPendingAcquireTimeout())
+                .maxIdleTime(config.getMaxIdleTime())
+                .maxLifeTime(config.getMaxLifeTime())
+                .evictInBackground(config.getEvictInBackground())
+                .metrics(true)
+                .build();
+    }
+
+    public static ClientHttpConnector connector(ConnectionProvider pool, QuoteAggregatorProperties.Connections config) {
+        HttpClient client = HttpClient.create(pool)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Math.toIntExact(config.getConnectTimeout().toMillis()))
+                .responseTimeout(config.getReadTimeout())
+                .keepAlive(config.isKeepAlive())
+                .compress(config.isCompression());
+        return new ReactorClientHttpConnector(client);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.qa.services;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.reactive.function.client.WebClientException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Everything a call to one upstream goes through. The {@link RateGovernor} comes first and
+ * throttles the call when the upstream's quota has no token left. Then a bulkhead, which rejects the
+ * call when {@code maxConcurrentCalls} are already in flight, without counting against the circuit.
+ * Then the {@link CircuitBreaker}, and then a {@code timeout} that fails a call still unanswered,
+ * so nothing waits on a hung upstream. Latencies of calls that got an answer feed
+ * {@link QuoteSourceStats}.
+ * <p>
+ * Every call is timed as {@code quotes.source.requests}, tagged with its outcome, and the ones the
+ * upstream failed are counted in {@code quotes.source.errors}. A token is spent before the bulkhead
+ * and the circuit are asked, so a call they turn away still counts against the quota.
+ */
+public class UpstreamGuard {
+    private final String name;
+    private final Semaphore bulkhead;
+    private final int maxConcurrentCalls;
+    private final Duration timeout;
+    private final RateGovernor rateGovernor;
+    private final CircuitBreaker circuitBreaker;
+    private final QuoteSourceStats stats;
+    private final Map<String, Timer> requests = new HashMap<>();
+    private final Map<String, Counter> errors = new HashMap<>();
+
+    public UpstreamGuard(String name, QuoteAggregatorProperties.Upstream config, int latencyWindow, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConcurrentCalls = Math.max(config.getMaxConcurrentCalls(), 1);
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.timeout = config.getTimeout();
+        this.rateGovernor = new RateGovernor(name, config.getRatePerSecond(), config.getRateBurst(), meterRegistry);
+        this.circuitBreaker = new CircuitBreaker(name, config.getFailureThreshold(), config.getOpenFor(), meterRegistry);
+        this.stats = new QuoteSourceStats(latencyWindow);
+        Gauge.builder("quotes.source.in.flight", this, UpstreamGuard::inFlight)
+                .tag("source", name)
+                .description("Upstream calls currently holding a bulkhead slot")
+                .register(meterRegistry);
+        for (String outcome : List.of("success", "error", "timeout", "rejected", "throttled", "cancelled")) {
+            requests.put(outcome, Timer.builder("quotes.source.requests")
+                    .tag("source", name)
+                    .tag("outcome", outcome)
+                    .description("Upstream calls through the guard, rejected and throttled ones included")
+                    .register(meterRegistry));
+        }
+        // Rejections are left out: the upstream never saw those calls
+        for (String reason : List.of("timeout", "status", "connection", "other")) {
+            errors.put(reason, Counter.builder("quotes.source.errors")
+                    .tag("source", name)
+                    .tag("reason", reason)
+                    .description("Upstream calls that timed out, got an error status or could not get through")
+                    .register(meterRegistry));
+        }
+    }
+
+    public <T> Mono<T> call(Mono<T> call) {
+        Mono<T> guarded = circuitBreaker.call(stats.track(call).timeout(timeout));
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            if (!rateGovernor.tryAcquire()) {
+                record("throttled", start);
+                return Mono.error(new UpstreamThrottledException("Rate limit reached for quote source: " + name));
+            }
+            if (!bulkhead.tryAcquire()) {
+                record("rejected", start);
+                return Mono.error(new UpstreamUnavailableException("Too many calls in flight to quote source: " + name));
+            }
+            // Released before the outcome reaches the caller, so a caller that retries right away finds the slot free
+            AtomicBoolean released = new AtomicBoolean();
+            Runnable release = () -> {
+                if (released.compareAndSet(false, true)) {
+                    bulkhead.release();
+                }
+            };
+            return guarded.doOnTerminate(release).doOnCancel(release)
+                    .doOnSuccess(result -> record("success", start))
+                    .doOnError(error -> {
+                        String reason = errorReason(error);
+                        if (reason == null) {
+                            record("rejected", start);
+                            return;
+                        }
+                        errors.get(reason).increment();
+                        record("timeout".equals(reason) ? "timeout" : "error", start);
+                    })
+                    .doOnCancel(() -> record("cancelled", start));
+        });
+    }
+
+    private void record(String outcome, long start) {
+        requests.get(outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // Null for calls the circuit breaker turned away
+    private static String errorReason(Throwable error) {
+        if (error instanceof UpstreamUnavailableException) {
+            return null;
+        }
+        if (error instanceof TimeoutException) {
+            return "timeout";
+        }
+        if (error instanceof WebClientResponseException) {
+            return "status";
+        }
+        return error instanceof WebClientException ? "connection" : "other";
+    }
+
+    public int inFlight() {
+        return maxConcurrentCalls - bulkhead.availablePermits();
+    }
+
+    public RateGovernor rateGovernor() {
+        return rateGovernor;
+    }
+
+    public CircuitBreaker circuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public QuoteSourceStats stats() {
+        return stats;
+    }
+}
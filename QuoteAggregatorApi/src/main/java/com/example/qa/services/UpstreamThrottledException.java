@@ -0,0 +1,12 @@
+package com.example.qa.services;
+
+/**
+ * A call to an upstream quote source was not made because its {@link RateGovernor} had no token
+ * left; the source itself may be perfectly healthy.
+ */
+public class UpstreamThrottledException extends UpstreamUnavailableException {
+
+    public UpstreamThrottledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.qa.services;
+
+/**
+ * No upstream quote source could be asked: its circuit is open, all of its concurrent-call slots
+ * are taken, its rate quota is used up ({@link UpstreamThrottledException}), or (for a fan-out) none
+ * of the sources answered.
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+
+    public UpstreamUnavailableException(String message) {
+        super(message);
+    }
+}
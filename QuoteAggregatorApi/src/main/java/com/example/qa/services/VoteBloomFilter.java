@@ -0,0 +1,118 @@
+package com.example.qa.services;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Every (quote, user) pair that has voted, as a Bloom filter: {@link #mightContain} never answers
+ * false for a pair that was added, and answers true for a pair that was not with about
+ * {@code falsePositiveRate} once {@code expectedVotes} pairs are in. Bits are only ever set, with
+ * a CAS on the word holding them, so adds and lookups run concurrently without locks.
+ * <p>
+ * Sized the usual way, {@code -n ln p / (ln 2)^2} bits and {@code (m / n) ln 2} hash functions:
+ * 10 million votes at 1% take 95.9 million bits (11.4 MiB) and 7 probes per lookup. Past
+ * {@code expectedVotes} the rate climbs; {@link #falsePositiveRate()} estimates it from the share of
+ * bits set.
+ */
+public class VoteBloomFilter {
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashFunctions;
+    private final long expectedVotes;
+    private final LongAdder bitsSet = new LongAdder();
+    // Adds that set at least one new bit; a repeat never does
+    private final LongAdder distinct = new LongAdder();
+
+    public VoteBloomFilter(long expectedVotes, double falsePositiveRate) {
+        this.expectedVotes = Math.max(expectedVotes, 1);
+        double rate = Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+        long optimalBits = (long) Math.ceil(-this.expectedVotes * Math.log(rate) / (Math.log(2) * Math.log(2)));
+        this.words = new AtomicLongArray((int) Math.min((optimalBits + 63) / 64, Integer.MAX_VALUE - 8));
+        this.bits = words.length() * 64L;
+        this.hashFunctions = Math.max((int) Math.round((double) bits / this.expectedVotes * Math.log(2)), 1);
+    }
+
+    public void add(long quoteId, String userId) {
+        long hash = hash(quoteId, userId);
+        // Kirsch-Mitzenmacher: the probes are h1 + i * h2, two halves of one 64-bit hash
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long combined = h1 & 0xFFFFFFFFL;
+        boolean changed = false;
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(combined, bits);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((words.get(word) & mask) == 0 && (words.getAndAccumulate(word, mask, (current, set) -> current | set) & mask) == 0) {
+                bitsSet.increment();
+                changed = true;
+            }
+            combined += h2 & 0xFFFFFFFFL;
+        }
+        if (changed) {
+            distinct.increment();
+        }
+    }
+
+    /**
+     * False means the pair was certainly never added; true means it probably was.
+     */
+    public boolean mightContain(long quoteId, String userId) {
+        long hash = hash(quoteId, userId);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long combined = h1 & 0xFFFFFFFFL;
+        for (int i = 0; i < hashFunctions; i++) {
+            long bit = Math.floorMod(combined, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+            combined += h2 & 0xFFFFFFFFL;
+        }
+        return true;
+    }
+
+    /**
+     * Distinct pairs added so far. Repeats are not counted, since they set no new bit; neither is
+     * the rare new pair whose bits were all set already, so this runs slightly under the truth,
+     * by about the false-positive rate.
+     */
+    public long size() {
+        return distinct.sum();
+    }
+
+    public long expectedVotes() {
+        return expectedVotes;
+    }
+
+    public int hashFunctions() {
+        return hashFunctions;
+    }
+
+    public long memoryBytes() {
+        return bits / 8;
+    }
+
+    /**
+     * The chance that a pair never added comes back as {@link #mightContain}, from the share of bits
+     * set: (set / bits)^k.
+     */
+    public double falsePositiveRate() {
+        return Math.pow((double) bitsSet.sum() / bits, hashFunctions);
+    }
+
+    // FNV-1a over the user id, then the quote id mixed in through the MurmurHash3 finalizer
+    private static long hash(long quoteId, String userId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < userId.length(); i++) {
+            hash = (hash ^ userId.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash ^ mix(quoteId + 0x9E3779B97F4A7C15L));
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+}
@@ -0,0 +1,453 @@
+package com.example.qa.services;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Every vote accepted by this instance as an append-only stream of fixed 32-byte records (quote id,
+ * hash of the user id, timestamp, checksum), so the denormalized {@code quotes.votes} counters can
+ * be rebuilt without a {@code GROUP BY} over the votes table. Other instances' votes are not in it,
+ * so its counts are only the whole truth where this is the one instance taking votes. Records go into segment files of
+ * {@code segmentRecords} records each, created at full size and memory-mapped, so an append is a
+ * few stores into the page cache. {@link #commit()} forces everything appended since the previous
+ * commit to disk at once; appends never wait for it, since the vote itself is already committed in
+ * the database.
+ * <p>
+ * {@link #snapshot()} writes every counter together with the sequence number it covers, and drops
+ * the segments it covers, so {@link #counts()} reads one snapshot and replays only what was
+ * appended after it. A record that was only partly written before a crash fails its checksum and
+ * ends the journal; appends resume over it.
+ */
+public class VoteJournal implements AutoCloseable {
+    static final int RECORD_BYTES = 32;
+    private static final int MAGIC = 0x564f5445;
+    private static final String SEGMENT_PREFIX = "votes-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".counts";
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final Counter appends;
+    private final Timer commits;
+    private final Timer snapshots;
+    // Guarded by this
+    private final List<Segment> segments = new ArrayList<>();
+    private Segment current;
+    private long nextSequence;
+    private long committedTo;
+
+    public VoteJournal(QuoteAggregatorProperties.Journal config, MeterRegistry meterRegistry) {
+        this.directory = Path.of(config.getDirectory());
+        this.segmentRecords = Math.max(config.getSegmentRecords(), 1);
+        this.appends = Counter.builder("quotes.votes.journal.appends")
+                .description("Vote events appended to the journal")
+                .register(meterRegistry);
+        this.commits = Timer.builder("quotes.votes.journal.commits")
+                .description("Time to force the appends since the previous commit to disk")
+                .register(meterRegistry);
+        this.snapshots = Timer.builder("quotes.votes.journal.snapshots")
+                .description("Time to write a snapshot of every vote counter")
+                .register(meterRegistry);
+        Gauge.builder("quotes.votes.journal.size", this, VoteJournal::diskBytes)
+                .baseUnit("bytes")
+                .description("Disk held by the journal segments")
+                .register(meterRegistry);
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.sorted().toList()) {
+                    String name = file.getFileName().toString();
+                    if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                        segments.add(new Segment(file, sequenceOf(name, SEGMENT_PREFIX, SEGMENT_SUFFIX), segmentRecords));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the vote journal in " + directory, e);
+        }
+        if (segments.isEmpty()) {
+            this.nextSequence = latestSnapshot().map(Snapshot::sequence).orElse(0L);
+            this.current = newSegment(nextSequence);
+        } else {
+            this.current = segments.get(segments.size() - 1);
+            int valid = current.validRecords();
+            // Whatever survived past a torn record must not rejoin the journal once appends close the gap
+            current.clearFrom(valid);
+            this.nextSequence = current.firstSequence + valid;
+        }
+        this.committedTo = nextSequence;
+    }
+
+    /**
+     * Appends one vote; durable once the next {@link #commit()} has run.
+     *
+     * @return the vote's sequence number
+     */
+    public synchronized long append(long quoteId, String userId, long timestampMillis) {
+        if (nextSequence - current.firstSequence >= segmentRecords) {
+            current.buffer.force();
+            current = newSegment(nextSequence);
+        }
+        current.write((int) (nextSequence - current.firstSequence), quoteId, userHash(userId), timestampMillis);
+        appends.increment();
+        return nextSequence++;
+    }
+
+    /**
+     * Group commit: forces every segment written since the previous commit in one go.
+     */
+    public void commit() {
+        List<Segment> dirty;
+        long upTo;
+        synchronized (this) {
+            if (committedTo == nextSequence) {
+                return;
+            }
+            upTo = nextSequence;
+            dirty = segments.stream().filter(segment -> segment.firstSequence + segmentRecords > committedTo).toList();
+        }
+        commits.record(() -> dirty.forEach(segment -> segment.buffer.force()));
+        synchronized (this) {
+            committedTo = Math.max(committedTo, upTo);
+        }
+    }
+
+    /**
+     * Sequence number the next append gets, which is also the number of votes ever appended.
+     */
+    public synchronized long sequence() {
+        return nextSequence;
+    }
+
+    public synchronized boolean isEmpty() {
+        return nextSequence == 0;
+    }
+
+    /**
+     * Every quote's vote count: the latest snapshot plus the votes appended after it.
+     */
+    public Replay counts() {
+        long start = System.nanoTime();
+        Snapshot snapshot = latestSnapshot().orElse(new Snapshot(0, Map.of()));
+        LongCounts counts = new LongCounts(Math.max(snapshot.counts().size() * 2, 1024));
+        snapshot.counts().forEach(counts::add);
+        List<Segment> replayed;
+        long upTo;
+        synchronized (this) {
+            replayed = List.copyOf(segments);
+            upTo = nextSequence;
+        }
+        long events = 0;
+        for (Segment segment : replayed) {
+            long from = Math.max(snapshot.sequence(), segment.firstSequence);
+            long to = Math.min(upTo, segment.firstSequence + segmentRecords);
+            for (long sequence = from; sequence < to; sequence++) {
+                counts.add(segment.quoteId((int) (sequence - segment.firstSequence)), 1);
+                events++;
+            }
+        }
+        return new Replay(counts.toMap(), Math.max(upTo, snapshot.sequence()), events, System.nanoTime() - start);
+    }
+
+    /**
+     * Writes every counter as of now and deletes the segments the snapshot covers.
+     *
+     * @return the sequence number the snapshot covers up to
+     */
+    public long snapshot() {
+        return snapshots.record(() -> {
+            commit();
+            Replay replay = counts();
+            writeSnapshot(replay.sequence(), replay.counts());
+            return replay.sequence();
+        });
+    }
+
+    /**
+     * Starts the journal from existing counts, e.g. the votes table when the journal is first
+     * enabled; later replays add to them.
+     */
+    public void seed(Map<Long, Long> counts) {
+        synchronized (this) {
+            if (nextSequence != 0) {
+                throw new IllegalStateException("Only an empty vote journal can be seeded");
+            }
+        }
+        writeSnapshot(0, counts);
+    }
+
+    public synchronized long diskBytes() {
+        return (long) segments.size() * segmentRecords * RECORD_BYTES;
+    }
+
+    @Override
+    public synchronized void close() {
+        commit();
+        segments.forEach(Segment::close);
+    }
+
+    private void writeSnapshot(long sequence, Map<Long, Long> counts) {
+        Path file = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+        Path temporary = directory.resolve(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+                out.writeInt(MAGIC);
+                out.writeLong(sequence);
+                out.writeInt(counts.size());
+                for (Map.Entry<Long, Long> count : counts.entrySet()) {
+                    out.writeLong(count.getKey());
+                    out.writeLong(count.getValue());
+                }
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            dropCoveredBy(sequence, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write vote journal snapshot " + file, e);
+        }
+    }
+
+    // Older snapshots, and segments wholly before the snapshot other than the one being written
+    private void dropCoveredBy(long sequence, Path snapshot) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX) && !file.equals(snapshot)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+        synchronized (this) {
+            segments.removeIf(segment -> {
+                if (segment == current || segment.firstSequence + segmentRecords > sequence) {
+                    return false;
+                }
+                segment.close();
+                try {
+                    Files.deleteIfExists(segment.file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return true;
+            });
+        }
+    }
+
+    private Optional<Snapshot> latestSnapshot() {
+        try (Stream<Path> files = Files.list(directory)) {
+            Optional<Path> latest = files
+                    .filter(file -> file.getFileName().toString().startsWith(SNAPSHOT_PREFIX)
+                            && file.getFileName().toString().endsWith(SNAPSHOT_SUFFIX))
+                    .max(Path::compareTo);
+            if (latest.isEmpty()) {
+                return Optional.empty();
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(latest.get())))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("Not a vote journal snapshot: " + latest.get());
+                }
+                long sequence = in.readLong();
+                int size = in.readInt();
+                Map<Long, Long> counts = new HashMap<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    counts.put(in.readLong(), in.readLong());
+                }
+                return Optional.of(new Snapshot(sequence, counts));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the vote journal snapshot in " + directory, e);
+        }
+    }
+
+    // Caller holds the lock, or is the constructor
+    private Segment newSegment(long firstSequence) {
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        Segment segment = new Segment(file, firstSequence, segmentRecords);
+        segments.add(segment);
+        return segment;
+    }
+
+    private static long sequenceOf(String name, String prefix, String suffix) {
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    // FNV-1a through the MurmurHash3 finalizer; the journal only needs to tell voters apart, not name them
+    static long userHash(String userId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < userId.length(); i++) {
+            hash = (hash ^ userId.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * Counts by quote id, the sequence number they cover up to, how many journal records were read
+     * on top of the snapshot, and how long it took.
+     */
+    public record Replay(Map<Long, Long> counts, long sequence, long events, long nanos) {
+    }
+
+    private record Snapshot(long sequence, Map<Long, Long> counts) {
+    }
+
+    /**
+     * One segment file, mapped whole. Records are written at absolute offsets under the journal's
+     * lock and read back by replays, which only look below the sequence number they saw published
+     * under the same lock.
+     */
+    private static final class Segment {
+        private final Path file;
+        private final long firstSequence;
+        private final int records;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        Segment(Path file, long firstSequence, int records) {
+            this.file = file;
+            this.firstSequence = firstSequence;
+            this.records = records;
+            try {
+                this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) records * RECORD_BYTES);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not map vote journal segment " + file, e);
+            }
+        }
+
+        void write(int index, long quoteId, long userHash, long timestampMillis) {
+            int offset = index * RECORD_BYTES;
+            buffer.putLong(offset, quoteId);
+            buffer.putLong(offset + 8, userHash);
+            buffer.putLong(offset + 16, timestampMillis);
+            buffer.putInt(offset + 24, checksum(offset));
+            buffer.putInt(offset + 28, MAGIC);
+        }
+
+        long quoteId(int index) {
+            return buffer.getLong(index * RECORD_BYTES);
+        }
+
+        // Records up to the first one that is unwritten or was torn by a crash
+        int validRecords() {
+            for (int index = 0; index < records; index++) {
+                int offset = index * RECORD_BYTES;
+                if (buffer.getInt(offset + 28) != MAGIC || buffer.getInt(offset + 24) != checksum(offset)) {
+                    return index;
+                }
+            }
+            return records;
+        }
+
+        void clearFrom(int index) {
+            for (int offset = index * RECORD_BYTES; offset < records * RECORD_BYTES; offset += RECORD_BYTES) {
+                if (buffer.getInt(offset + 28) == MAGIC) {
+                    buffer.putInt(offset + 28, 0);
+                }
+            }
+            buffer.force();
+        }
+
+        private int checksum(int offset) {
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(offset, 24));
+            return (int) crc.getValue();
+        }
+
+        void close() {
+            try {
+                buffer.force();
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not close vote journal segment " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Counts by quote id with open addressing over primitive arrays, so a replay does not box a
+     * value per record. Quote ids are identity values and never 0, which marks a free slot.
+     */
+    private static final class LongCounts {
+        private long[] keys;
+        private long[] values;
+        private int size;
+
+        LongCounts(int expected) {
+            int capacity = Integer.highestOneBit(Math.max(expected, 16) * 2 - 1) << 1;
+            keys = new long[capacity];
+            values = new long[capacity];
+        }
+
+        void add(long key, long delta) {
+            int mask = keys.length - 1;
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == 0) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    values[slot] = delta;
+                    grow();
+                    return;
+                }
+            }
+            values[slot] += delta;
+        }
+
+        Map<Long, Long> toMap() {
+            Map<Long, Long> map = new HashMap<>(size * 2);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] != 0) {
+                    map.put(keys[slot], values[slot]);
+                }
+            }
+            return map;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldValues.length * 2];
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldKeys[slot] != 0) {
+                    add(oldKeys[slot], oldValues[slot]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.qa.services;
+
+import java.time.Duration;
+
+/**
+ * A write-behind vote was turned away because the queue stayed full for the whole enqueue timeout;
+ * the vote itself was fine and can be sent again once a flush has made room.
+ */
+public class VoteQueueFullException extends RuntimeException {
+    private final Duration retryAfter;
+
+    public VoteQueueFullException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
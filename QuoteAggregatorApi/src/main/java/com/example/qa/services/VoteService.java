@@ -0,0 +1,300 @@
+package com.example.qa.services;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.models.BatchVote;
+import com.example.qa.models.BatchVoteResult;
+import com.example.qa.models.VoteRebuild;
+import com.example.qa.repositories.QuoteJdbcRepository;
+import com.example.qa.repositories.QuoteRepository;
+import com.example.qa.repositories.VoteJdbcRepository;
+import com.example.qa.repositories.VoteJdbcRepository.NewVote;
+import com.example.qa.repositories.VoteJdbcRepository.VoteOutcome;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.qa.services.BlockingCalls.blocking;
+
+/**
+ * Takes votes, one at a time through the write-behind queue when it is enabled or straight to the
+ * table otherwise, and in batches. Keeps the vote filter that spares new voters the duplicate
+ * check, journals every stored vote and rebuilds the counters from the journal. Every accepted vote
+ * is passed on to the {@link QuoteReadModelService}.
+ */
+@Service
+public class VoteService {
+    private final QuoteRepository quoteRepository;
+    private final QuoteJdbcRepository quoteJdbcRepository;
+    private final VoteJdbcRepository voteJdbcRepository;
+    private final VoteWriteBehindBuffer voteWriteBehind;
+    private final QuoteReadModelService readModels;
+    private final QuoteAggregatorProperties.VoteFilter voteFilterConfig;
+    // Null until loaded and when disabled; every queued vote is then checked against the table
+    private volatile VoteBloomFilter voteFilter;
+    // Highest vote id read into the vote filter; votes cast here are added as they are accepted
+    private long votesSyncedTo;
+    // Null when disabled
+    private final VoteJournal voteJournal;
+    private final QuoteAggregatorProperties.Batch batch;
+    private final Counter voteConflicts;
+    private final Counter voteFilterAbsent;
+    private final Counter voteFilterMaybe;
+
+    public VoteService(QuoteRepository quoteRepository, QuoteJdbcRepository quoteJdbcRepository, VoteJdbcRepository voteJdbcRepository,
+                       VoteWriteBehindBuffer voteWriteBehind, QuoteReadModelService readModels, QuoteAggregatorProperties properties,
+                       MeterRegistry meterRegistry) {
+        this.quoteRepository = quoteRepository;
+        this.quoteJdbcRepository = quoteJdbcRepository;
+        this.voteJdbcRepository = voteJdbcRepository;
+        this.voteWriteBehind = voteWriteBehind;
+        this.readModels = readModels;
+        this.voteFilterConfig = properties.getVoteFilter();
+        this.voteJournal = properties.getJournal().isEnabled() ? new VoteJournal(properties.getJournal(), meterRegistry) : null;
+        if (voteJournal != null) {
+            // Queued votes are journaled once their flush has stored them
+            voteWriteBehind.onFlush(votes -> votes.forEach(vote -> journalVote(vote.quoteId(), vote.userId())));
+        }
+        this.batch = properties.getBatch();
+        this.voteConflicts = Counter.builder("quotes.votes.conflicts")
+                .description("Votes rejected because the user had already voted for the quote")
+                .register(meterRegistry);
+        this.voteFilterAbsent = Counter.builder("quotes.votes.filter.checks")
+                .tag("answer", "absent")
+                .description("Queued votes the vote filter had never seen, which skipped the duplicate check")
+                .register(meterRegistry);
+        this.voteFilterMaybe = Counter.builder("quotes.votes.filter.checks")
+                .tag("answer", "maybe")
+                .description("Queued votes the vote filter may have seen, checked against the table")
+                .register(meterRegistry);
+        Gauge.builder("quotes.votes.filter.memory", this, service -> service.voteFilter == null ? 0 : service.voteFilter.memoryBytes())
+                .baseUnit("bytes")
+                .description("Heap held by the bits of the vote filter")
+                .register(meterRegistry);
+        Gauge.builder("quotes.votes.filter.false.positive.rate", this,
+                        service -> service.voteFilter == null ? 0 : service.voteFilter.falsePositiveRate())
+                .description("Estimated share of new votes the vote filter sends to the table anyway")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void initialize() {
+        loadVoteFilter();
+        seedVoteJournal();
+    }
+
+    /**
+     * Rebuilds the vote filter from the votes table, sized for twice the votes stored now. A vote
+     * committed while the table is read may be missed; that only sends a repeat of it on to the
+     * unique constraint. Only write-behind voting consults the filter, so it is not built otherwise.
+     */
+    public synchronized void loadVoteFilter() {
+        if (!voteFilterConfig.isEnabled() || !voteWriteBehind.isEnabled()) {
+            return;
+        }
+        VoteBloomFilter filter = new VoteBloomFilter(Math.max(voteFilterConfig.getExpectedVotes(), 2 * voteJdbcRepository.countVotes()),
+                voteFilterConfig.getFalsePositiveRate());
+        votesSyncedTo = voteJdbcRepository.forEachVoteAfter(0, vote -> filter.add(vote.quoteId(), vote.userId()));
+        voteFilter = filter;
+    }
+
+    @Scheduled(initialDelayString = "${quotes.vote-filter.resync-interval-ms:60000}",
+            fixedDelayString = "${quotes.vote-filter.resync-interval-ms:60000}")
+    public synchronized void resyncVoteFilter() {
+        VoteBloomFilter filter = voteFilter;
+        if (filter == null) {
+            return;
+        }
+        if (filter.size() > filter.expectedVotes()) {
+            loadVoteFilter();
+            return;
+        }
+        votesSyncedTo = voteJdbcRepository.forEachVoteAfter(votesSyncedTo, vote -> filter.add(vote.quoteId(), vote.userId()));
+    }
+
+    /**
+     * A journal that has never seen a vote starts from the votes already stored, so replaying it
+     * gives the full counts.
+     */
+    private void seedVoteJournal() {
+        if (voteJournal != null && voteJournal.isEmpty()) {
+            voteJournal.seed(voteJdbcRepository.countVotesByQuote());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${quotes.journal.commit-interval-ms:100}")
+    public void commitVoteJournal() {
+        if (voteJournal != null) {
+            voteJournal.commit();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${quotes.journal.snapshot-interval-ms:600000}",
+            fixedDelayString = "${quotes.journal.snapshot-interval-ms:600000}")
+    public void snapshotVoteJournal() {
+        if (voteJournal != null) {
+            voteJournal.snapshot();
+        }
+    }
+
+    /**
+     * Rewrites every stored vote counter from the latest journal snapshot plus the votes appended
+     * after it, and reloads the leaderboard and the groups from the result. Pending write-behind
+     * votes are flushed first. The journal only holds the votes accepted here, so this is for
+     * deployments where this is the one instance taking votes. A vote stored while the counters are
+     * rewritten may be left out of its quote's counter until the next rebuild.
+     */
+    public Mono<VoteRebuild> rebuildVoteCounts() {
+        if (voteJournal == null) {
+            return Mono.error(new RuntimeException("Vote journal is disabled"));
+        }
+        return blocking(() -> {
+            voteWriteBehind.flush();
+            voteJournal.commit();
+            VoteJournal.Replay replay = voteJournal.counts();
+            List<Long> corrected = quoteJdbcRepository.resetVotes(replay.counts());
+            readModels.reload(quoteJdbcRepository.findAllById(corrected));
+            return new VoteRebuild(replay.sequence(), replay.events(), replay.counts().size(), corrected.size(),
+                    TimeUnit.NANOSECONDS.toMillis(replay.nanos()));
+        });
+    }
+
+    @PreDestroy
+    public void closeVoteJournal() {
+        if (voteJournal != null) {
+            // The buffer's own shutdown flush would come after the journal is closed
+            voteWriteBehind.flush();
+            voteJournal.close();
+        }
+    }
+
+    public Mono<Quote> voteForQuote(Long quoteId, String userId) {
+        if (voteWriteBehind.isEnabled()) {
+            return blocking(() -> queueVote(quoteId, userId))
+                    .doOnNext(readModels::recordVotes);
+        }
+        return blocking(() -> voteJdbcRepository.castVote(quoteId, userId)
+                .map(quote -> rememberVote(quote, userId))
+                .map(quote -> {
+                    journalVote(quoteId, userId);
+                    return quote;
+                })
+                .orElseThrow(() -> voteJdbcRepository.quoteExists(quoteId)
+                        ? alreadyVoted()
+                        : new RuntimeException("Quote not found with id: " + quoteId)))
+                .doOnNext(readModels::recordVotes);
+    }
+
+    /**
+     * Casts every vote of a batch with a fixed handful of queries, however many votes there are.
+     * Votes still waiting in the write-behind queue count as already cast. The result has one
+     * entry per vote, in order.
+     */
+    public Mono<List<BatchVoteResult>> voteForQuotes(List<BatchVote> votes) {
+        if (votes == null || votes.isEmpty()) {
+            return Mono.error(new RuntimeException("At least one vote is required."));
+        }
+        if (votes.size() > batch.getMaxVotes()) {
+            return Mono.error(new RuntimeException("At most " + batch.getMaxVotes() + " votes per batch."));
+        }
+        return blocking(() -> castVotes(votes));
+    }
+
+    private List<BatchVoteResult> castVotes(List<BatchVote> votes) {
+        String[] statuses = new String[votes.size()];
+        List<Integer> cast = new ArrayList<>();
+        for (int i = 0; i < votes.size(); i++) {
+            BatchVote vote = votes.get(i);
+            if (vote == null || vote.quoteId() == null || vote.userEmail() == null || vote.userEmail().isEmpty()) {
+                statuses[i] = "invalid";
+            } else if (voteWriteBehind.isPending(vote.quoteId(), vote.userEmail())) {
+                statuses[i] = "already_voted";
+            } else {
+                cast.add(i);
+            }
+        }
+        List<VoteOutcome> outcomes = voteJdbcRepository.castVotes(cast.stream()
+                .map(i -> new NewVote(votes.get(i).quoteId(), votes.get(i).userEmail()))
+                .toList());
+        List<Long> voted = new ArrayList<>();
+        for (int i = 0; i < cast.size(); i++) {
+            BatchVote vote = votes.get(cast.get(i));
+            statuses[cast.get(i)] = outcomes.get(i).name().toLowerCase(Locale.ROOT);
+            if (outcomes.get(i) == VoteOutcome.ACCEPTED) {
+                rememberVoter(vote.quoteId(), vote.userEmail());
+                journalVote(vote.quoteId(), vote.userEmail());
+                voted.add(vote.quoteId());
+            } else if (outcomes.get(i) == VoteOutcome.ALREADY_VOTED) {
+                voteConflicts.increment();
+            }
+        }
+        // The new counts, read back once, keep the leaderboard and the caches current
+        voteWriteBehind.readCounted(() -> quoteJdbcRepository.findAllById(voted.stream().distinct().toList()).stream()
+                        .map(readModels::withPendingVotes)
+                        .toList())
+                .forEach(readModels::recordVotes);
+        List<BatchVoteResult> results = new ArrayList<>(votes.size());
+        for (int i = 0; i < votes.size(); i++) {
+            BatchVote vote = votes.get(i);
+            results.add(vote == null ? new BatchVoteResult(null, null, statuses[i])
+                    : new BatchVoteResult(vote.quoteId(), vote.userEmail(), statuses[i]));
+        }
+        return results;
+    }
+
+    private RuntimeException alreadyVoted() {
+        voteConflicts.increment();
+        return new RuntimeException("User has already voted for this quote.");
+    }
+
+    private Quote queueVote(Long quoteId, String userId) throws InterruptedException {
+        Quote quote = voteWriteBehind.readCounted(() -> quoteRepository.findById(quoteId).map(readModels::withPendingVotes))
+                .orElseThrow(() -> new RuntimeException("Quote not found with id: " + quoteId));
+        // A vote the filter has never seen goes straight to the queue; the flush's insert still drops a duplicate it missed
+        if (mayHaveVoted(quoteId, userId) && voteJdbcRepository.hasVoted(quoteId, userId) || !voteWriteBehind.accept(quoteId, userId)) {
+            throw alreadyVoted();
+        }
+        // Counted before this vote was queued, so it is added here
+        quote.setVotes(quote.getVotes() + 1);
+        return rememberVote(quote, userId);
+    }
+
+    private boolean mayHaveVoted(long quoteId, String userId) {
+        VoteBloomFilter filter = voteFilter;
+        if (filter == null) {
+            return true;
+        }
+        boolean maybe = filter.mightContain(quoteId, userId);
+        (maybe ? voteFilterMaybe : voteFilterAbsent).increment();
+        return maybe;
+    }
+
+    private Quote rememberVote(Quote votedQuote, String userId) {
+        rememberVoter(votedQuote.getId(), userId);
+        return votedQuote;
+    }
+
+    private void rememberVoter(long quoteId, String userId) {
+        VoteBloomFilter filter = voteFilter;
+        if (filter != null) {
+            filter.add(quoteId, userId);
+        }
+    }
+
+    // Only votes the database has stored are journaled
+    private void journalVote(long quoteId, String userId) {
+        if (voteJournal != null) {
+            voteJournal.append(quoteId, userId, System.currentTimeMillis());
+        }
+    }
+}
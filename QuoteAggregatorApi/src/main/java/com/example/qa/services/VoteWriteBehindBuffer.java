@@ -0,0 +1,192 @@
+package com.example.qa.services;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.repositories.VoteJdbcRepository;
+import com.example.qa.repositories.VoteJdbcRepository.NewVote;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Optional high-throughput vote path. Accepted votes only bump an in-memory counter for their
+ * quote and join a bounded queue; a single flusher writes them with batched statements every
+ * {@code flushIntervalMs} or as soon as {@code flushBatchSize} votes are pending, instead of every
+ * vote updating the same hot {@code quotes} row. Pending counts stay visible through
+ * {@link #pendingVotes(long)} until their batch has committed; reads that add them to stored
+ * counters run through {@link #readCounted(Supplier)}, so a vote is never counted twice.
+ */
+@Component
+public class VoteWriteBehindBuffer {
+    private final VoteJdbcRepository voteJdbcRepository;
+    private final boolean enabled;
+    private final int flushBatchSize;
+    // Clients turned away by a full queue are told to come back after about one flush
+    private final Duration retryAfter;
+    private final long enqueueTimeoutNanos;
+    private final ArrayBlockingQueue<NewVote> queue;
+    private final Set<NewVote> pending = ConcurrentHashMap.newKeySet();
+    // Only quotes with pending votes have an entry; each update locks just its own bin of the map
+    private final Map<Long, Integer> pendingDeltas = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // Write-locked from a batch's commit until its votes have left the pending counts
+    private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+    // Guarded by flushLock
+    private final List<NewVote> batch = new ArrayList<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizes;
+    private volatile Consumer<List<NewVote>> flushListener = accepted -> { };
+
+    public VoteWriteBehindBuffer(VoteJdbcRepository voteJdbcRepository, QuoteAggregatorProperties properties,
+                                 MeterRegistry meterRegistry) {
+        QuoteAggregatorProperties.WriteBehind writeBehind = properties.getWriteBehind();
+        this.voteJdbcRepository = voteJdbcRepository;
+        this.enabled = writeBehind.isEnabled();
+        this.flushBatchSize = writeBehind.getFlushBatchSize();
+        this.retryAfter = Duration.ofMillis(writeBehind.getFlushIntervalMs());
+        this.enqueueTimeoutNanos = writeBehind.getEnqueueTimeout().toNanos();
+        this.queue = new ArrayBlockingQueue<>(writeBehind.getQueueCapacity());
+        Gauge.builder("quotes.votes.pending", queue, ArrayBlockingQueue::size)
+                .description("Accepted votes waiting for the next write-behind flush")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("quotes.votes.flush")
+                .description("Time to write one batch of pending votes")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("quotes.votes.flush.batch.size")
+                .description("Votes written per write-behind batch")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Called on the flushing thread with the votes each batch stored, once they have committed.
+     */
+    public void onFlush(Consumer<List<NewVote>> listener) {
+        this.flushListener = listener;
+    }
+
+    /**
+     * Queues a vote, waiting up to {@code enqueueTimeout} for space when the queue is full.
+     *
+     * @return false if the same vote is already pending
+     * @throws VoteQueueFullException if the queue stays full, so callers back off instead of piling up
+     */
+    public boolean accept(long quoteId, String userId) throws InterruptedException {
+        NewVote vote = new NewVote(quoteId, userId);
+        if (!pending.add(vote)) {
+            return false;
+        }
+        // Counted before it is queued, so the flusher never sees a vote whose delta is missing
+        pendingDeltas.merge(quoteId, 1, Integer::sum);
+        if (!queue.offer(vote, enqueueTimeoutNanos, TimeUnit.NANOSECONDS)) {
+            subtractPending(quoteId, 1);
+            pending.remove(vote);
+            throw new VoteQueueFullException("Too many pending votes, please try again later.", retryAfter);
+        }
+        if (queue.size() >= flushBatchSize && flushScheduled.compareAndSet(false, true)) {
+            Schedulers.boundedElastic().schedule(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+        return true;
+    }
+
+    public boolean isPending(long quoteId, String userId) {
+        return pending.contains(new NewVote(quoteId, userId));
+    }
+
+    /**
+     * Votes accepted for the quote that are not yet reflected in its stored counter.
+     */
+    public int pendingVotes(long quoteId) {
+        return pendingDeltas.getOrDefault(quoteId, 0);
+    }
+
+    /**
+     * Runs {@code read}, which reads stored counters and adds {@link #pendingVotes(long)} to them,
+     * while no batch commits: a flushed vote then counts either as stored or as pending, never as
+     * both. Keep {@code read} to the read itself, since flushes wait for it.
+     */
+    public <T> T readCounted(Supplier<T> read) {
+        if (!enabled) {
+            return read.get();
+        }
+        commitLock.readLock().lock();
+        try {
+            return read.get();
+        } finally {
+            commitLock.readLock().unlock();
+        }
+    }
+
+    public List<Long> quotesWithPendingVotes() {
+        return List.copyOf(pendingDeltas.keySet());
+    }
+
+    // The entry goes once nothing is pending, so the map only holds quotes with votes in flight
+    private void subtractPending(long quoteId, int votes) {
+        pendingDeltas.computeIfPresent(quoteId, (id, delta) -> delta > votes ? delta - votes : null);
+    }
+
+    @Scheduled(fixedDelayString = "${quotes.write-behind.flush-interval-ms:200}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            // A batch that failed last time is retried before anything new is drained
+            while (!batch.isEmpty() || queue.drainTo(batch, flushBatchSize) > 0) {
+                List<NewVote> accepted;
+                commitLock.writeLock().lock();
+                try {
+                    accepted = flushTimer.record(() -> voteJdbcRepository.applyVoteBatch(batch));
+                    // Rejected votes (unknown quote, already stored) were counted optimistically and drop out here too
+                    Map<Long, Integer> flushed = new HashMap<>();
+                    for (NewVote vote : batch) {
+                        flushed.merge(vote.quoteId(), 1, Integer::sum);
+                        pending.remove(vote);
+                    }
+                    flushed.forEach(this::subtractPending);
+                } finally {
+                    commitLock.writeLock().unlock();
+                }
+                batchSizes.record(batch.size());
+                batch.clear();
+                flushListener.accept(accepted);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.qa;
+
+import com.example.qa.config.JdbcRepositoryMetrics;
+import com.example.qa.config.MetricsConfig;
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.repositories.QuoteJdbcRepository;
+import com.example.qa.repositories.QuoteRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Every call counts as slow, other than bulk ones
+@DataJpaTest(properties = "quotes.metrics.slow-query-threshold=0ms")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({QuoteJdbcRepository.class, MetricsConfig.class, JdbcRepositoryMetricsTests.Metrics.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@ExtendWith(OutputCaptureExtension.class)
+public class JdbcRepositoryMetricsTests {
+
+    @Autowired
+    private QuoteJdbcRepository quoteJdbcRepository;
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    public void tearDown() {
+        quoteRepository.deleteAll();
+        meterRegistry.clear();
+    }
+
+    @Test
+    public void testJdbcRepositoryCallsAreTimedAndSpringDataOnesLeftAlone() {
+        quoteJdbcRepository.upsert(fetched("D'oh!"));
+        quoteJdbcRepository.upsert(fetched("D'oh!"));
+        // Transactional, so the repository was already proxied before the timing was added
+        quoteJdbcRepository.saveAllIfAbsent(List.of(fetched("Woo-hoo!")));
+        quoteRepository.count();
+
+        assertEquals(2, invocations("upsert", "SUCCESS").count());
+        assertEquals(1, invocations("saveAllIfAbsent", "SUCCESS").count());
+        assertEquals(2, quoteRepository.count());
+        assertNull(meterRegistry.find(JdbcRepositoryMetrics.TIMER).tag("repository", "QuoteRepository").timer());
+    }
+
+    @Test
+    public void testFailedCallsAreTaggedWithTheException() {
+        quoteJdbcRepository.upsert(fetched("D'oh!"));
+
+        assertThrows(IllegalStateException.class, () -> quoteJdbcRepository.forEachStoredAfter(0, quote -> {
+            throw new IllegalStateException("handler failed");
+        }));
+
+        assertEquals(1, meterRegistry.get(JdbcRepositoryMetrics.TIMER).tag("method", "forEachStoredAfter")
+                .tag("state", "ERROR").tag("exception", "IllegalStateException").timer().count());
+    }
+
+    @Test
+    public void testCallsOverTheThresholdAreLogged(CapturedOutput output) {
+        quoteJdbcRepository.findById(42);
+
+        assertTrue(output.getOut().contains("Slow repository call QuoteJdbcRepository.findById took"));
+    }
+
+    @Test
+    public void testBulkCallsHaveTheirOwnThreshold(CapturedOutput output) {
+        quoteJdbcRepository.upsert(fetched("D'oh!"));
+        quoteJdbcRepository.forEachStoredAfter(0, quote -> {
+        });
+
+        assertEquals(1, invocations("forEachStoredAfter", "SUCCESS").count());
+        assertTrue(output.getOut().contains("Slow repository call QuoteJdbcRepository.upsert took"));
+        assertFalse(output.getOut().contains("Slow repository call QuoteJdbcRepository.forEachStoredAfter took"));
+    }
+
+    private Timer invocations(String method, String state) {
+        return meterRegistry.get(JdbcRepositoryMetrics.TIMER).tag("repository", "QuoteJdbcRepository").tag("method", method)
+                .tag("state", state).timer();
+    }
+
+    private static Quote fetched(String text) {
+        return Quote.builder().quoteText(text).source("simpsons").votes(0).contentHash(Quote.contentHash(text)).build();
+    }
+
+    @TestConfiguration
+    static class Metrics {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        QuoteAggregatorProperties quoteAggregatorProperties() {
+            return new QuoteAggregatorProperties();
+        }
+    }
+}
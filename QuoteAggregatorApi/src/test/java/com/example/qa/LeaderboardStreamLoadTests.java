@@ -0,0 +1,130 @@
+package com.example.qa;
+
+import com.example.qa.entities.Quote;
+import com.example.qa.repositories.QuoteRepository;
+import com.example.qa.services.QuoteReadModelService;
+import com.example.qa.services.VoteService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Holds {@code load.subscribers} SSE clients (default 5000) on {@code /quotes/top/stream} of one
+ * instance, casts a burst of votes and measures how long it takes every client to see it. Only runs
+ * with {@code mvn -Pload-test test}; the client and server share the JVM, so the numbers are a
+ * lower bound for a dedicated instance.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class LeaderboardStreamLoadTests {
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> EVENT = new ParameterizedTypeReference<>() {
+    };
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private QuoteReadModelService readModels;
+
+    @Autowired
+    private VoteService voteService;
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void testManyConcurrentSubscribersReceiveCoalescedUpdates() throws Exception {
+        int subscribers = Integer.getInteger("load.subscribers", 5000);
+        int votes = Integer.getInteger("load.votes", 200);
+        Quote underdog = null;
+        for (int i = 0; i < 20; i++) {
+            underdog = quoteRepository.save(Quote.builder().quoteText("Load quote " + i).source("ninjas").votes(100 - i).build());
+        }
+        readModels.resyncLeaderboard();
+
+        ConnectionProvider connections = ConnectionProvider.builder("sse-load")
+                .maxConnections(subscribers)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        WebClient client = WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                .build();
+
+        CountDownLatch connected = new CountDownLatch(subscribers);
+        CountDownLatch updated = new CountDownLatch(subscribers);
+        AtomicLong deltas = new AtomicLong();
+        AtomicLong bursts = new AtomicLong();
+        Disposable.Composite streams = Disposables.composite();
+        long connectStart = System.nanoTime();
+        for (int i = 0; i < subscribers; i++) {
+            AtomicBoolean sawBurst = new AtomicBoolean();
+            streams.add(client.get()
+                    .uri("/quotes/top/stream?limit=10")
+                    .retrieve()
+                    .bodyToFlux(EVENT)
+                    .subscribe(event -> {
+                        if ("snapshot".equals(event.event())) {
+                            connected.countDown();
+                        } else if ("delta".equals(event.event())) {
+                            deltas.incrementAndGet();
+                            if (event.data().contains("\"rank\":1,") && sawBurst.compareAndSet(false, true)) {
+                                bursts.incrementAndGet();
+                                updated.countDown();
+                            }
+                        }
+                    }));
+        }
+        try {
+            assertTrue(connected.await(2, TimeUnit.MINUTES), "only " + (subscribers - connected.getCount()) + " subscribers connected");
+            long connectMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connectStart);
+            System.gc();
+            long heapMb = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024);
+            assertEquals(subscribers, meterRegistry.get("quotes.leaderboard.stream.subscribers").gauge().value());
+
+            // The last quote climbs to first place one vote at a time
+            long burstStart = System.nanoTime();
+            long underdogId = underdog.getId();
+            Flux.range(0, votes)
+                    .flatMap(i -> voteService.voteForQuote(underdogId, "voter" + i + "@example.com"), 16)
+                    .blockLast();
+            assertTrue(updated.await(1, TimeUnit.MINUTES), "only " + bursts.get() + " subscribers saw the new leader");
+            long fanOutMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - burstStart);
+
+            System.out.printf("%nSSE subscribers: %d, connected in %d ms, heap after GC: %d MB%n", subscribers, connectMillis, heapMb);
+            System.out.printf("%d votes reached every subscriber in %d ms, %.1f delta events per subscriber%n",
+                    votes, fanOutMillis, (double) deltas.get() / subscribers);
+            // Coalescing: far fewer events than votes reach each client
+            assertTrue(deltas.get() < (long) subscribers * votes / 10);
+        } finally {
+            streams.dispose();
+            connections.disposeLater().block();
+        }
+    }
+}
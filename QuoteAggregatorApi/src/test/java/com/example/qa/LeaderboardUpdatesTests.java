@@ -0,0 +1,102 @@
+package com.example.qa;
+
+import com.example.qa.entities.Quote;
+import com.example.qa.models.LeaderboardChange;
+import com.example.qa.services.LeaderboardUpdates;
+import com.example.qa.services.QuoteLeaderboard;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class LeaderboardUpdatesTests {
+    private static final Duration WINDOW = Duration.ofMillis(500);
+
+    private QuoteLeaderboard leaderboard;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        leaderboard = new QuoteLeaderboard(100);
+        LongStream.rangeClosed(1, 10).forEach(id -> leaderboard.offer(quote(id, 10 - (int) id)));
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    public void testBurstOfVotesIsCoalescedIntoOneDelta() {
+        StepVerifier.withVirtualTime(() -> updates(4).subscribe(5))
+                .assertNext(event -> {
+                    assertEquals("snapshot", event.event());
+                    assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ((List<?>) event.data()).stream().map(q -> ((Quote) q).getId()).toList());
+                })
+                .then(() -> {
+                    // Quote 7 overtakes everyone, one vote at a time
+                    for (int votes = 4; votes <= 12; votes++) {
+                        leaderboard.offer(quote(7, votes));
+                    }
+                })
+                .thenAwait(WINDOW)
+                .assertNext(event -> {
+                    assertEquals("delta", event.event());
+                    List<LeaderboardChange> changes = changes(event);
+                    LeaderboardChange entered = changes.get(0);
+                    assertEquals(7L, entered.id());
+                    assertEquals(12, entered.votes());
+                    assertEquals(1, entered.rank());
+                    assertEquals(7, entered.previousRank());
+                    // New to this client, so it comes with the full quote
+                    assertNotNull(entered.quote());
+                    // Everyone in the top 5 moved down one; quote 5 was pushed out of the client's range
+                    assertEquals(List.of(7L, 1L, 2L, 3L, 4L, 5L), changes.stream().map(LeaderboardChange::id).toList());
+                    assertNull(changes.get(1).quote());
+                    assertEquals(6, changes.get(5).rank());
+                })
+                // Nothing changes afterwards, so nothing more is sent
+                .expectNoEvent(WINDOW.multipliedBy(4))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    public void testSlowSubscriberKeepsOnlyTheNewestDeltas() {
+        StepVerifier.withVirtualTime(() -> updates(3).subscribe(5), 1)
+                .assertNext(event -> assertEquals("snapshot", event.event()))
+                .then(() -> {
+                    // One vote per window while the client reads nothing
+                    for (int votes = 10; votes < 20; votes++) {
+                        leaderboard.offer(quote(1, votes));
+                        VirtualTimeScheduler.get().advanceTimeBy(WINDOW);
+                    }
+                })
+                .thenRequest(Long.MAX_VALUE)
+                .assertNext(event -> assertEquals(17, changes(event).get(0).votes()))
+                .assertNext(event -> assertEquals(18, changes(event).get(0).votes()))
+                .assertNext(event -> assertEquals(19, changes(event).get(0).votes()))
+                .thenCancel()
+                .verify();
+        assertEquals(7.0, meterRegistry.counter("quotes.leaderboard.stream.dropped").count());
+    }
+
+    private LeaderboardUpdates updates(int bufferSize) {
+        return new LeaderboardUpdates(leaderboard, 20, WINDOW, bufferSize, meterRegistry);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<LeaderboardChange> changes(ServerSentEvent<Object> event) {
+        return (List<LeaderboardChange>) event.data();
+    }
+
+    private static Quote quote(long id, int votes) {
+        return Quote.builder().id(id).quoteText("Quote " + id).votes(votes).build();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.qa;
+
+import com.example.qa.services.LocalQuoteCorpus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LocalQuoteCorpusTests {
+
+    @Test
+    public void testSamplesEveryQuoteOfTheSourceUniformly() {
+        LocalQuoteCorpus corpus = new LocalQuoteCorpus(new SimpleMeterRegistry());
+        for (long id = 1; id <= 20; id++) {
+            corpus.add(id, id % 2 == 0 ? "simpsons" : "ninjas", null);
+        }
+
+        Map<Long, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            counts.merge(corpus.sample("simpsons").getAsLong(), 1, Integer::sum);
+        }
+
+        assertEquals(10, counts.size());
+        assertTrue(counts.keySet().stream().allMatch(id -> id % 2 == 0));
+        // 10,000 expected per quote; five standard deviations is about 475
+        counts.values().forEach(count -> assertTrue(Math.abs(count - 10_000) < 500, "count " + count));
+    }
+
+    @Test
+    public void testSampleAnyWeighsSourcesBySize() {
+        LocalQuoteCorpus corpus = new LocalQuoteCorpus(new SimpleMeterRegistry());
+        corpus.add(1, "simpsons", "Homer Simpson");
+        for (long id = 2; id <= 10; id++) {
+            corpus.add(id, "ninjas", null);
+        }
+
+        int simpsons = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (corpus.sampleAny().getAsLong() == 1) {
+                simpsons++;
+            }
+        }
+
+        assertTrue(Math.abs(simpsons - 10_000) < 500, "simpsons " + simpsons);
+    }
+
+    @Test
+    public void testDuplicateIdsAreAddedOnce() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        LocalQuoteCorpus corpus = new LocalQuoteCorpus(meterRegistry);
+
+        assertTrue(corpus.add(7, "simpsons", "Homer Simpson"));
+        assertFalse(corpus.add(7, "simpsons", "Homer Simpson"));
+        assertFalse(corpus.add(Integer.MAX_VALUE + 1L, "simpsons", null));
+
+        assertEquals(1, corpus.size("simpsons"));
+        assertEquals(1.0, meterRegistry.get("quotes.corpus.size").tag("source", "simpsons").gauge().value());
+    }
+
+    @Test
+    public void testSamplesByCharacterIgnoringCaseAndMatchingPartNames() {
+        LocalQuoteCorpus corpus = new LocalQuoteCorpus(new SimpleMeterRegistry());
+        corpus.add(1, "simpsons", "Homer Simpson");
+        corpus.add(2, "simpsons", "Homer Simpson");
+        corpus.add(3, "simpsons", "Bart Simpson");
+        corpus.add(4, "simpsons", "Ned Flanders");
+        corpus.add(5, "ninjas", null);
+
+        assertTrue(Set.of(1L, 2L).contains(corpus.sampleByCharacter("simpsons", "homer simpson").getAsLong()));
+        assertTrue(Set.of(1L, 2L, 3L).contains(corpus.sampleByCharacter("simpsons", "SIMPSON").getAsLong()));
+        assertEquals(OptionalLong.empty(), corpus.sampleByCharacter("simpsons", "Moe"));
+        assertEquals(OptionalLong.empty(), corpus.sampleByCharacter("ninjas", "Homer"));
+        assertEquals(OptionalLong.empty(), corpus.sample("futurama"));
+    }
+
+    @Test
+    public void testSamplingWhileQuotesAreAddedOnlySeesAddedIds() throws InterruptedException {
+        LocalQuoteCorpus corpus = new LocalQuoteCorpus(new SimpleMeterRegistry());
+        corpus.add(1, "ninjas", null);
+        AtomicBoolean adding = new AtomicBoolean(true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                while (adding.get()) {
+                    long id = corpus.sample("ninjas").getAsLong();
+                    if (id < 1 || id > 200_000) {
+                        throw new AssertionError("Sampled an id never added: " + id);
+                    }
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        reader.start();
+        for (long id = 2; id <= 200_000; id++) {
+            corpus.add(id, "ninjas", null);
+        }
+        adding.set(false);
+        reader.join();
+
+        assertNull(failure.get());
+        assertEquals(200_000, corpus.size("ninjas"));
+        // 200,000 ids in an int array and a bitset, both grown by doubling to 262,144
+        assertEquals(4L * 262_144 + 262_144 / 8, corpus.memoryBytes());
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.qa;
+
+import com.example.qa.entities.Quote;
+import com.example.qa.repositories.QuoteRepository;
+import com.example.qa.services.QuoteReadModelService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives a mixed workload of quote fetches, filtered fetches, votes and top-quote reads against one
+ * instance. The instance runs on embedded H2, and local stub servers stand in for both upstreams,
+ * so nothing leaves the machine. Requests are sent on a fixed schedule of {@code load.rps} per
+ * second for {@code load.seconds}, after {@code load.warmup-seconds} of unrecorded warm-up, with at
+ * most {@code load.clients} in flight. Latency is measured from when a request was due, so time
+ * spent waiting for a free client counts. The test prints throughput, latency percentiles and error
+ * rate per endpoint.
+ * <p>
+ * Only runs with {@code mvn -Pload-test test}. Knobs, all system properties:
+ * <ul>
+ *     <li>{@code load.mix}: endpoint weights, default {@code simpsons:30,ninjas:20,filtered:20,vote:15,top:15}</li>
+ *     <li>{@code load.upstream.median-ms} and {@code load.upstream.p99-ms}: log-normal upstream latency, default 80 and 400</li>
+ *     <li>{@code load.upstream.error-rate}: share of upstream calls answered with 503, default 0.01</li>
+ *     <li>{@code load.max-error-rate}: share of failed requests the run tolerates, default 0.02; upstream failures reach the client</li>
+ * </ul>
+ * Application properties can be overridden the same way, e.g. {@code -Dquotes.prefetch.enabled=true}.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class MixedWorkloadLoadTests {
+    private static final List<String> CHARACTERS = List.of("Homer", "Marge", "Bart", "Lisa", "Maggie", "Moe", "Ned", "Apu", "Krusty", "Burns");
+    private static final int CATALOGUE_SIZE = 500;
+    private static final StubUpstream SIMPSONS = new StubUpstream(MixedWorkloadLoadTests::simpsonsBody);
+    private static final StubUpstream NINJAS = new StubUpstream(parameters -> "[" + ninjasQuote(ThreadLocalRandom.current().nextInt(CATALOGUE_SIZE)) + "]");
+
+    static {
+        long median = Long.getLong("load.upstream.median-ms", 80);
+        long p99 = Long.getLong("load.upstream.p99-ms", 400);
+        double errorRate = Double.parseDouble(System.getProperty("load.upstream.error-rate", "0.01"));
+        for (StubUpstream upstream : List.of(SIMPSONS, NINJAS)) {
+            upstream.latency = request -> logNormal(median, p99);
+            upstream.errorRate = errorRate;
+        }
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private QuoteReadModelService readModels;
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @DynamicPropertySource
+    static void upstreams(DynamicPropertyRegistry registry) {
+        registry.add("quotes.sources.simpsons.base-url", SIMPSONS::baseUrl);
+        registry.add("quotes.sources.ninjas.base-url", NINJAS::baseUrl);
+    }
+
+    @AfterAll
+    static void stopUpstreams() {
+        SIMPSONS.dispose();
+        NINJAS.dispose();
+    }
+
+    @Test
+    public void testMixedWorkloadAtTargetRate() {
+        int rps = Integer.getInteger("load.rps", 200);
+        int seconds = Integer.getInteger("load.seconds", 30);
+        int warmupSeconds = Integer.getInteger("load.warmup-seconds", 5);
+        int clients = Integer.getInteger("load.clients", 64);
+        double maxErrorRate = Double.parseDouble(System.getProperty("load.max-error-rate", "0.02"));
+        Map<String, Integer> mix = Arrays.stream(System.getProperty("load.mix", "simpsons:30,ninjas:20,filtered:20,vote:15,top:15").split(","))
+                .map(entry -> entry.split(":"))
+                .collect(Collectors.toMap(entry -> entry[0].trim(), entry -> Integer.parseInt(entry[1].trim()), Integer::sum, LinkedHashMap::new));
+
+        // Half the catalogues are stored already, as on a running instance; they are also what votes go to
+        List<Long> stored = new ArrayList<>();
+        for (int i = 0; i < CATALOGUE_SIZE; i += 2) {
+            stored.add(store(simpsonsText(i), "simpsons", character(i)).getId());
+            stored.add(store(ninjasText(i), "ninjas", null).getId());
+        }
+        readModels.resyncCorpus();
+        readModels.resyncLeaderboard();
+
+        ConnectionProvider connections = ConnectionProvider.builder("load-clients").maxConnections(clients).build();
+        WebClient client = WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections).responseTimeout(Duration.ofSeconds(10))))
+                .build();
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        mix.keySet().forEach(endpoint -> stats.put(endpoint, new EndpointStats()));
+        List<String> schedule = weighted(mix);
+        AtomicLong voters = new AtomicLong();
+
+        // Requests of the warm-up run on the same schedule but are not recorded
+        int warmup = rps * warmupSeconds;
+        int total = rps * seconds;
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / (double) rps;
+        long start = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        Flux.range(-warmup, warmup + total)
+                .flatMap(i -> {
+                    long due = start + (long) (i * intervalNanos);
+                    String endpoint = schedule.get(ThreadLocalRandom.current().nextInt(schedule.size()));
+                    return Mono.delay(Duration.ofNanos(Math.max(due - System.nanoTime(), 0)))
+                            .then(Mono.defer(() -> call(client, endpoint, stored, voters)))
+                            .onErrorReturn(false)
+                            .filter(ok -> i >= 0)
+                            .doOnNext(ok -> stats.get(endpoint).record(System.nanoTime() - due, ok));
+                }, clients)
+                .blockLast(Duration.ofSeconds(warmupSeconds + seconds + 60L));
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        connections.dispose();
+
+        System.out.printf("%n%d requests in %.1f s (target %d/s, %d clients), upstream calls: simpsons %d, ninjas %d%n",
+                total, elapsedSeconds, rps, clients, SIMPSONS.requests.get(), NINJAS.requests.get());
+        System.out.printf("%-10s %9s %9s %8s %9s %9s %9s %9s%n", "endpoint", "requests", "req/s", "errors", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        long errors = 0;
+        for (Map.Entry<String, EndpointStats> entry : stats.entrySet()) {
+            EndpointStats endpoint = entry.getValue();
+            long[] latencies = endpoint.sortedLatencies();
+            System.out.printf("%-10s %9d %9.1f %7.2f%% %9.1f %9.1f %9.1f %9.1f%n", entry.getKey(), latencies.length,
+                    latencies.length / elapsedSeconds, 100.0 * endpoint.errors.get() / Math.max(latencies.length, 1),
+                    percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99), percentile(latencies, 100));
+            errors += endpoint.errors.get();
+        }
+
+        // The schedule is fixed, so falling behind shows up as a longer run
+        assertTrue(elapsedSeconds < seconds * 1.1 + 1, "the instance could not keep up with " + rps + " requests per second");
+        assertTrue(errors <= total * maxErrorRate, errors + " of " + total + " requests failed");
+    }
+
+    private Mono<Boolean> call(WebClient client, String endpoint, List<Long> stored, AtomicLong voters) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        WebClient.RequestHeadersSpec<?> request = switch (endpoint) {
+            case "simpsons" -> client.get().uri("/quotes/simpsons");
+            case "ninjas" -> client.get().uri("/quotes/ninjas");
+            case "filtered" -> client.get().uri("/quotes/simpsons/filtered?character={character}", CHARACTERS.get(random.nextInt(CHARACTERS.size())));
+            case "vote" -> client.post().uri("/quotes/{id}/vote", stored.get(random.nextInt(stored.size())))
+                    .bodyValue(Map.of("userEmail", "voter" + voters.incrementAndGet() + "@example.com"));
+            case "top" -> client.get().uri("/quotes/top?limit=10");
+            default -> throw new IllegalArgumentException("Unknown endpoint in load.mix: " + endpoint);
+        };
+        return request.exchangeToMono(response -> response.releaseBody().thenReturn(response.statusCode().is2xxSuccessful()));
+    }
+
+    private Quote store(String text, String source, String character) {
+        return quoteRepository.save(Quote.builder().quoteText(text).source(source).character(character).votes(0)
+                .contentHash(Quote.contentHash(text)).build());
+    }
+
+    // Each endpoint appears in proportion to its weight
+    private static List<String> weighted(Map<String, Integer> mix) {
+        List<String> schedule = new ArrayList<>();
+        mix.forEach((endpoint, weight) -> IntStream.range(0, weight).forEach(i -> schedule.add(endpoint)));
+        return schedule;
+    }
+
+    private static Duration logNormal(long medianMillis, long p99Millis) {
+        // The 99th percentile of a log-normal lies 2.326 standard deviations above the median in log space
+        double sigma = Math.log((double) Math.max(p99Millis, medianMillis) / Math.max(medianMillis, 1)) / 2.326;
+        double millis = medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian());
+        return Duration.ofNanos((long) (millis * 1_000_000));
+    }
+
+    private static double percentile(long[] sorted, int percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    // Answers like the Simpsons API: "count" random quotes, of one character if "character" is given
+    private static String simpsonsBody(Map<String, List<String>> parameters) {
+        int count = Integer.parseInt(parameters.getOrDefault("count", List.of("1")).get(0));
+        String character = parameters.getOrDefault("character", List.of("")).get(0);
+        Random random = ThreadLocalRandom.current();
+        List<String> quotes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int quote = random.nextInt(CATALOGUE_SIZE);
+            if (!character.isEmpty()) {
+                // Quote numbers of one character are congruent modulo the number of characters
+                quote = quote - quote % CHARACTERS.size() + Math.max(CHARACTERS.indexOf(character), 0);
+            }
+            quotes.add("""
+                    {"quote":"%s","character":"%s","image":"","characterDirection":"Right"}""".formatted(simpsonsText(quote), character(quote)));
+        }
+        return "[" + String.join(",", quotes) + "]";
+    }
+
+    private static String ninjasQuote(int i) {
+        return """
+                {"quote":"%s","author":"Author %d","category":"category%d"}""".formatted(ninjasText(i), i % 50, i % 10);
+    }
+
+    private static String simpsonsText(int i) {
+        return "Simpsons load quote " + i;
+    }
+
+    private static String ninjasText(int i) {
+        return "Ninjas load quote " + i;
+    }
+
+    private static String character(int i) {
+        return CHARACTERS.get(i % CHARACTERS.size());
+    }
+
+    private static class EndpointStats {
+        private final List<Long> latencies = new ArrayList<>();
+        private final AtomicLong errors = new AtomicLong();
+
+        synchronized void record(long nanos, boolean ok) {
+            latencies.add(nanos);
+            if (!ok) {
+                errors.incrementAndGet();
+            }
+        }
+
+        synchronized long[] sortedLatencies() {
+            return latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        }
+    }
+}
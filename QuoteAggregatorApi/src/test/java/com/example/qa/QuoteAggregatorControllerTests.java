@@ -3,22 +3,44 @@ import com.example.qa.config.GlobalExceptionHandler;
 import com.example.qa.config.SecurityConfig;
 import com.example.qa.controllers.QuoteAggregatorController;
 import com.example.qa.entities.Quote;
+import com.example.qa.models.BatchVote;
+import com.example.qa.models.BatchVoteResult;
+import com.example.qa.models.LeaderboardChange;
+import com.example.qa.models.QuoteGroupStats;
+import com.example.qa.models.QuotePage;
+import com.example.qa.models.QuoteSourceStatus;
+import com.example.qa.models.QuoteStats;
 import com.example.qa.services.QuoteAggregatorService;
+import com.example.qa.services.QuoteReadModelService;
+import com.example.qa.services.UpstreamUnavailableException;
+import com.example.qa.services.VoteQueueFullException;
+import com.example.qa.services.VoteService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeoutException;
 
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest({QuoteAggregatorController.class, SecurityConfig.class, GlobalExceptionHandler.class})
@@ -30,6 +52,12 @@ public class QuoteAggregatorControllerTests {
     @MockitoBean
     private QuoteAggregatorService quoteAggregatorService;
 
+    @MockitoBean
+    private VoteService voteService;
+
+    @MockitoBean
+    private QuoteReadModelService readModels;
+
     @Test
     public void testGetSimpsonsQuote() {
         Quote quote = new Quote();
@@ -100,8 +128,8 @@ public class QuoteAggregatorControllerTests {
         quote.setQuoteText("Test quote");
         quote.setVotes(5);
 
-        when(quoteAggregatorService.voteForQuote(anyLong(), anyString()))
-                .thenReturn(quote);
+        when(voteService.voteForQuote(anyLong(), anyString()))
+                .thenReturn(Mono.just(quote));
 
         webTestClient.post()
                 .uri("/quotes/1/vote")
@@ -128,8 +156,8 @@ public class QuoteAggregatorControllerTests {
 
     @Test
     public void testVoteForQuote_AlreadyVoted() {
-        when(quoteAggregatorService.voteForQuote(anyLong(), anyString()))
-                .thenThrow(new RuntimeException("User has already voted for this quote."));
+        when(voteService.voteForQuote(anyLong(), anyString()))
+                .thenReturn(Mono.error(new RuntimeException("User has already voted for this quote.")));
 
         webTestClient.post()
                 .uri("/quotes/1/vote")
@@ -141,6 +169,131 @@ public class QuoteAggregatorControllerTests {
                 .jsonPath("$.error").isEqualTo("User has already voted for this quote.");
     }
 
+    @Test
+    public void testVoteForQuote_QueueFull() {
+        when(voteService.voteForQuote(anyLong(), anyString()))
+                .thenReturn(Mono.error(new VoteQueueFullException("Too many pending votes, please try again later.", Duration.ofMillis(200))));
+
+        webTestClient.post()
+                .uri("/quotes/1/vote")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"userEmail\": \"test@example.com\"}")
+                .exchange()
+                .expectStatus().isEqualTo(503)
+                .expectHeader().valueEquals(HttpHeaders.RETRY_AFTER, "1")
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Too many pending votes, please try again later.");
+    }
+
+    @Test
+    public void testVoteForQuotesInBatch() {
+        List<BatchVote> votes = List.of(new BatchVote(1L, "a@example.com"), new BatchVote(2L, "a@example.com"));
+        when(voteService.voteForQuotes(votes)).thenReturn(Mono.just(List.of(
+                new BatchVoteResult(1L, "a@example.com", "accepted"),
+                new BatchVoteResult(2L, "a@example.com", "quote_not_found"))));
+
+        webTestClient.post()
+                .uri("/quotes/votes:batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"quoteId\": 1, \"userEmail\": \"a@example.com\"}, {\"quoteId\": 2, \"userEmail\": \"a@example.com\"}]")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].status").isEqualTo("accepted")
+                .jsonPath("$[1].quoteId").isEqualTo(2)
+                .jsonPath("$[1].status").isEqualTo("quote_not_found");
+    }
+
+    @Test
+    public void testGetQuoteBatchStreamsNdjson() {
+        Quote quote1 = new Quote();
+        quote1.setQuoteText("Batch quote 1");
+        Quote quote2 = new Quote();
+        quote2.setQuoteText("Batch quote 2");
+
+        when(quoteAggregatorService.getQuoteBatch("simpsons", 2))
+                .thenReturn(Flux.just(quote1, quote2));
+
+        webTestClient.get()
+                .uri("/quotes/batch?source=simpsons&count=2")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(Quote.class)
+                .hasSize(2)
+                .contains(quote1, quote2);
+    }
+
+    @Test
+    public void testGetQuoteBatch_UnknownSource() {
+        when(quoteAggregatorService.getQuoteBatch("futurama", 10))
+                .thenReturn(Flux.error(new RuntimeException("Unknown quote source: futurama")));
+
+        webTestClient.get()
+                .uri("/quotes/batch?source=futurama")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    public void testBrowseQuotes() {
+        Quote quote = new Quote();
+        quote.setId(7L);
+        quote.setVotes(3);
+
+        when(readModels.browseQuotes("simpsons", null, null, "recent", "cmVjZW50Ojk", 2))
+                .thenReturn(Mono.just(new QuotePage(List.of(quote), "cmVjZW50Ojc")));
+
+        webTestClient.get()
+                .uri("/quotes?source=simpsons&sort=recent&after=cmVjZW50Ojk&size=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.quotes[0].id").isEqualTo(7)
+                .jsonPath("$.next").isEqualTo("cmVjZW50Ojc");
+    }
+
+    @Test
+    public void testBrowseQuotes_InvalidCursor() {
+        when(readModels.browseQuotes(null, null, null, "votes", "bogus", 20))
+                .thenReturn(Mono.error(new RuntimeException("Invalid cursor for sort votes: bogus")));
+
+        webTestClient.get()
+                .uri("/quotes?after=bogus")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Invalid cursor for sort votes: bogus");
+    }
+
+    @Test
+    public void testSearchQuotes() {
+        Quote quote = new Quote();
+        quote.setId(3L);
+        quote.setQuoteText("Mmm... donut.");
+        quote.setCharacter("Homer Simpson");
+
+        when(readModels.searchQuotes("homer don*", 5)).thenReturn(Flux.just(quote));
+
+        webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/quotes/search").queryParam("q", "homer don*").queryParam("limit", 5).build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].id").isEqualTo(3)
+                .jsonPath("$.length()").isEqualTo(1);
+    }
+
+    @Test
+    public void testSearchQuotes_MissingQuery() {
+        webTestClient.get()
+                .uri("/quotes/search")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
     @Test
     public void testGetTopQuotes() {
         Quote quote1 = new Quote();
@@ -149,13 +302,18 @@ public class QuoteAggregatorControllerTests {
         quote2.setQuoteText("Top quote 2");
         List<Quote> quotes = Arrays.asList(quote1, quote2);
 
-        when(quoteAggregatorService.getTopQuotes(10))
-                .thenReturn(quotes);
+        when(readModels.getTopQuotesETag()).thenReturn("\"a-1\"");
+        when(readModels.topQuotesLimit(10)).thenReturn(10);
+        when(readModels.getTopQuotes(10))
+                .thenReturn(Flux.fromIterable(quotes));
 
         webTestClient.get()
                 .uri("/quotes/top?limit=10")
                 .exchange()
                 .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"a-1\"")
+                .expectHeader().cacheControl(CacheControl.noCache())
                 .expectBodyList(Quote.class)
                 .hasSize(2)
                 .contains(quote1, quote2);
@@ -163,8 +321,10 @@ public class QuoteAggregatorControllerTests {
 
     @Test
     public void testGetTopQuotes_DefaultLimit() {
-        when(quoteAggregatorService.getTopQuotes(10))
-                .thenReturn(List.of());
+        when(readModels.getTopQuotesETag()).thenReturn("\"a-1\"");
+        when(readModels.topQuotesLimit(10)).thenReturn(10);
+        when(readModels.getTopQuotes(10))
+                .thenReturn(Flux.empty());
 
         webTestClient.get()
                 .uri("/quotes/top")
@@ -173,16 +333,224 @@ public class QuoteAggregatorControllerTests {
                 .expectBodyList(Quote.class);
     }
 
+    @Test
+    public void testGetTopQuotes_NotModified() {
+        when(readModels.getTopQuotesETag()).thenReturn("\"a-1\"");
+
+        webTestClient.get()
+                .uri("/quotes/top?limit=10")
+                .ifNoneMatch("\"a-1\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"a-1\"")
+                .expectHeader().cacheControl(CacheControl.noCache())
+                .expectBody().isEmpty();
+
+        verify(readModels, never()).getTopQuotes(anyInt());
+    }
+
+    @Test
+    public void testGetTopQuotes_SerializedOncePerVersion() {
+        Quote quote = new Quote();
+        quote.setId(1L);
+        quote.setVotes(5);
+        // Tags no other test uses: the controller keeps its serialized bodies across tests
+        when(readModels.getTopQuotesETag()).thenReturn("\"b-1\"", "\"b-1\"", "\"b-2\"");
+        when(readModels.topQuotesLimit(anyInt())).thenReturn(10);
+        when(readModels.getTopQuotes(10)).thenReturn(Flux.just(quote));
+
+        for (String eTag : List.of("\"b-1\"", "\"b-1\"", "\"b-2\"")) {
+            webTestClient.get()
+                    .uri("/quotes/top?limit=10")
+                    // A stale copy is answered in full
+                    .ifNoneMatch("\"b-0\"")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().valueEquals(HttpHeaders.ETAG, eTag)
+                    .expectBody()
+                    .jsonPath("$[0].votes").isEqualTo(5);
+        }
+
+        verify(readModels, times(2)).getTopQuotes(10);
+    }
+
+    @Test
+    public void testGetTopQuotes_Filtered() {
+        Quote quote = new Quote();
+        quote.setId(3L);
+        quote.setCharacter("Homer Simpson");
+        when(readModels.getTopQuotesETag("simpsons", "Homer Simpson", null)).thenReturn("\"c-g0-4\"");
+        when(readModels.topQuotesLimit(5)).thenReturn(5);
+        when(readModels.getTopQuotes("simpsons", "Homer Simpson", null, 5)).thenReturn(Flux.just(quote));
+
+        webTestClient.get()
+                .uri("/quotes/top?limit=5&source=simpsons&character=Homer Simpson")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"c-g0-4\"")
+                .expectBody()
+                .jsonPath("$[0].character").isEqualTo("Homer Simpson");
+
+        verify(readModels, never()).getTopQuotes(anyInt());
+    }
+
+    @Test
+    public void testGetQuoteStats() {
+        when(readModels.getQuoteStats()).thenReturn(new QuoteStats(3, 12,
+                List.of(new QuoteGroupStats("simpsons", 2, 10), new QuoteGroupStats("ninjas", 1, 2)),
+                List.of(new QuoteGroupStats("Homer Simpson", 2, 10)),
+                List.of(new QuoteGroupStats("inspirational", 1, 2))));
+
+        webTestClient.get()
+                .uri("/quotes/stats")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.votes").isEqualTo(12)
+                .jsonPath("$.sources[0].name").isEqualTo("simpsons")
+                .jsonPath("$.characters[0].quotes").isEqualTo(2)
+                .jsonPath("$.categories[0].votes").isEqualTo(2);
+    }
+
+    @Test
+    public void testStreamTopQuotes() {
+        Quote quote = new Quote();
+        quote.setId(1L);
+        quote.setQuoteText("Top quote 1");
+        quote.setVotes(5);
+        when(readModels.streamTopQuotes(10))
+                .thenReturn(Flux.just(ServerSentEvent.<Object>builder(List.of(quote)).id("3").event("snapshot").build(),
+                        ServerSentEvent.<Object>builder(List.of(new LeaderboardChange(1L, 6, 1, 1, null))).id("4").event("delta").build()));
+
+        String body = webTestClient.get()
+                .uri("/quotes/top/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+                .returnResult(String.class)
+                .getResponseBody()
+                .collectList()
+                .map(lines -> String.join("\n", lines))
+                .block();
+
+        assert body.contains("Top quote 1");
+        assert body.contains("\"votes\":6,\"rank\":1,\"previousRank\":1");
+    }
+
+    @Test
+    public void testGetRandomQuote() {
+        Quote quote = new Quote();
+        quote.setQuoteText("Be yourself; everyone else is already taken.");
+        quote.setAuthor("Oscar Wilde");
+        quote.setSource("ninjas");
+
+        when(quoteAggregatorService.getRandomQuote())
+                .thenReturn(Mono.just(Optional.of(quote)));
+
+        webTestClient.get()
+                .uri("/quotes/random")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.source").isEqualTo("ninjas")
+                .jsonPath("$.author").isEqualTo("Oscar Wilde");
+    }
+
+    @Test
+    public void testGetRandomQuote_NoSourceAvailable() {
+        when(quoteAggregatorService.getRandomQuote())
+                .thenReturn(Mono.error(new UpstreamUnavailableException("Every quote source circuit is open")));
+
+        webTestClient.get()
+                .uri("/quotes/random")
+                .exchange()
+                .expectStatus().isEqualTo(503)
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Every quote source circuit is open");
+    }
+
+    @Test
+    public void testGetNinjasQuote_UpstreamTimeout() {
+        when(quoteAggregatorService.getNinjasQuote())
+                .thenReturn(Mono.error(new TimeoutException()));
+
+        webTestClient.get()
+                .uri("/quotes/ninjas")
+                .exchange()
+                .expectStatus().isEqualTo(504);
+    }
+
     @Test
     public void testGetQuoteSources() {
+        when(quoteAggregatorService.getQuoteSourcesETag()).thenReturn("\"1f\"");
+        when(quoteAggregatorService.getQuoteSources()).thenReturn(Map.of(
+                "simpsons", "https://thesimpsonsquoteapi.glitch.me",
+                "ninjas", "https://api.api-ninjas.com/v1"));
+
         webTestClient.get()
                 .uri("/quotes/quote-sources")
                 .exchange()
                 .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1f\"")
+                .expectHeader().cacheControl(CacheControl.maxAge(Duration.ofMinutes(5)))
                 .expectBody(Map.class)
                 .value(map -> {
                     assert map.get("simpsons").equals("https://thesimpsonsquoteapi.glitch.me");
                     assert map.get("ninjas").equals("https://api.api-ninjas.com/v1");
                 });
     }
+
+    @Test
+    public void testGetQuoteSources_NotModified() {
+        when(quoteAggregatorService.getQuoteSourcesETag()).thenReturn("\"1f\"");
+
+        webTestClient.get()
+                .uri("/quotes/quote-sources")
+                .ifNoneMatch("\"1f\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        verify(quoteAggregatorService, never()).getQuoteSources();
+    }
+
+    @Test
+    public void testGetQuoteSourceStatuses() {
+        when(quoteAggregatorService.getQuoteSourceStatuses()).thenReturn(List.of(
+                new QuoteSourceStatus("simpsons", "https://thesimpsonsquoteapi.glitch.me", "closed", 0, 2, 40, 120L, 310L),
+                new QuoteSourceStatus("ninjas", "https://api.api-ninjas.com/v1", "open", 5, 0, 0, null, null)));
+
+        webTestClient.get()
+                .uri("/quotes/quote-sources/status")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].name").isEqualTo("simpsons")
+                .jsonPath("$[0].p95Millis").isEqualTo(310)
+                .jsonPath("$[0].inFlight").isEqualTo(2)
+                .jsonPath("$[1].circuit").isEqualTo("open")
+                .jsonPath("$[1].p95Millis").doesNotExist();
+    }
+
+    @Test
+    public void testInvalidateCharacterCache_RequiresAuthentication() {
+        webTestClient.delete()
+                .uri("/quotes/admin/cache/simpsons/Homer Simpson")
+                .exchange()
+                .expectStatus().isUnauthorized();
+
+        verify(quoteAggregatorService, never()).invalidateCharacterCache(anyString());
+    }
+
+    @Test
+    @WithMockUser
+    public void testInvalidateCharacterCache() {
+        webTestClient.delete()
+                .uri("/quotes/admin/cache/simpsons/Homer Simpson")
+                .exchange()
+                .expectStatus().isOk();
+
+        verify(quoteAggregatorService).invalidateCharacterCache("Homer Simpson");
+    }
 }
\ No newline at end of file
@@ -0,0 +1,180 @@
+package com.example.qa;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.models.NinjasModel;
+import com.example.qa.models.SimpsonsModel;
+import com.example.qa.repositories.QuoteJdbcRepository;
+import com.example.qa.repositories.QuoteRepository;
+import com.example.qa.repositories.VoteJdbcRepository;
+import com.example.qa.services.NinjasQuoteSource;
+import com.example.qa.services.QuoteAggregatorService;
+import com.example.qa.services.QuoteReadModelService;
+import com.example.qa.services.QuoteSourceRegistry;
+import com.example.qa.services.SimpsonsQuoteSource;
+import com.example.qa.services.VoteService;
+import com.example.qa.services.VoteWriteBehindBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the service pipelines with upstream responses delivered on non-blocking reactor threads
+ * (standing in for the reactor-netty event loop) and repositories that block like a JDBC round trip.
+ * BlockHound fails the pipeline if any of that blocking work executes on the delivering thread.
+ */
+public class QuoteAggregatorServiceBlockHoundTests {
+
+    private QuoteRepository quoteRepository;
+    private QuoteJdbcRepository quoteJdbcRepository;
+    private VoteJdbcRepository voteJdbcRepository;
+    private QuoteReadModelService readModels;
+    private VoteService voteService;
+    private QuoteAggregatorService service;
+
+    @BeforeAll
+    public static void installBlockHound() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        WebClient.Builder builder = Mockito.mock(WebClient.Builder.class);
+        WebClient simpsonsClient = Mockito.mock(WebClient.class);
+        WebClient ninjasClient = Mockito.mock(WebClient.class);
+
+        when(builder.clone()).thenReturn(builder);
+        when(builder.baseUrl(anyString())).thenReturn(builder);
+        when(builder.clientConnector(any())).thenReturn(builder);
+        when(builder.build()).thenReturn(simpsonsClient, ninjasClient);
+
+        SimpsonsModel simpsonsQuote = new SimpsonsModel();
+        simpsonsQuote.setQuote("Test quote");
+        simpsonsQuote.setCharacter("Homer");
+        mockUpstream(simpsonsClient, SimpsonsModel[].class, new SimpsonsModel[]{simpsonsQuote});
+
+        NinjasModel ninjasQuote = new NinjasModel();
+        ninjasQuote.setQuote("Ninja quote");
+        mockUpstream(ninjasClient, NinjasModel[].class, new NinjasModel[]{ninjasQuote});
+
+        quoteRepository = Mockito.mock(QuoteRepository.class);
+        quoteJdbcRepository = Mockito.mock(QuoteJdbcRepository.class);
+        voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
+
+        Quote storedQuote = new Quote();
+        storedQuote.setId(1L);
+        storedQuote.setQuoteText("Test quote");
+        storedQuote.setContentHash(Quote.contentHash("Test quote"));
+        storedQuote.setVotes(0);
+
+        when(quoteRepository.findByOrderByVotesDescIdAsc(any(Pageable.class))).thenAnswer(jdbcRoundTrip(List.of(storedQuote)));
+        when(quoteJdbcRepository.upsert(any(Quote.class))).thenAnswer(jdbcRoundTrip(storedQuote));
+        when(voteJdbcRepository.castVote(anyLong(), anyString())).thenAnswer(jdbcRoundTrip(Optional.of(storedQuote)));
+
+        QuoteAggregatorProperties properties = new QuoteAggregatorProperties();
+        VoteWriteBehindBuffer voteWriteBehind = disabledWriteBehind(voteJdbcRepository);
+        readModels = new QuoteReadModelService(quoteRepository, quoteJdbcRepository, voteWriteBehind, properties, new SimpleMeterRegistry());
+        voteService = new VoteService(quoteRepository, quoteJdbcRepository, voteJdbcRepository, voteWriteBehind, readModels, properties,
+                new SimpleMeterRegistry());
+        service = new QuoteAggregatorService(sources(builder), quoteJdbcRepository, readModels, properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    public void testBlockHoundDetectsRepositoryCallOnNonBlockingThread() {
+        Mono<Quote> onEventLoop = Mono.fromCallable(() -> quoteJdbcRepository.upsert(new Quote()))
+                .subscribeOn(Schedulers.parallel());
+
+        StepVerifier.create(onEventLoop)
+                .expectErrorMatches(error -> error instanceof BlockingOperationError)
+                .verify();
+    }
+
+    @Test
+    public void testGetSimpsonsQuoteDoesNotBlockEventLoop() {
+        StepVerifier.create(service.getSimpsonsQuote())
+                .expectNextMatches(Optional::isPresent)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testGetFilteredSimpsonsQuoteDoesNotBlockEventLoop() {
+        StepVerifier.create(service.getFilteredSimpsonsQuote("Homer"))
+                .expectNextMatches(Optional::isPresent)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testGetNinjasQuoteDoesNotBlockEventLoop() {
+        StepVerifier.create(service.getNinjasQuote())
+                .expectNextMatches(Optional::isPresent)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testVoteForQuoteDoesNotBlockEventLoop() {
+        StepVerifier.create(voteService.voteForQuote(1L, "test@example.com").subscribeOn(Schedulers.parallel()))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    public void testGetTopQuotesDoesNotBlockEventLoop() {
+        readModels.loadLeaderboard();
+
+        StepVerifier.create(readModels.getTopQuotes(10).subscribeOn(Schedulers.parallel()))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    private static <T> Answer<T> jdbcRoundTrip(T result) {
+        return invocation -> {
+            Thread.sleep(5);
+            return result;
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> void mockUpstream(WebClient client, Class<T> bodyType, T body) {
+        WebClient.RequestHeadersUriSpec uriSpec = Mockito.mock(WebClient.RequestHeadersUriSpec.class);
+        WebClient.RequestHeadersSpec headersSpec = Mockito.mock(WebClient.RequestHeadersSpec.class);
+        WebClient.ResponseSpec responseSpec = Mockito.mock(WebClient.ResponseSpec.class);
+
+        when(client.get()).thenReturn(uriSpec);
+        when(uriSpec.uri(anyString())).thenReturn(headersSpec);
+        when(headersSpec.accept(MediaType.APPLICATION_JSON)).thenReturn(headersSpec);
+        when(headersSpec.header(anyString(), any(String[].class))).thenReturn(headersSpec);
+        when(headersSpec.retrieve()).thenReturn(responseSpec);
+        // Deliver the decoded body on a non-blocking thread, as reactor-netty does from its event loop
+        when(responseSpec.bodyToMono(bodyType)).thenReturn(Mono.just(body).publishOn(Schedulers.parallel()));
+    }
+
+    private static VoteWriteBehindBuffer disabledWriteBehind(VoteJdbcRepository voteJdbcRepository) {
+        return new VoteWriteBehindBuffer(voteJdbcRepository, new QuoteAggregatorProperties(), new SimpleMeterRegistry());
+    }
+
+    private static QuoteSourceRegistry sources(WebClient.Builder builder) {
+        QuoteAggregatorProperties properties = new QuoteAggregatorProperties();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        return new QuoteSourceRegistry(List.of(new SimpsonsQuoteSource(builder, properties, meterRegistry),
+                new NinjasQuoteSource("dummy-key", builder, properties, meterRegistry)), properties, meterRegistry);
+    }
+}
@@ -2,23 +2,41 @@ package com.example.qa;
 
 import com.example.qa.models.NinjasModel;
 import com.example.qa.models.SimpsonsModel;
+import com.example.qa.services.NinjasQuoteSource;
 import com.example.qa.services.QuoteAggregatorService;
+import com.example.qa.services.QuoteReadModelService;
+import com.example.qa.services.QuoteSourceRegistry;
+import com.example.qa.services.SimpsonsQuoteSource;
+import com.example.qa.services.VoteWriteBehindBuffer;
+import com.example.qa.config.QuoteAggregatorProperties;
 import com.example.qa.entities.Quote;
+import com.example.qa.repositories.QuoteJdbcRepository;
 import com.example.qa.repositories.QuoteRepository;
-import com.example.qa.repositories.VoteRepository;
+import com.example.qa.repositories.VoteJdbcRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.awaitility.Awaitility;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 
@@ -31,7 +49,9 @@ public class QuoteAggregatorServiceTests {
         WebClient simpsonsClient = Mockito.mock(WebClient.class);
         WebClient ninjasClient = Mockito.mock(WebClient.class);
 
+        when(builder.clone()).thenReturn(builder);
         when(builder.baseUrl(anyString())).thenReturn(builder);
+        when(builder.clientConnector(any())).thenReturn(builder);
         when(builder.build()).thenReturn(simpsonsClient, ninjasClient);
 
         // Mock Simpsons client chain
@@ -57,22 +77,13 @@ public class QuoteAggregatorServiceTests {
 
         // Mock repositories
         QuoteRepository quoteRepository = Mockito.mock(QuoteRepository.class);
-        VoteRepository voteRepository = Mockito.mock(VoteRepository.class);
+        VoteJdbcRepository voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
 
-        // Mock repository interactions
-        Quote savedQuote = new Quote();
-        savedQuote.setQuoteText("Test quote");
-        savedQuote.setCharacter("Test character");
-        savedQuote.setImage("http://example.com/image.png");
-        savedQuote.setCharacterDirection("Left");
-        savedQuote.setSource("simpsons");
+        QuoteJdbcRepository quoteJdbcRepository = Mockito.mock(QuoteJdbcRepository.class);
+        when(quoteJdbcRepository.upsert(any(Quote.class))).thenAnswer(QuoteAggregatorServiceTests::assignId);
 
-        when(quoteRepository.findByQuoteText("Test quote"))
-                .thenReturn(Optional.empty()) // First call in saveQuote
-                .thenReturn(Optional.of(savedQuote)); // Second call in convertModelToQuote
-        when(quoteRepository.save(any(Quote.class))).thenAnswer(invocation -> invocation.getArgument(0));
-
-        QuoteAggregatorService service = new QuoteAggregatorService("dummy-key", builder, quoteRepository, voteRepository);
+        QuoteAggregatorService service = service(builder, quoteRepository, quoteJdbcRepository,
+                disabledWriteBehind(voteJdbcRepository), new QuoteAggregatorProperties(), new SimpleMeterRegistry());
 
         Mono<Optional<Quote>> result = service.getSimpsonsQuote();
         StepVerifier.create(result)
@@ -80,6 +91,13 @@ public class QuoteAggregatorServiceTests {
                         && "Test quote".equals(optionalQuote.get().getQuoteText())
                         && "Test character".equals(optionalQuote.get().getCharacter()))
                 .verifyComplete();
+
+        // The same quote again is recognised by its content hash without a database round trip
+        StepVerifier.create(service.getSimpsonsQuote())
+                .expectNextMatches(optionalQuote -> optionalQuote.isPresent() && optionalQuote.get().getId() == 1L)
+                .verifyComplete();
+        Mockito.verify(quoteJdbcRepository, Mockito.times(1)).upsert(any(Quote.class));
+        Mockito.verifyNoInteractions(quoteRepository);
     }
 
     @Test
@@ -88,7 +106,9 @@ public class QuoteAggregatorServiceTests {
         WebClient simpsonsClient = Mockito.mock(WebClient.class);
         WebClient ninjasClient = Mockito.mock(WebClient.class);
 
+        when(builder.clone()).thenReturn(builder);
         when(builder.baseUrl(anyString())).thenReturn(builder);
+        when(builder.clientConnector(any())).thenReturn(builder);
         when(builder.build()).thenReturn(simpsonsClient, ninjasClient);
 
         WebClient.RequestHeadersUriSpec simpsonsUriSpec = Mockito.mock(WebClient.RequestHeadersUriSpec.class);
@@ -96,7 +116,7 @@ public class QuoteAggregatorServiceTests {
         WebClient.ResponseSpec simpsonsResponseSpec = Mockito.mock(WebClient.ResponseSpec.class);
 
         when(simpsonsClient.get()).thenReturn(simpsonsUriSpec);
-        when(simpsonsUriSpec.uri("/quotes?character=Homer")).thenReturn(simpsonsHeadersSpec);
+        when(simpsonsUriSpec.uri("/quotes?count=50&character=homer")).thenReturn(simpsonsHeadersSpec);
         when(simpsonsHeadersSpec.accept(MediaType.APPLICATION_JSON)).thenReturn(simpsonsHeadersSpec);
         when(simpsonsHeadersSpec.retrieve()).thenReturn(simpsonsResponseSpec);
 
@@ -110,19 +130,13 @@ public class QuoteAggregatorServiceTests {
                 .thenReturn(Mono.just(quotes));
 
         QuoteRepository quoteRepository = Mockito.mock(QuoteRepository.class);
-        VoteRepository voteRepository = Mockito.mock(VoteRepository.class);
+        VoteJdbcRepository voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
 
-        Quote savedQuote = new Quote();
-        savedQuote.setQuoteText("Test quote");
-        savedQuote.setCharacter("Test character");
-        savedQuote.setSource("simpsons");
+        QuoteJdbcRepository quoteJdbcRepository = Mockito.mock(QuoteJdbcRepository.class);
+        when(quoteJdbcRepository.upsert(any(Quote.class))).thenAnswer(QuoteAggregatorServiceTests::assignId);
 
-        when(quoteRepository.findByQuoteText("Test quote"))
-                .thenReturn(Optional.empty())
-                .thenReturn(Optional.of(savedQuote));
-        when(quoteRepository.save(any(Quote.class))).thenAnswer(invocation -> invocation.getArgument(0));
-
-        QuoteAggregatorService service = new QuoteAggregatorService("dummy-key", builder, quoteRepository, voteRepository);
+        QuoteAggregatorService service = service(builder, quoteRepository, quoteJdbcRepository,
+                disabledWriteBehind(voteJdbcRepository), new QuoteAggregatorProperties(), new SimpleMeterRegistry());
 
         Mono<Optional<Quote>> result = service.getFilteredSimpsonsQuote("Homer");
         StepVerifier.create(result)
@@ -137,7 +151,9 @@ public class QuoteAggregatorServiceTests {
         WebClient simpsonsClient = Mockito.mock(WebClient.class);
         WebClient ninjasClient = Mockito.mock(WebClient.class);
 
+        when(builder.clone()).thenReturn(builder);
         when(builder.baseUrl(anyString())).thenReturn(builder);
+        when(builder.clientConnector(any())).thenReturn(builder);
         when(builder.build()).thenReturn(simpsonsClient, ninjasClient);
 
         WebClient.RequestHeadersUriSpec ninjasUriSpec = Mockito.mock(WebClient.RequestHeadersUriSpec.class);
@@ -159,18 +175,13 @@ public class QuoteAggregatorServiceTests {
                 .thenReturn(Mono.just(quotes));
 
         QuoteRepository quoteRepository = Mockito.mock(QuoteRepository.class);
-        VoteRepository voteRepository = Mockito.mock(VoteRepository.class);
-
-        Quote savedQuote = new Quote();
-        savedQuote.setQuoteText("Ninja quote");
-        savedQuote.setSource("ninjas");
+        VoteJdbcRepository voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
 
-        when(quoteRepository.findByQuoteText("Ninja quote"))
-                .thenReturn(Optional.empty())
-                .thenReturn(Optional.of(savedQuote));
-        when(quoteRepository.save(any(Quote.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        QuoteJdbcRepository quoteJdbcRepository = Mockito.mock(QuoteJdbcRepository.class);
+        when(quoteJdbcRepository.upsert(any(Quote.class))).thenAnswer(QuoteAggregatorServiceTests::assignId);
 
-        QuoteAggregatorService service = new QuoteAggregatorService("dummy-key", builder, quoteRepository, voteRepository);
+        QuoteAggregatorService service = service(builder, quoteRepository, quoteJdbcRepository,
+                disabledWriteBehind(voteJdbcRepository), new QuoteAggregatorProperties(), new SimpleMeterRegistry());
 
         Mono<Optional<Quote>> result = service.getNinjasQuote();
         StepVerifier.create(result)
@@ -178,4 +189,279 @@ public class QuoteAggregatorServiceTests {
                         && "Ninja quote".equals(optionalQuote.get().getQuoteText()))
                 .verifyComplete();
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetSimpsonsQuoteServedFromPrefetchBuffer() {
+        WebClient.Builder builder = Mockito.mock(WebClient.Builder.class);
+        WebClient simpsonsClient = Mockito.mock(WebClient.class);
+        WebClient ninjasClient = Mockito.mock(WebClient.class);
+
+        when(builder.clone()).thenReturn(builder);
+        when(builder.baseUrl(anyString())).thenReturn(builder);
+        when(builder.clientConnector(any())).thenReturn(builder);
+        when(builder.build()).thenReturn(simpsonsClient, ninjasClient);
+
+        WebClient.RequestHeadersUriSpec simpsonsUriSpec = Mockito.mock(WebClient.RequestHeadersUriSpec.class);
+        WebClient.RequestHeadersSpec simpsonsHeadersSpec = Mockito.mock(WebClient.RequestHeadersSpec.class);
+        WebClient.ResponseSpec simpsonsResponseSpec = Mockito.mock(WebClient.ResponseSpec.class);
+
+        when(simpsonsClient.get()).thenReturn(simpsonsUriSpec);
+        when(simpsonsUriSpec.uri("/quotes")).thenReturn(simpsonsHeadersSpec);
+        when(simpsonsHeadersSpec.accept(MediaType.APPLICATION_JSON)).thenReturn(simpsonsHeadersSpec);
+        when(simpsonsHeadersSpec.retrieve()).thenReturn(simpsonsResponseSpec);
+
+        SimpsonsModel[] quotes = new SimpsonsModel[1];
+        SimpsonsModel simpsonsQuote = new SimpsonsModel();
+        simpsonsQuote.setQuote("Test quote");
+        simpsonsQuote.setCharacter("Test character");
+        quotes[0] = simpsonsQuote;
+
+        when(simpsonsResponseSpec.bodyToMono(SimpsonsModel[].class))
+                .thenReturn(Mono.just(quotes));
+
+        QuoteRepository quoteRepository = Mockito.mock(QuoteRepository.class);
+        VoteJdbcRepository voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
+
+        QuoteJdbcRepository quoteJdbcRepository = Mockito.mock(QuoteJdbcRepository.class);
+        when(quoteJdbcRepository.upsert(any(Quote.class))).thenAnswer(QuoteAggregatorServiceTests::assignId);
+
+        QuoteAggregatorProperties properties = new QuoteAggregatorProperties();
+        properties.getPrefetch().setEnabled(true);
+        properties.getPrefetch().setCapacity(4);
+        properties.getPrefetch().setLowWatermark(1);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+        QuoteAggregatorService service = service(builder, quoteRepository, quoteJdbcRepository,
+                new VoteWriteBehindBuffer(voteJdbcRepository, properties, meterRegistry), properties, meterRegistry);
+
+        service.refillPrefetchBuffers();
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() ->
+                meterRegistry.get("quotes.prefetch.size").tag("source", "simpsons").gauge().value() == 4);
+        Mockito.verify(simpsonsResponseSpec, Mockito.times(4)).bodyToMono(SimpsonsModel[].class);
+
+        StepVerifier.create(service.getSimpsonsQuote())
+                .expectNextMatches(optionalQuote -> optionalQuote.isPresent()
+                        && "Test quote".equals(optionalQuote.get().getQuoteText()))
+                .verifyComplete();
+
+        // Served from the buffer: no further upstream round trip and no miss recorded
+        Mockito.verify(simpsonsResponseSpec, Mockito.times(4)).bodyToMono(SimpsonsModel[].class);
+        assertEquals(3, meterRegistry.get("quotes.prefetch.size").tag("source", "simpsons").gauge().value());
+        assertEquals(0, meterRegistry.get("quotes.prefetch.misses").tag("source", "simpsons").counter().count());
+    }
+
+    @Test
+    public void testGetFilteredSimpsonsQuoteServedFromCharacterCache() {
+        WebClient.Builder builder = Mockito.mock(WebClient.Builder.class);
+        WebClient simpsonsClient = Mockito.mock(WebClient.class);
+        WebClient ninjasClient = Mockito.mock(WebClient.class);
+
+        when(builder.clone()).thenReturn(builder);
+        when(builder.baseUrl(anyString())).thenReturn(builder);
+        when(builder.clientConnector(any())).thenReturn(builder);
+        when(builder.build()).thenReturn(simpsonsClient, ninjasClient);
+
+        WebClient.RequestHeadersUriSpec simpsonsUriSpec = Mockito.mock(WebClient.RequestHeadersUriSpec.class);
+        WebClient.RequestHeadersSpec simpsonsHeadersSpec = Mockito.mock(WebClient.RequestHeadersSpec.class);
+        WebClient.ResponseSpec simpsonsResponseSpec = Mockito.mock(WebClient.ResponseSpec.class);
+
+        when(simpsonsClient.get()).thenReturn(simpsonsUriSpec);
+        when(simpsonsUriSpec.uri("/quotes?count=50&character=homer simpson")).thenReturn(simpsonsHeadersSpec);
+        when(simpsonsHeadersSpec.accept(MediaType.APPLICATION_JSON)).thenReturn(simpsonsHeadersSpec);
+        when(simpsonsHeadersSpec.retrieve()).thenReturn(simpsonsResponseSpec);
+
+        SimpsonsModel[] quotes = new SimpsonsModel[2];
+        quotes[0] = new SimpsonsModel();
+        quotes[0].setQuote("Test quote");
+        quotes[0].setCharacter("Homer Simpson");
+        quotes[1] = new SimpsonsModel();
+        quotes[1].setQuote("Test quote");
+        quotes[1].setCharacter("Homer Simpson");
+
+        when(simpsonsResponseSpec.bodyToMono(SimpsonsModel[].class))
+                .thenReturn(Mono.just(quotes));
+
+        QuoteRepository quoteRepository = Mockito.mock(QuoteRepository.class);
+        VoteJdbcRepository voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
+
+        QuoteJdbcRepository quoteJdbcRepository = Mockito.mock(QuoteJdbcRepository.class);
+        when(quoteJdbcRepository.upsert(any(Quote.class))).thenAnswer(QuoteAggregatorServiceTests::assignId);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        QuoteAggregatorService service = service(builder, quoteRepository, quoteJdbcRepository,
+                disabledWriteBehind(voteJdbcRepository), new QuoteAggregatorProperties(), meterRegistry);
+
+        for (String character : new String[]{"Homer Simpson", "  homer   SIMPSON "}) {
+            StepVerifier.create(service.getFilteredSimpsonsQuote(character))
+                    .expectNextMatches(optionalQuote -> optionalQuote.isPresent()
+                            && "Test quote".equals(optionalQuote.get().getQuoteText()))
+                    .verifyComplete();
+        }
+        Mockito.verify(simpsonsResponseSpec, Mockito.times(1)).bodyToMono(SimpsonsModel[].class);
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "quotes.character").tag("result", "hit").functionCounter().count());
+        assertEquals(1, meterRegistry.get("cache.gets").tag("cache", "quotes.character").tag("result", "miss").functionCounter().count());
+        // The second pick was stored already, so it skipped the insert
+        assertEquals(1, meterRegistry.get("quotes.dedupe.hits").tag("via", "cache").counter().count());
+
+        service.invalidateCharacterCache("HOMER SIMPSON");
+        StepVerifier.create(service.getFilteredSimpsonsQuote("Homer Simpson"))
+                .expectNextMatches(Optional::isPresent)
+                .verifyComplete();
+        Mockito.verify(simpsonsResponseSpec, Mockito.times(2)).bodyToMono(SimpsonsModel[].class);
+    }
+
+    @Test
+    public void testConcurrentFilteredRequestsShareOneUpstreamCallAndOneInsert() {
+        WebClient.Builder builder = Mockito.mock(WebClient.Builder.class);
+        WebClient simpsonsClient = Mockito.mock(WebClient.class);
+        WebClient ninjasClient = Mockito.mock(WebClient.class);
+
+        when(builder.clone()).thenReturn(builder);
+        when(builder.baseUrl(anyString())).thenReturn(builder);
+        when(builder.clientConnector(any())).thenReturn(builder);
+        when(builder.build()).thenReturn(simpsonsClient, ninjasClient);
+
+        WebClient.RequestHeadersUriSpec simpsonsUriSpec = Mockito.mock(WebClient.RequestHeadersUriSpec.class);
+        WebClient.RequestHeadersSpec simpsonsHeadersSpec = Mockito.mock(WebClient.RequestHeadersSpec.class);
+        WebClient.ResponseSpec simpsonsResponseSpec = Mockito.mock(WebClient.ResponseSpec.class);
+        AtomicInteger upstreamRequests = new AtomicInteger();
+
+        when(simpsonsClient.get()).thenReturn(simpsonsUriSpec);
+        when(simpsonsUriSpec.uri("/quotes?count=50&character=homer")).thenReturn(simpsonsHeadersSpec);
+        when(simpsonsHeadersSpec.accept(MediaType.APPLICATION_JSON)).thenReturn(simpsonsHeadersSpec);
+        when(simpsonsHeadersSpec.retrieve()).thenReturn(simpsonsResponseSpec);
+
+        SimpsonsModel[] quotes = new SimpsonsModel[1];
+        SimpsonsModel quote = new SimpsonsModel();
+        quote.setQuote("Test quote");
+        quote.setCharacter("Homer");
+        quotes[0] = quote;
+
+        when(simpsonsResponseSpec.bodyToMono(SimpsonsModel[].class))
+                .thenReturn(Mono.fromCallable(() -> {
+                    upstreamRequests.incrementAndGet();
+                    return quotes;
+                }).delayElement(Duration.ofMillis(100)));
+
+        QuoteRepository quoteRepository = Mockito.mock(QuoteRepository.class);
+        VoteJdbcRepository voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
+
+        QuoteJdbcRepository quoteJdbcRepository = Mockito.mock(QuoteJdbcRepository.class);
+        when(quoteJdbcRepository.upsert(any(Quote.class))).thenAnswer(invocation -> {
+            Thread.sleep(50);
+            return assignId(invocation);
+        });
+
+        QuoteAggregatorService service = service(builder, quoteRepository, quoteJdbcRepository,
+                disabledWriteBehind(voteJdbcRepository), new QuoteAggregatorProperties(), new SimpleMeterRegistry());
+
+        int callers = 50;
+        StepVerifier.create(Flux.range(0, callers)
+                        .flatMap(i -> service.getFilteredSimpsonsQuote("Homer").subscribeOn(Schedulers.parallel()), callers))
+                .expectNextCount(callers)
+                .verifyComplete();
+
+        assertEquals(1, upstreamRequests.get());
+        Mockito.verify(quoteJdbcRepository, Mockito.times(1)).upsert(any(Quote.class));
+        Mockito.verifyNoInteractions(quoteRepository);
+    }
+
+    @Test
+    public void testGetQuoteBatchSplitsIntoPagesAndStoresOnce() {
+        WebClient.Builder builder = Mockito.mock(WebClient.Builder.class);
+        WebClient simpsonsClient = Mockito.mock(WebClient.class);
+        WebClient ninjasClient = Mockito.mock(WebClient.class);
+
+        when(builder.clone()).thenReturn(builder);
+        when(builder.baseUrl(anyString())).thenReturn(builder);
+        when(builder.clientConnector(any())).thenReturn(builder);
+        when(builder.build()).thenReturn(simpsonsClient, ninjasClient);
+
+        WebClient.RequestHeadersUriSpec simpsonsUriSpec = Mockito.mock(WebClient.RequestHeadersUriSpec.class);
+        WebClient.RequestHeadersSpec simpsonsHeadersSpec = Mockito.mock(WebClient.RequestHeadersSpec.class);
+        WebClient.ResponseSpec simpsonsResponseSpec = Mockito.mock(WebClient.ResponseSpec.class);
+
+        when(simpsonsClient.get()).thenReturn(simpsonsUriSpec);
+        when(simpsonsUriSpec.uri(anyString())).thenReturn(simpsonsHeadersSpec);
+        when(simpsonsHeadersSpec.accept(MediaType.APPLICATION_JSON)).thenReturn(simpsonsHeadersSpec);
+        when(simpsonsHeadersSpec.retrieve()).thenReturn(simpsonsResponseSpec);
+        // The second page repeats half of the first one
+        when(simpsonsResponseSpec.bodyToMono(SimpsonsModel[].class))
+                .thenReturn(Mono.just(simpsonsPage(0, 10)), Mono.just(simpsonsPage(5, 10)), Mono.just(simpsonsPage(20, 5)));
+
+        QuoteRepository quoteRepository = Mockito.mock(QuoteRepository.class);
+        QuoteJdbcRepository quoteJdbcRepository = Mockito.mock(QuoteJdbcRepository.class);
+        VoteJdbcRepository voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
+        when(quoteJdbcRepository.saveAllIfAbsent(anyList())).thenAnswer(invocation -> {
+            List<Quote> quotes = invocation.getArgument(0);
+            for (int i = 0; i < quotes.size(); i++) {
+                quotes.get(i).setId(i + 1L);
+                quotes.get(i).setVotes(0);
+            }
+            return quotes;
+        });
+
+        QuoteAggregatorService service = service(builder, quoteRepository, quoteJdbcRepository,
+                disabledWriteBehind(voteJdbcRepository), new QuoteAggregatorProperties(), new SimpleMeterRegistry());
+
+        StepVerifier.create(service.getQuoteBatch("simpsons", 25))
+                .expectNextCount(20)
+                .verifyComplete();
+        Mockito.verify(simpsonsUriSpec, Mockito.times(2)).uri("/quotes?count=10");
+        Mockito.verify(simpsonsUriSpec).uri("/quotes?count=5");
+        Mockito.verify(quoteJdbcRepository, Mockito.times(1)).saveAllIfAbsent(anyList());
+        Mockito.verifyNoInteractions(quoteRepository);
+    }
+
+    @Test
+    public void testGetQuoteBatch_UnknownSource() {
+        WebClient.Builder builder = Mockito.mock(WebClient.Builder.class);
+        when(builder.clone()).thenReturn(builder);
+        when(builder.baseUrl(anyString())).thenReturn(builder);
+        when(builder.clientConnector(any())).thenReturn(builder);
+        VoteJdbcRepository voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
+
+        QuoteAggregatorService service = service(builder, Mockito.mock(QuoteRepository.class), Mockito.mock(QuoteJdbcRepository.class),
+                disabledWriteBehind(voteJdbcRepository), new QuoteAggregatorProperties(), new SimpleMeterRegistry());
+
+        StepVerifier.create(service.getQuoteBatch("futurama", 10))
+                .expectErrorMessage("Unknown quote source: futurama")
+                .verify();
+    }
+
+    private static SimpsonsModel[] simpsonsPage(int first, int count) {
+        SimpsonsModel[] page = new SimpsonsModel[count];
+        for (int i = 0; i < count; i++) {
+            page[i] = new SimpsonsModel();
+            page[i].setQuote("Quote " + (first + i));
+            page[i].setCharacter("Homer");
+        }
+        return page;
+    }
+
+    // Mirrors the identity column: a saved quote always comes back with its generated id
+    private static Quote assignId(InvocationOnMock invocation) {
+        Quote quote = invocation.getArgument(0);
+        quote.setId(1L);
+        return quote;
+    }
+
+    private static QuoteAggregatorService service(WebClient.Builder builder, QuoteRepository quoteRepository,
+                                                  QuoteJdbcRepository quoteJdbcRepository, VoteWriteBehindBuffer voteWriteBehind,
+                                                  QuoteAggregatorProperties properties, MeterRegistry meterRegistry) {
+        QuoteReadModelService readModels = new QuoteReadModelService(quoteRepository, quoteJdbcRepository, voteWriteBehind, properties,
+                meterRegistry);
+        return new QuoteAggregatorService(sources(builder), quoteJdbcRepository, readModels, properties, meterRegistry);
+    }
+
+    private static VoteWriteBehindBuffer disabledWriteBehind(VoteJdbcRepository voteJdbcRepository) {
+        return new VoteWriteBehindBuffer(voteJdbcRepository, new QuoteAggregatorProperties(), new SimpleMeterRegistry());
+    }
+
+    private static QuoteSourceRegistry sources(WebClient.Builder builder) {
+        QuoteAggregatorProperties properties = new QuoteAggregatorProperties();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        return new QuoteSourceRegistry(List.of(new SimpsonsQuoteSource(builder, properties, meterRegistry),
+                new NinjasQuoteSource("dummy-key", builder, properties, meterRegistry)), properties, meterRegistry);
+    }
+}
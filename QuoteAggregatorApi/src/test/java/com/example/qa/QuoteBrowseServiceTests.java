@@ -0,0 +1,128 @@
+package com.example.qa;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.models.QuotePage;
+import com.example.qa.repositories.QuoteJdbcRepository;
+import com.example.qa.repositories.QuoteRepository;
+import com.example.qa.repositories.VoteJdbcRepository;
+import com.example.qa.repositories.VoteRepository;
+import com.example.qa.services.QuoteReadModelService;
+import com.example.qa.services.VoteWriteBehindBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({VoteJdbcRepository.class, QuoteJdbcRepository.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class QuoteBrowseServiceTests {
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @Autowired
+    private QuoteJdbcRepository quoteJdbcRepository;
+
+    @Autowired
+    private VoteJdbcRepository voteJdbcRepository;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @AfterEach
+    public void tearDown() {
+        voteRepository.deleteAll();
+        quoteRepository.deleteAll();
+    }
+
+    @Test
+    public void testCursorsPageThroughFilteredQuotes() {
+        Quote moe = store("Moe's Tavern, Moe speaking.", "Moe Szyslak", 0);
+        Quote homer = store("Mmm... donut.", "Homer Simpson", 5);
+        Quote doh = store("D'oh!", "Homer Simpson", 5);
+        store("Eat my shorts!", "Bart Simpson", 9);
+        Quote woohoo = store("Woo-hoo!", "Homer Simpson", 1);
+        QuoteReadModelService service = service();
+
+        QuotePage first = service.browseQuotes("simpsons", "Homer Simpson", null, "votes", null, 2).block();
+        // Equal counts: newest first
+        assertEquals(List.of(doh.getId(), homer.getId()), first.quotes().stream().map(Quote::getId).toList());
+        QuotePage second = service.browseQuotes("simpsons", "Homer Simpson", null, "votes", first.next(), 2).block();
+        assertEquals(List.of(woohoo.getId()), second.quotes().stream().map(Quote::getId).toList());
+        assertNull(second.next());
+
+        List<Long> recent = new ArrayList<>();
+        String after = null;
+        do {
+            QuotePage page = service.browseQuotes(null, null, "", "recent", after, 3).block();
+            page.quotes().forEach(quote -> recent.add(quote.getId()));
+            after = page.next();
+        } while (after != null);
+        assertEquals(5, recent.size());
+        assertEquals(moe.getId(), recent.get(recent.size() - 1));
+    }
+
+    @Test
+    public void testFiltersIgnoreCaseAndSpacing() {
+        Quote doh = store("D'oh!", "Homer Simpson", 5);
+        Quote donut = store("Mmm... donut.", "homer simpson", 3);
+        store("Eat my shorts!", "Bart Simpson", 9);
+        QuoteReadModelService service = service();
+        service.resyncCorpus();
+
+        QuotePage page = service.browseQuotes(" Simpsons", "  HOMER   simpson ", null, "votes", null, 10).block();
+        assertEquals(List.of(doh.getId(), donut.getId()), page.quotes().stream().map(Quote::getId).toList());
+        // A name the groups have not seen yet is still matched as given
+        Quote woohoo = store("Woo-hoo!", "Lenny Leonard", 1);
+        assertEquals(List.of(woohoo.getId()), service.browseQuotes(null, "Lenny Leonard", null, "recent", null, 10).block()
+                .quotes().stream().map(Quote::getId).toList());
+        assertEquals(List.of(), service.browseQuotes(null, "lenny leonard", null, "recent", null, 10).block().quotes());
+    }
+
+    @Test
+    public void testForeignCursorsAndSortsAreRejected() {
+        QuoteReadModelService service = service();
+        store("D'oh!", "Homer Simpson", 1);
+        store("Woo-hoo!", "Homer Simpson", 2);
+        String votesCursor = service.browseQuotes(null, null, null, "votes", null, 1).block().next();
+
+        StepVerifier.create(service.browseQuotes(null, null, null, "recent", votesCursor, 1))
+                .expectErrorMessage("Invalid cursor for sort recent: " + votesCursor)
+                .verify();
+        StepVerifier.create(service.browseQuotes(null, null, null, "votes", "not a cursor", 1))
+                .expectErrorMessage("Invalid cursor for sort votes: not a cursor")
+                .verify();
+        StepVerifier.create(service.browseQuotes(null, null, null, "oldest", null, 1))
+                .expectErrorMessage("Unknown sort: oldest (expected votes or recent)")
+                .verify();
+    }
+
+    private Quote store(String text, String character, int votes) {
+        return quoteRepository.save(Quote.builder().quoteText(text).character(character).source("simpsons").votes(votes)
+                .contentHash(Quote.contentHash(text)).build());
+    }
+
+    private QuoteReadModelService service() {
+        QuoteAggregatorProperties properties = new QuoteAggregatorProperties();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        VoteWriteBehindBuffer buffer = new VoteWriteBehindBuffer(voteJdbcRepository, properties, meterRegistry);
+        return new QuoteReadModelService(quoteRepository, quoteJdbcRepository, buffer, properties, meterRegistry);
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.qa;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.models.BatchVote;
+import com.example.qa.models.QuoteGroupStats;
+import com.example.qa.models.QuoteStats;
+import com.example.qa.repositories.QuoteJdbcRepository;
+import com.example.qa.repositories.QuoteRepository;
+import com.example.qa.repositories.VoteJdbcRepository;
+import com.example.qa.repositories.VoteRepository;
+import com.example.qa.services.QuoteAggregatorService;
+import com.example.qa.services.QuoteReadModelService;
+import com.example.qa.services.QuoteSource;
+import com.example.qa.services.QuoteSourceRegistry;
+import com.example.qa.services.UpstreamGuard;
+import com.example.qa.services.VoteService;
+import com.example.qa.services.VoteWriteBehindBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({VoteJdbcRepository.class, QuoteJdbcRepository.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class QuoteGroupsTests {
+    private static final List<String> CHARACTERS = Arrays.asList("Homer Simpson", "Bart Simpson", "Lisa Simpson", null);
+    private static final List<String> CATEGORIES = Arrays.asList("inspirational", "funny", "life", null);
+
+    @Autowired
+    private VoteJdbcRepository voteJdbcRepository;
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @Autowired
+    private QuoteJdbcRepository quoteJdbcRepository;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private QuoteReadModelService readModels;
+    private VoteService voteService;
+    private QuoteAggregatorService service;
+
+    @AfterEach
+    public void tearDown() {
+        voteRepository.deleteAll();
+        quoteRepository.deleteAll();
+    }
+
+    @Test
+    public void testGroupsMatchTheDatabaseAfterRandomizedWorkloads() {
+        Random random = new Random(7);
+        // Rows stored before startup, read in by initialize
+        quoteJdbcRepository.saveAllIfAbsent(quotes(random, "ninjas", 40));
+        startServices();
+
+        for (int round = 0; round < 8; round++) {
+            // Fetched and stored here, duplicates included
+            service.getQuoteBatch("simpsons", 1 + random.nextInt(12)).collectList().block();
+            service.getQuoteBatch("ninjas", 1 + random.nextInt(12)).collectList().block();
+            // Stored by another instance: voted for here before the corpus resync has read them
+            List<Quote> elsewhere = quoteJdbcRepository.saveAllIfAbsent(quotes(random, "simpsons", 5));
+
+            List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM quotes ORDER BY id", Long.class);
+            Flux.range(0, 120)
+                    .map(i -> ids.get((int) (ids.size() * Math.pow(random.nextDouble(), 2))))
+                    .flatMap(id -> voteService.voteForQuote(id, "user" + random.nextInt(30) + "@example.com")
+                            .onErrorResume(error -> Mono.empty()), 8)
+                    .blockLast();
+            List<BatchVote> batch = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                batch.add(new BatchVote(ids.get(random.nextInt(ids.size())), "batch" + random.nextInt(20) + "@example.com"));
+            }
+            elsewhere.forEach(quote -> batch.add(new BatchVote(quote.getId(), "elsewhere@example.com")));
+            voteService.voteForQuotes(batch).block();
+            if (round % 2 == 1) {
+                readModels.resyncCorpus();
+            }
+
+            assertSameStats(readModels.getQuoteStats());
+            assertSameRankings();
+        }
+    }
+
+    @Test
+    public void testFilteredETagFollowsItsGroupOnly() {
+        Quote homer = quoteRepository.save(Quote.builder().quoteText("D'oh!").source("simpsons").character("Homer Simpson").votes(1).build());
+        Quote bart = quoteRepository.save(Quote.builder().quoteText("Ay, caramba!").source("simpsons").character("Bart Simpson").votes(1).build());
+        startServices();
+        String homerTag = readModels.getTopQuotesETag(null, "Homer Simpson", "");
+
+        voteService.voteForQuote(bart.getId(), "a@example.com").block();
+        assertEquals(homerTag, readModels.getTopQuotesETag(null, "Homer Simpson", null));
+
+        voteService.voteForQuote(homer.getId(), "a@example.com").block();
+        assertNotEquals(homerTag, readModels.getTopQuotesETag(null, "Homer Simpson", null));
+        // Blank filters are no filters
+        assertEquals(readModels.getTopQuotesETag(), readModels.getTopQuotesETag(" ", null, ""));
+        assertTrue(readModels.getTopQuotes("ninjas", null, null, 10).collectList().block().isEmpty());
+    }
+
+    @Test
+    public void testFiltersIgnoreCaseAndSpacingAndMatchPartOfACharacter() {
+        Quote homer = quoteRepository.save(Quote.builder().quoteText("D'oh!").source("simpsons").character("Homer Simpson")
+                .category("Funny").votes(3).build());
+        Quote bart = quoteRepository.save(Quote.builder().quoteText("Ay, caramba!").source("simpsons").character("Bart Simpson").votes(2).build());
+        Quote grandpa = quoteRepository.save(Quote.builder().quoteText("Back in my day").source("simpsons").character("Abe Simpson")
+                .category("Funny").votes(1).build());
+        Quote ned = quoteRepository.save(Quote.builder().quoteText("Okily dokily!").source("simpsons").character("Ned Flanders").votes(4).build());
+        startServices();
+
+        assertEquals(List.of(homer.getId()), ids(readModels.getTopQuotes(null, "homer simpson", null, 10)));
+        assertEquals(List.of(homer.getId()), ids(readModels.getTopQuotes(" SIMPSONS ", "  Homer   Simpson ", null, 10)));
+        // No character is called "homer" or "simpson": every name containing it matches, best first
+        assertEquals(List.of(homer.getId()), ids(readModels.getTopQuotes(null, "homer", null, 10)));
+        assertEquals(List.of(homer.getId(), bart.getId(), grandpa.getId()), ids(readModels.getTopQuotes("simpsons", "Simpson", null, 10)));
+        assertEquals(List.of(homer.getId(), grandpa.getId()), ids(readModels.getTopQuotes(null, "simpson", "funny", 10)));
+        assertEquals(List.of(ned.getId(), homer.getId(), bart.getId(), grandpa.getId()), ids(readModels.getTopQuotes("Simpsons", null, null, 10)));
+
+        String tag = readModels.getTopQuotesETag(null, "simpson", null);
+        voteService.voteForQuote(ned.getId(), "a@example.com").block();
+        assertEquals(tag, readModels.getTopQuotesETag(null, "simpson", null));
+        voteService.voteForQuote(bart.getId(), "a@example.com").block();
+        assertNotEquals(tag, readModels.getTopQuotesETag(null, "SIMPSON", null));
+        // Stats keep the names as stored
+        assertEquals(List.of("Ned Flanders", "Bart Simpson", "Homer Simpson", "Abe Simpson"),
+                readModels.getQuoteStats().characters().stream().map(QuoteGroupStats::name).toList());
+    }
+
+    private static List<Long> ids(Flux<Quote> quotes) {
+        return quotes.map(Quote::getId).collectList().block();
+    }
+
+    private void assertSameStats(QuoteStats stats) {
+        assertEquals(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM quotes", Long.class), stats.quotes());
+        assertEquals(jdbcTemplate.queryForObject("SELECT COALESCE(SUM(votes), 0) FROM quotes", Long.class), stats.votes());
+        assertEquals(groupedBy("source"), asMap(stats.sources()));
+        assertEquals(groupedBy("character"), asMap(stats.characters()));
+        assertEquals(groupedBy("category"), asMap(stats.categories()));
+        // Most voted first
+        for (int i = 1; i < stats.characters().size(); i++) {
+            assertTrue(stats.characters().get(i - 1).votes() >= stats.characters().get(i).votes());
+        }
+    }
+
+    private void assertSameRankings() {
+        List<String[]> filters = new ArrayList<>();
+        for (String source : List.of("simpsons", "ninjas")) {
+            filters.add(new String[]{source, null, null});
+        }
+        for (String character : CHARACTERS.subList(0, 3)) {
+            filters.add(new String[]{null, character, null});
+            filters.add(new String[]{"simpsons", character, null});
+        }
+        for (String category : CATEGORIES.subList(0, 3)) {
+            filters.add(new String[]{null, null, category});
+            filters.add(new String[]{"ninjas", null, category});
+            filters.add(new String[]{"simpsons", "Homer Simpson", category});
+        }
+        for (String[] filter : filters) {
+            List<Quote> actual = readModels.getTopQuotes(filter[0], filter[1], filter[2], 10).collectList().block();
+            assertEquals(expectedTop(filter, 10), actual.stream().map(quote -> quote.getId() + ":" + quote.getVotes()).toList(),
+                    Arrays.toString(filter));
+        }
+    }
+
+    // The ground truth: the same ranking straight from the table
+    private List<String> expectedTop(String[] filter, int limit) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> args = new ArrayList<>();
+        String[] columns = {"source", "character", "category"};
+        for (int i = 0; i < 3; i++) {
+            if (filter[i] != null) {
+                conditions.add(columns[i] + " = ?");
+                args.add(filter[i]);
+            }
+        }
+        args.add(limit);
+        return jdbcTemplate.query("SELECT id, votes FROM quotes WHERE " + String.join(" AND ", conditions)
+                        + " ORDER BY votes DESC, id ASC LIMIT ?",
+                (row, rowNumber) -> row.getLong("id") + ":" + row.getInt("votes"), args.toArray());
+    }
+
+    private Map<String, String> groupedBy(String column) {
+        Map<String, String> expected = new HashMap<>();
+        jdbcTemplate.query("SELECT " + column + " AS name, COUNT(*) AS quotes, SUM(votes) AS votes FROM quotes WHERE "
+                + column + " IS NOT NULL GROUP BY " + column, row -> {
+            expected.put(row.getString("name"), row.getLong("quotes") + "/" + row.getLong("votes"));
+        });
+        return expected;
+    }
+
+    private static Map<String, String> asMap(List<QuoteGroupStats> groups) {
+        Map<String, String> actual = new HashMap<>();
+        groups.forEach(group -> actual.put(group.name(), group.quotes() + "/" + group.votes()));
+        return actual;
+    }
+
+    // Texts repeat across calls, so some fetched quotes are already stored
+    private static List<Quote> quotes(Random random, String source, int count) {
+        List<Quote> quotes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String text = source + " quote " + random.nextInt(150);
+            quotes.add(Quote.builder().quoteText(text).source(source).contentHash(Quote.contentHash(text))
+                    .character(source.equals("simpsons") ? CHARACTERS.get(random.nextInt(CHARACTERS.size())) : null)
+                    .category(CATEGORIES.get(random.nextInt(CATEGORIES.size())))
+                    .build());
+        }
+        return quotes;
+    }
+
+    private void startServices() {
+        QuoteAggregatorProperties properties = new QuoteAggregatorProperties();
+        // Small leaderboards, so quotes keep falling off the end and voting their way back on
+        properties.getLeaderboard().setCapacity(10);
+        properties.getLeaderboard().setMaxLimit(10);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        VoteWriteBehindBuffer buffer = new VoteWriteBehindBuffer(voteJdbcRepository, properties, meterRegistry);
+        QuoteSourceRegistry sources = new QuoteSourceRegistry(List.of(new GeneratedQuotes("simpsons"), new GeneratedQuotes("ninjas")),
+                properties, meterRegistry);
+        readModels = new QuoteReadModelService(quoteRepository, quoteJdbcRepository, buffer, properties, meterRegistry);
+        voteService = new VoteService(quoteRepository, quoteJdbcRepository, voteJdbcRepository, buffer, readModels, properties, meterRegistry);
+        service = new QuoteAggregatorService(sources, quoteJdbcRepository, readModels, properties, meterRegistry);
+        readModels.initialize();
+        voteService.initialize();
+    }
+
+    private record GeneratedQuotes(String name, Random random) implements QuoteSource {
+
+        GeneratedQuotes(String name) {
+            this(name, new Random(name.hashCode()));
+        }
+
+        @Override
+        public String baseUrl() {
+            return "http://" + name + ".test";
+        }
+
+        @Override
+        public int pageSize() {
+            return 4;
+        }
+
+        @Override
+        public Mono<Quote> fetchQuote() {
+            return fetchQuotes(1).map(quotes -> quotes.get(0));
+        }
+
+        @Override
+        public Mono<List<Quote>> fetchQuotes(int count) {
+            return Mono.fromCallable(() -> {
+                synchronized (random) {
+                    return quotes(random, name, count);
+                }
+            });
+        }
+
+        @Override
+        public UpstreamGuard guard() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
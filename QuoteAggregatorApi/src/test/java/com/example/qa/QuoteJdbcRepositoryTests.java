@@ -0,0 +1,199 @@
+package com.example.qa;
+
+import com.example.qa.entities.Quote;
+import com.example.qa.repositories.QuoteJdbcRepository;
+import com.example.qa.repositories.QuoteOrder;
+import com.example.qa.repositories.QuoteRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({QuoteJdbcRepository.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class QuoteJdbcRepositoryTests {
+
+    @Autowired
+    private QuoteJdbcRepository quoteJdbcRepository;
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    public void tearDown() {
+        quoteRepository.deleteAll();
+    }
+
+    @Test
+    public void testSaveAllIfAbsentInsertsOnlyNewQuotes() {
+        Quote existing = quoteRepository.save(Quote.builder().quoteText("D'oh!").source("simpsons").votes(7).build());
+        double duplicates = duplicatesSkipped();
+
+        List<Quote> stored = quoteJdbcRepository.saveAllIfAbsent(List.of(
+                fetched("Woo-hoo!", "Homer"),
+                fetched("D'oh!", "Homer"),
+                fetched("Ay, caramba!", "Bart")));
+
+        assertEquals(List.of("Woo-hoo!", "D'oh!", "Ay, caramba!"), stored.stream().map(Quote::getQuoteText).toList());
+        stored.forEach(quote -> assertNotNull(quote.getId()));
+        // The stored row is returned as it is, votes included
+        assertEquals(existing.getId(), stored.get(1).getId());
+        assertEquals(7, stored.get(1).getVotes());
+        assertEquals("Bart", stored.get(2).getCharacter());
+        assertEquals(0, stored.get(2).getVotes());
+        assertEquals(3, quoteRepository.count());
+        assertEquals(duplicates + 1, duplicatesSkipped());
+    }
+
+    @Test
+    public void testFindPageWalksEveryMatchingQuoteOnceInOrder() {
+        List<Quote> stored = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            // Few distinct counts, so pages keep ending inside a run of ties
+            stored.add(quoteRepository.save(Quote.builder().quoteText("Quote " + i).source(i % 3 == 0 ? "ninjas" : "simpsons")
+                    .votes(i % 4).contentHash(Quote.contentHash("Quote " + i)).build()));
+        }
+        List<Quote> simpsons = stored.stream().filter(quote -> quote.getSource().equals("simpsons")).toList();
+
+        List<Long> byVotes = simpsons.stream()
+                .sorted(Comparator.comparing(Quote::getVotes).thenComparing(Quote::getId).reversed())
+                .map(Quote::getId).toList();
+        assertEquals(byVotes, walk(List.of("simpsons"), QuoteOrder.VOTES, 6));
+        List<Long> recent = simpsons.stream().map(Quote::getId).sorted(Comparator.reverseOrder()).toList();
+        assertEquals(recent, walk(List.of("simpsons"), QuoteOrder.RECENT, 6));
+        assertEquals(stored.size(), walk(null, QuoteOrder.VOTES, 7).size());
+        assertEquals(stored.size(), walk(List.of("simpsons", "ninjas"), QuoteOrder.VOTES, 7).size());
+        assertEquals(List.of(), walk(List.of(), QuoteOrder.RECENT, 7));
+    }
+
+    @Test
+    public void testUpsertInsertsNewQuoteAndReturnsExistingRowOnConflict() {
+        Quote inserted = quoteJdbcRepository.upsert(fetched("D'oh!", "Homer"));
+        assertNotNull(inserted.getId());
+        assertEquals(Quote.contentHash("D'oh!"), inserted.getContentHash());
+        assertEquals(0, inserted.getVotes());
+
+        double duplicates = duplicatesSkipped();
+        jdbcTemplate.update("UPDATE quotes SET votes = 3 WHERE id = ?", inserted.getId());
+        Quote again = quoteJdbcRepository.upsert(fetched("D'oh!", "Homer"));
+
+        assertEquals(inserted.getId(), again.getId());
+        assertEquals(3, again.getVotes());
+        assertEquals(1, quoteRepository.count());
+        assertEquals(duplicates + 1, duplicatesSkipped());
+    }
+
+    @Test
+    public void testUpsertMatchesTruncatedText() {
+        String longText = "Ninja ".repeat(60);
+        Quote stored = quoteJdbcRepository.upsert(Quote.builder()
+                .quoteText(Quote.storedText(longText)).source("ninjas").contentHash(Quote.contentHash(longText)).build());
+
+        assertEquals(Quote.MAX_TEXT_LENGTH, stored.getQuoteText().length());
+        assertEquals(stored.getId(), quoteJdbcRepository.findByContentHash(Quote.contentHash(longText)).orElseThrow().getId());
+        assertEquals(1, quoteRepository.count());
+    }
+
+    @Test
+    public void testBackfillHashesFirstRowOfEachText() {
+        jdbcTemplate.update("INSERT INTO quotes (quote_text, source, votes) VALUES ('D''oh!', 'simpsons', 2), ('D''oh!', 'simpsons', 5), ('Woo-hoo!', 'simpsons', 0)");
+
+        assertEquals(2, quoteJdbcRepository.backfillContentHashes());
+        assertEquals(0, quoteJdbcRepository.backfillContentHashes());
+        assertEquals(2, quoteJdbcRepository.findByContentHash(Quote.contentHash("D'oh!")).orElseThrow().getVotes());
+        assertTrue(quoteJdbcRepository.findByContentHash(Quote.contentHash("Woo-hoo!")).isPresent());
+    }
+
+    @Test
+    public void testForEachStoredAfterReadsOnlyNewerRowsInIdOrder() {
+        Quote first = quoteJdbcRepository.upsert(fetched("D'oh!", "Homer Simpson"));
+        Quote second = quoteJdbcRepository.upsert(fetched("Eat my shorts!", "Bart Simpson"));
+        Quote third = quoteJdbcRepository.upsert(fetched("Okily dokily!", "Ned Flanders"));
+
+        List<String> seen = new ArrayList<>();
+        long highest = quoteJdbcRepository.forEachStoredAfter(first.getId(),
+                quote -> seen.add(quote.getId() + " " + quote.getSource() + " " + quote.getCharacter()));
+
+        assertEquals(List.of(second.getId() + " simpsons Bart Simpson", third.getId() + " simpsons Ned Flanders"), seen);
+        assertEquals(third.getId(), highest);
+        assertEquals(third.getId(), quoteJdbcRepository.forEachStoredAfter(third.getId(), quote -> seen.add("again")));
+        assertEquals(2, seen.size());
+        assertEquals("Okily dokily!", quoteJdbcRepository.findById(third.getId()).orElseThrow().getQuoteText());
+        assertEquals(List.of(third.getId(), first.getId()),
+                quoteJdbcRepository.findAllById(List.of(third.getId(), -1L, first.getId())).stream().map(Quote::getId).toList());
+    }
+
+    @Test
+    public void testResetVotesRewritesOnlyDriftedCounters() {
+        Quote exact = quoteRepository.save(Quote.builder().quoteText("D'oh!").source("simpsons").votes(3).build());
+        Quote high = quoteRepository.save(Quote.builder().quoteText("Woo-hoo!").source("simpsons").votes(9).build());
+        Quote unvoted = quoteRepository.save(Quote.builder().quoteText("Ay, caramba!").source("simpsons").votes(2).build());
+
+        List<Long> changed = quoteJdbcRepository.resetVotes(Map.of(exact.getId(), 3L, high.getId(), 5L));
+
+        assertEquals(List.of(high.getId(), unvoted.getId()), changed);
+        assertEquals(List.of(3, 5, 0), quoteJdbcRepository.findAllById(List.of(exact.getId(), high.getId(), unvoted.getId())).stream()
+                .map(Quote::getVotes).toList());
+    }
+
+    @Test
+    public void testFindAllByIdReadsLongListsInChunks() {
+        Quote first = quoteRepository.save(Quote.builder().quoteText("D'oh!").source("simpsons").votes(0).build());
+        Quote last = quoteRepository.save(Quote.builder().quoteText("Woo-hoo!").source("simpsons").votes(0).build());
+        List<Long> ids = new ArrayList<>();
+        ids.add(last.getId());
+        for (long id = -1; id > -2500; id--) {
+            ids.add(id);
+        }
+        ids.add(first.getId());
+
+        assertEquals(List.of(last.getId(), first.getId()), quoteJdbcRepository.findAllById(ids).stream().map(Quote::getId).toList());
+    }
+
+    // Every page starts after the last quote of the one before
+    private List<Long> walk(List<String> sources, QuoteOrder order, int size) {
+        List<Long> ids = new ArrayList<>();
+        Quote last = null;
+        List<Quote> page;
+        do {
+            page = quoteJdbcRepository.findPage(sources, null, null, order, last, size);
+            page.forEach(quote -> ids.add(quote.getId()));
+            last = page.isEmpty() ? null : page.get(page.size() - 1);
+        } while (page.size() == size);
+        return ids;
+    }
+
+    private double duplicatesSkipped() {
+        return meterRegistry.get("quotes.dedupe.hits").tag("via", "database").counter().count();
+    }
+
+    private static Quote fetched(String text, String character) {
+        return Quote.builder().quoteText(text).character(character).source("simpsons").contentHash(Quote.contentHash(text)).build();
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.qa;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.repositories.QuoteJdbcRepository;
+import com.example.qa.repositories.QuoteRepository;
+import com.example.qa.repositories.VoteJdbcRepository;
+import com.example.qa.repositories.VoteRepository;
+import com.example.qa.services.QuoteLeaderboard;
+import com.example.qa.services.QuoteReadModelService;
+import com.example.qa.services.VoteService;
+import com.example.qa.services.VoteWriteBehindBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({VoteJdbcRepository.class, QuoteJdbcRepository.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class QuoteLeaderboardTests {
+
+    @Autowired
+    private VoteJdbcRepository voteJdbcRepository;
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @Autowired
+    private QuoteJdbcRepository quoteJdbcRepository;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    private QuoteReadModelService readModels;
+    private VoteService voteService;
+
+    @AfterEach
+    public void tearDown() {
+        voteRepository.deleteAll();
+        quoteRepository.deleteAll();
+    }
+
+    @Test
+    public void testTopQuotesMatchDatabaseAfterRandomizedVotes() {
+        List<Quote> quotes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            quotes.add(quoteRepository.save(Quote.builder().quoteText("Quote " + i).source("ninjas").votes(i % 7).build()));
+        }
+        // A small leaderboard, so quotes keep falling off the end and voting their way back on
+        startServices(leaderboard(25, 25), false);
+        readModels.loadLeaderboard();
+
+        Random random = new Random(42);
+        for (int round = 0; round < 10; round++) {
+            Flux.range(0, 150)
+                    .map(i -> quotes.get(skewedIndex(random, quotes.size())))
+                    .flatMap(quote -> voteService.voteForQuote(quote.getId(), "user" + random.nextInt(40) + "@example.com")
+                            .onErrorResume(error -> Mono.empty()), 8)
+                    .blockLast();
+
+            assertSameRanking(25);
+            assertSameRanking(5);
+        }
+    }
+
+    @Test
+    public void testWriteBehindVotesAreRankedBeforeTheyAreFlushed() {
+        Quote leader = quoteRepository.save(Quote.builder().quoteText("D'oh!").source("simpsons").votes(3).build());
+        Quote chaser = quoteRepository.save(Quote.builder().quoteText("Woo-hoo!").source("simpsons").votes(2).build());
+        startServices(leaderboard(10, 10), true);
+        readModels.loadLeaderboard();
+
+        voteService.voteForQuote(chaser.getId(), "a@example.com").block();
+        voteService.voteForQuote(chaser.getId(), "b@example.com").block();
+
+        List<Quote> top = readModels.getTopQuotes(5).collectList().block();
+        assertEquals(List.of(chaser.getId(), leader.getId()), top.stream().map(Quote::getId).toList());
+        assertEquals(4, top.get(0).getVotes());
+        // Nothing has been flushed yet
+        assertEquals(2, quoteRepository.findById(chaser.getId()).orElseThrow().getVotes());
+    }
+
+    @Test
+    public void testTopQuotesETagChangesWithTheRanking() {
+        Quote quote = quoteRepository.save(Quote.builder().quoteText("D'oh!").source("simpsons").votes(3).build());
+        startServices(leaderboard(10, 10), false);
+        readModels.loadLeaderboard();
+        String loaded = readModels.getTopQuotesETag();
+
+        // Nothing moved
+        readModels.resyncLeaderboard();
+        assertEquals(loaded, readModels.getTopQuotesETag());
+
+        voteService.voteForQuote(quote.getId(), "a@example.com").block();
+        assertNotEquals(loaded, readModels.getTopQuotesETag());
+
+        // Another run reaches the same version with its own ranking, so it must not hand out the same tags
+        startServices(leaderboard(10, 10), false);
+        readModels.loadLeaderboard();
+        assertNotEquals(loaded, readModels.getTopQuotesETag());
+    }
+
+    @Test
+    public void testTiesAreBrokenByIdAndCountsNeverGoBack() {
+        QuoteLeaderboard leaderboard = new QuoteLeaderboard(2);
+        leaderboard.offer(Quote.builder().id(3L).votes(1).build());
+        leaderboard.offer(Quote.builder().id(2L).votes(1).build());
+        assertFalse(leaderboard.offer(Quote.builder().id(4L).votes(1).build()));
+
+        // A stale snapshot from an earlier concurrent vote must not undo a newer count
+        assertTrue(leaderboard.offer(Quote.builder().id(3L).votes(5).build()));
+        leaderboard.offer(Quote.builder().id(3L).votes(4).build());
+
+        assertEquals(List.of(3L, 2L), leaderboard.top(10).stream().map(Quote::getId).toList());
+        assertEquals(5, leaderboard.top(1).get(0).getVotes());
+    }
+
+    private void assertSameRanking(int limit) {
+        List<Quote> expected = quoteRepository.findByOrderByVotesDescIdAsc(PageRequest.of(0, limit));
+        List<Quote> actual = readModels.getTopQuotes(limit).subscribeOn(Schedulers.parallel()).collectList().block();
+        assertEquals(expected.stream().map(Quote::getId).toList(), actual.stream().map(Quote::getId).toList());
+        assertEquals(expected.stream().map(Quote::getVotes).toList(), actual.stream().map(Quote::getVotes).toList());
+    }
+
+    // Favours low indexes, so a handful of quotes collect most votes and ties stay common
+    private static int skewedIndex(Random random, int size) {
+        return (int) (size * Math.pow(random.nextDouble(), 3));
+    }
+
+    private void startServices(QuoteAggregatorProperties properties, boolean writeBehind) {
+        properties.getWriteBehind().setEnabled(writeBehind);
+        VoteWriteBehindBuffer buffer = new VoteWriteBehindBuffer(voteJdbcRepository, properties, new SimpleMeterRegistry());
+        readModels = new QuoteReadModelService(quoteRepository, quoteJdbcRepository, buffer, properties, new SimpleMeterRegistry());
+        voteService = new VoteService(quoteRepository, quoteJdbcRepository, voteJdbcRepository, buffer, readModels, properties,
+                new SimpleMeterRegistry());
+    }
+
+    private static QuoteAggregatorProperties leaderboard(int capacity, int maxLimit) {
+        QuoteAggregatorProperties properties = new QuoteAggregatorProperties();
+        properties.getLeaderboard().setCapacity(capacity);
+        properties.getLeaderboard().setMaxLimit(maxLimit);
+        return properties;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.qa;
+
+import com.example.qa.entities.Quote;
+import com.example.qa.services.QuoteSearchIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QuoteSearchIndexTests {
+
+    @Test
+    public void testEveryTermMustMatchAcrossFields() {
+        QuoteSearchIndex index = index();
+
+        assertEquals(List.of(1L), index.search("donut homer", 10));
+        assertEquals(List.of(4L), index.search("wilde inspirational", 10));
+        assertEquals(List.of(), index.search("donut wilde", 10));
+        assertEquals(List.of(), index.search("nothing", 10));
+    }
+
+    @Test
+    public void testTokensIgnoreCasePunctuationAndApostrophes() {
+        QuoteSearchIndex index = index();
+
+        assertEquals(List.of(1L), index.search("D'OH!", 10));
+        assertEquals(List.of(1L), index.search("doh", 10));
+    }
+
+    @Test
+    public void testPrefixTermsMatchLongerWordsAndRankBelowWholeWords() {
+        QuoteSearchIndex index = index();
+
+        // "simpson" is a whole word in 1, 2 and 3; "simpsons" only starts with it
+        List<Long> results = index.search("simpson*", 10);
+        assertEquals(4, results.size());
+        assertEquals(5L, results.get(3));
+        assertTrue(index.search("simpson", 10).stream().noneMatch(id -> id == 5L));
+    }
+
+    @Test
+    public void testShortPrefixIsMatchedAsWholeWord() {
+        QuoteSearchIndex index = index();
+
+        assertEquals(List.of(), index.search("d*", 10));
+    }
+
+    @Test
+    public void testTiesAreRankedByVotesThenId() {
+        QuoteSearchIndex index = index();
+
+        assertEquals(List.of(3L, 2L, 1L), index.search("simpson", 10));
+        index.recordVotes(Quote.builder().id(1L).votes(50).build());
+        // A stale snapshot must not lower the count again
+        index.recordVotes(Quote.builder().id(1L).votes(1).build());
+        assertEquals(List.of(1L, 3L), index.search("simpson", 2));
+    }
+
+    @Test
+    public void testQuotesAreIndexedOnceWhateverOrderTheyArriveIn() {
+        QuoteSearchIndex index = new QuoteSearchIndex(2);
+        assertTrue(index.add(quote(9, "Excellent.", "Mr. Burns", 0)));
+        assertTrue(index.add(quote(3, "Release the hounds. Excellent!", "Mr. Burns", 0)));
+        assertFalse(index.add(quote(9, "Excellent.", "Mr. Burns", 4)));
+
+        assertEquals(2, index.size());
+        assertEquals(List.of(9L, 3L), index.search("excellent burns", 10));
+    }
+
+    private static QuoteSearchIndex index() {
+        QuoteSearchIndex index = new QuoteSearchIndex(2);
+        index.add(quote(1, "D'oh! Mmm... donut.", "Homer Simpson", 0));
+        index.add(quote(2, "Eat my shorts!", "Bart Simpson", 2));
+        index.add(quote(3, "If you don't like your job you don't strike.", "Homer Simpson", 5));
+        index.add(Quote.builder().id(4L).quoteText("Be yourself; everyone else is already taken.").author("Oscar Wilde")
+                .category("inspirational").source("ninjas").votes(1).build());
+        index.add(quote(5, "The Simpsons are going to Delaware!", "Marge Bouvier", 0));
+        return index;
+    }
+
+    private static Quote quote(long id, String text, String character, int votes) {
+        return Quote.builder().id(id).quoteText(text).character(character).source("simpsons").votes(votes).build();
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.qa;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.repositories.QuoteJdbcRepository;
+import com.example.qa.repositories.QuoteRepository;
+import com.example.qa.repositories.VoteJdbcRepository;
+import com.example.qa.repositories.VoteRepository;
+import com.example.qa.services.QuoteReadModelService;
+import com.example.qa.services.VoteService;
+import com.example.qa.services.VoteWriteBehindBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({VoteJdbcRepository.class, QuoteJdbcRepository.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class QuoteSearchServiceTests {
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @Autowired
+    private QuoteJdbcRepository quoteJdbcRepository;
+
+    @Autowired
+    private VoteJdbcRepository voteJdbcRepository;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    private QuoteReadModelService readModels;
+    private VoteService voteService;
+
+    @AfterEach
+    public void tearDown() {
+        voteRepository.deleteAll();
+        quoteRepository.deleteAll();
+    }
+
+    @Test
+    public void testSearchFindsStoredQuotesAndRanksVotedOnesFirst() {
+        Quote homer = store("Mmm... donut.", "Homer Simpson");
+        Quote bart = store("Eat my shorts!", "Bart Simpson");
+        store("Okily dokily!", "Ned Flanders");
+        startServices();
+
+        assertEquals(List.of(homer.getId(), bart.getId()), search("simpson", 10));
+
+        voteService.voteForQuote(bart.getId(), "a@example.com").block();
+        assertEquals(List.of(bart.getId(), homer.getId()), search("simpson", 10));
+        assertEquals(List.of(bart.getId()), search("simpson", 1));
+
+        // Stored through another instance, indexed on the next resync
+        Quote later = store("Ay caramba!", "Bart Simpson");
+        assertEquals(List.of(), search("caramba", 10));
+        readModels.resyncCorpus();
+        assertEquals(List.of(later.getId()), search("caram*", 10));
+    }
+
+    @Test
+    public void testEmptyQueryIsRejected() {
+        startServices();
+        StepVerifier.create(readModels.searchQuotes(" ", 10))
+                .expectErrorMessage("Search query must not be empty")
+                .verify();
+    }
+
+    private List<Long> search(String query, int limit) {
+        return readModels.searchQuotes(query, limit).map(Quote::getId).collectList().block();
+    }
+
+    private Quote store(String text, String character) {
+        return quoteRepository.save(Quote.builder().quoteText(text).character(character).source("simpsons").votes(0)
+                .contentHash(Quote.contentHash(text)).build());
+    }
+
+    private void startServices() {
+        QuoteAggregatorProperties properties = new QuoteAggregatorProperties();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        VoteWriteBehindBuffer buffer = new VoteWriteBehindBuffer(voteJdbcRepository, properties, meterRegistry);
+        readModels = new QuoteReadModelService(quoteRepository, quoteJdbcRepository, buffer, properties, meterRegistry);
+        voteService = new VoteService(quoteRepository, quoteJdbcRepository, voteJdbcRepository, buffer, readModels, properties, meterRegistry);
+        readModels.resyncCorpus();
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.qa;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.models.QuoteSourceStatus;
+import com.example.qa.services.NinjasQuoteSource;
+import com.example.qa.services.QuoteSourceRegistry;
+import com.example.qa.services.SimpsonsQuoteSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the real sources against local stub upstreams whose latency and failures are set per
+ * request, so hedging and the /quotes/random fan-out are exercised over HTTP.
+ */
+public class QuoteSourceRegistryTests {
+    private static final String SIMPSONS_QUOTE = """
+            [{"quote":"D'oh!","character":"Homer Simpson","image":"","characterDirection":"Right"}]""";
+    private static final String NINJAS_QUOTE = """
+            [{"quote":"Be yourself; everyone else is already taken.","author":"Oscar Wilde","category":"inspirational"}]""";
+
+    private StubUpstream simpsons;
+    private StubUpstream ninjas;
+    private QuoteAggregatorProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    public void setUp() {
+        simpsons = new StubUpstream(SIMPSONS_QUOTE);
+        ninjas = new StubUpstream(NINJAS_QUOTE);
+        properties = new QuoteAggregatorProperties();
+        properties.getSources().getSimpsons().setBaseUrl(simpsons.baseUrl());
+        properties.getSources().getNinjas().setBaseUrl(ninjas.baseUrl());
+        properties.getSources().setHedgeMinSamples(10);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        simpsons.dispose();
+        ninjas.dispose();
+    }
+
+    @Test
+    public void testSlowCallIsHedgedAfterP95() {
+        QuoteSourceRegistry registry = registry();
+        // Ten fast calls set the p95; then one request stalls and its hedge answers quickly
+        simpsons.latency = request -> request == 11 ? Duration.ofSeconds(5) : Duration.ofMillis(10);
+        warmUp(registry, "simpsons", 10);
+
+        long start = System.nanoTime();
+        StepVerifier.create(registry.fetchQuote("simpsons"))
+                .expectNextMatches(quote -> "D'oh!".equals(quote.getQuoteText()))
+                .verifyComplete();
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+        assertEquals(12, simpsons.requests.get());
+        assertEquals(1.0, meterRegistry.get("quotes.source.hedged").tag("source", "simpsons").counter().count());
+    }
+
+    @Test
+    public void testHedgeWaitsAtLeastMinDelay() {
+        properties.getSources().setHedgeMinDelay(Duration.ofMillis(500));
+        QuoteSourceRegistry registry = registry();
+        simpsons.latency = request -> Duration.ofMillis(request % 2 == 0 ? 5 : 50);
+        warmUp(registry, "simpsons", 30);
+
+        assertEquals(30, simpsons.requests.get());
+        assertEquals(0.0, meterRegistry.get("quotes.source.hedged").tag("source", "simpsons").counter().count());
+    }
+
+    @Test
+    public void testFailedCallIsNotHedged() {
+        QuoteSourceRegistry registry = registry();
+        warmUp(registry, "simpsons", 10);
+        simpsons.failWith = 503;
+
+        StepVerifier.create(registry.fetchQuote("simpsons"))
+                .expectError()
+                .verify(Duration.ofSeconds(5));
+        assertEquals(11, simpsons.requests.get());
+    }
+
+    @Test
+    public void testRandomQuoteComesFromFastestSource() {
+        QuoteSourceRegistry registry = registry();
+        simpsons.latency = request -> Duration.ofSeconds(2);
+
+        long start = System.nanoTime();
+        StepVerifier.create(registry.fetchFromAny())
+                .expectNextMatches(quote -> "ninjas".equals(quote.getSource()))
+                .verifyComplete();
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) < 0);
+        assertEquals(1, simpsons.requests.get());
+        assertEquals(1, ninjas.requests.get());
+    }
+
+    @Test
+    public void testRandomQuoteSkipsSourceWithOpenCircuit() {
+        QuoteSourceRegistry registry = registry();
+        ninjas.failWith = 503;
+        int threshold = properties.getSources().getNinjas().getFailureThreshold();
+        for (int i = 0; i < threshold; i++) {
+            StepVerifier.create(registry.fetchQuote("ninjas")).expectError().verify(Duration.ofSeconds(5));
+        }
+        QuoteSourceStatus status = registry.statuses().get(1);
+        assertEquals("open", status.circuit());
+
+        StepVerifier.create(registry.fetchFromAny())
+                .expectNextMatches(quote -> "simpsons".equals(quote.getSource()))
+                .verifyComplete();
+        assertEquals(threshold, ninjas.requests.get());
+    }
+
+    @Test
+    public void testRandomQuoteFailsWhenEverySourceFails() {
+        QuoteSourceRegistry registry = registry();
+        simpsons.failWith = 500;
+        ninjas.failWith = 503;
+
+        StepVerifier.create(registry.fetchFromAny())
+                .expectErrorMessage("No quote source answered")
+                .verify(Duration.ofSeconds(5));
+    }
+
+    private QuoteSourceRegistry registry() {
+        return new QuoteSourceRegistry(List.of(
+                new SimpsonsQuoteSource(WebClient.builder(), properties, meterRegistry),
+                new NinjasQuoteSource("dummy-key", WebClient.builder(), properties, meterRegistry)), properties, meterRegistry);
+    }
+
+    private static void warmUp(QuoteSourceRegistry registry, String source, int calls) {
+        List<Quote> quotes = Flux.range(0, calls).concatMap(i -> registry.fetchQuote(source)).collectList().block();
+        assertEquals(calls, quotes.size());
+    }
+}
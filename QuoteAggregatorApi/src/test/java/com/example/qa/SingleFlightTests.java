@@ -0,0 +1,82 @@
+package com.example.qa;
+
+import com.example.qa.services.SingleFlight;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SingleFlightTests {
+
+    @Test
+    public void testParallelSubscribersShareOneUpstreamCall() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        int subscribers = 200;
+
+        Flux<String> parallelCallers = Flux.range(0, subscribers)
+                .flatMap(i -> singleFlight.execute("/quotes?character=homer", () -> {
+                    upstreamCalls.incrementAndGet();
+                    return Mono.just("D'oh!").delayElement(Duration.ofMillis(200));
+                }).subscribeOn(Schedulers.parallel()), subscribers);
+
+        StepVerifier.create(parallelCallers)
+                .expectNextCount(subscribers)
+                .verifyComplete();
+
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    public void testKeyIsReleasedOnceTheCallCompletes() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(singleFlight.execute("/quotes", () -> Mono.fromCallable(() -> "quote " + upstreamCalls.incrementAndGet())))
+                    .expectNext("quote " + (i + 1))
+                    .verifyComplete();
+        }
+
+        assertEquals(3, upstreamCalls.get());
+    }
+
+    @Test
+    public void testKeyIsReleasedOnError() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+        StepVerifier.create(singleFlight.execute("/quotes", () -> Mono.error(new RuntimeException("upstream down"))))
+                .expectErrorMessage("upstream down")
+                .verify();
+
+        assertEquals(0, singleFlight.inFlightCount());
+        StepVerifier.create(singleFlight.execute("/quotes", () -> Mono.just("recovered")))
+                .expectNext("recovered")
+                .verifyComplete();
+    }
+
+    @Test
+    public void testDistinctKeysAreNotCoalesced() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger upstreamCalls = new AtomicInteger();
+
+        Flux<String> callers = Flux.just("homer", "bart", "lisa")
+                .flatMap(character -> singleFlight.execute(character, () -> {
+                    upstreamCalls.incrementAndGet();
+                    return Mono.just(character).delayElement(Duration.ofMillis(50));
+                }));
+
+        StepVerifier.create(callers)
+                .expectNextCount(3)
+                .verifyComplete();
+
+        assertEquals(3, upstreamCalls.get());
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.qa;
+
+import io.netty.handler.codec.http.QueryStringDecoder;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Local HTTP server standing in for an upstream quote API on {@code GET /quotes}. Latency is set
+ * per request number (1-based); the server can also fail every request with a status, fail a random
+ * share of them, or hang without ever answering. The body is fixed or built from the request's
+ * query parameters. It counts requests and the TCP connections they arrived on.
+ */
+class StubUpstream {
+    private final DisposableServer server;
+    final AtomicInteger requests = new AtomicInteger();
+    final AtomicInteger connections = new AtomicInteger();
+    volatile String acceptEncoding;
+    volatile IntFunction<Duration> latency = request -> Duration.ZERO;
+    volatile int failWith;
+    // Share of requests answered with 503
+    volatile double errorRate;
+    volatile boolean hanging;
+
+    StubUpstream(String body) {
+        this(parameters -> body);
+    }
+
+    StubUpstream(Function<Map<String, List<String>>, String> body) {
+        server = HttpServer.create()
+                .port(0)
+                .doOnChannelInit((observer, channel, remoteAddress) -> connections.incrementAndGet())
+                .route(routes -> routes.get("/quotes", (request, response) -> {
+                    Duration delay = latency.apply(requests.incrementAndGet());
+                    acceptEncoding = request.requestHeaders().get("Accept-Encoding");
+                    if (hanging) {
+                        return Mono.never();
+                    }
+                    if (failWith != 0) {
+                        return response.status(failWith).send();
+                    }
+                    if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                        return Mono.delay(delay).then(response.status(503).send());
+                    }
+                    return response.header("Content-Type", "application/json")
+                            .sendString(Mono.fromSupplier(() -> body.apply(new QueryStringDecoder(request.uri()).parameters()))
+                                    .delayElement(delay));
+                }))
+                .bindNow();
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.port();
+    }
+
+    void dispose() {
+        server.disposeNow(Duration.ofSeconds(1));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.qa;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.services.NinjasQuoteSource;
+import com.example.qa.services.SimpsonsQuoteSource;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Signal;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Each source against a local stub upstream, checking that it goes through its own pool
+ * configured from its properties.
+ */
+public class UpstreamConnectionsTests {
+    private static final String SIMPSONS_QUOTE = """
+            [{"quote":"D'oh!","character":"Homer Simpson","image":"","characterDirection":"Right"}]""";
+    private static final String NINJAS_QUOTE = """
+            [{"quote":"Be yourself; everyone else is already taken.","author":"Oscar Wilde","category":"inspirational"}]""";
+
+    private StubUpstream simpsons;
+    private StubUpstream ninjas;
+    private QuoteAggregatorProperties properties;
+    // Reactor Netty publishes pool meters to the global registry
+    private final SimpleMeterRegistry globalRegistry = new SimpleMeterRegistry();
+    private SimpsonsQuoteSource simpsonsSource;
+    private NinjasQuoteSource ninjasSource;
+
+    @BeforeEach
+    public void setUp() {
+        Metrics.addRegistry(globalRegistry);
+        simpsons = new StubUpstream(SIMPSONS_QUOTE);
+        ninjas = new StubUpstream(NINJAS_QUOTE);
+        properties = new QuoteAggregatorProperties();
+        properties.getSources().getSimpsons().setBaseUrl(simpsons.baseUrl());
+        properties.getSources().getNinjas().setBaseUrl(ninjas.baseUrl());
+        properties.getSources().getSimpsons().setMaxConcurrentCalls(100);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        simpsonsSource.close();
+        ninjasSource.close();
+        simpsons.dispose();
+        ninjas.dispose();
+        Metrics.removeRegistry(globalRegistry);
+    }
+
+    @Test
+    public void testEachSourceHasItsOwnPoolAndReusesConnections() {
+        properties.getSources().getNinjas().getConnections().setMaxConnections(7);
+        createSources();
+
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(simpsonsSource.fetchQuote()).expectNextCount(1).verifyComplete();
+            StepVerifier.create(ninjasSource.fetchQuote()).expectNextCount(1).verifyComplete();
+        }
+
+        // Keep-alive: five sequential calls share one connection
+        assertEquals(1, simpsons.connections.get());
+        assertEquals(1, ninjas.connections.get());
+        assertEquals(50.0, poolGauge("max.connections", "simpsons"));
+        assertEquals(7.0, poolGauge("max.connections", "ninjas"));
+        assertEquals(1.0, poolGauge("idle.connections", "simpsons"));
+        assertEquals(0.0, poolGauge("active.connections", "simpsons"));
+    }
+
+    @Test
+    public void testRequestsGzip() {
+        createSources();
+
+        StepVerifier.create(simpsonsSource.fetchQuote()).expectNextCount(1).verifyComplete();
+
+        assertEquals("gzip", simpsons.acceptEncoding);
+    }
+
+    @Test
+    public void testCompressionCanBeTurnedOff() {
+        properties.getSources().getSimpsons().getConnections().setCompression(false);
+        createSources();
+
+        StepVerifier.create(simpsonsSource.fetchQuote()).expectNextCount(1).verifyComplete();
+
+        assertEquals(null, simpsons.acceptEncoding);
+    }
+
+    @Test
+    public void testReadTimeoutFailsSlowResponse() {
+        properties.getSources().getSimpsons().getConnections().setReadTimeout(Duration.ofMillis(200));
+        createSources();
+        simpsons.latency = request -> Duration.ofSeconds(2);
+
+        StepVerifier.create(simpsonsSource.fetchQuote())
+                .expectError(WebClientException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void testRequestsBeyondPoolAndPendingQueueFailFast() {
+        QuoteAggregatorProperties.Connections connections = properties.getSources().getSimpsons().getConnections();
+        connections.setMaxConnections(2);
+        connections.setPendingAcquireMaxCount(2);
+        createSources();
+        simpsons.latency = request -> Duration.ofMillis(300);
+
+        // Two calls get connections, two wait for one, the fifth is refused
+        List<Signal<Object>> outcomes = Flux.range(0, 5)
+                .flatMap(i -> simpsonsSource.fetchQuote().<Object>map(quote -> quote).materialize(), 5)
+                .filter(signal -> !signal.isOnComplete())
+                .collectList()
+                .block(Duration.ofSeconds(10));
+
+        assertEquals(4, outcomes.stream().filter(Signal::isOnNext).count());
+        assertEquals(1, outcomes.stream().filter(Signal::isOnError).count());
+        assertTrue(outcomes.stream().filter(Signal::isOnError).allMatch(signal -> signal.getThrowable() instanceof WebClientException));
+        assertEquals(2, simpsons.connections.get());
+        // The two that queued, and the refused one, show up in the acquire time
+        assertEquals(2, pendingTime("SUCCESS").count());
+        assertTrue(pendingTime("SUCCESS").max(TimeUnit.MILLISECONDS) >= 200);
+        assertEquals(1, pendingTime("ERROR").count());
+    }
+
+    private Timer pendingTime(String status) {
+        return globalRegistry.get("reactor.netty.connection.provider.pending.connections.time")
+                .tag("name", "simpsons").tag("status", status).timer();
+    }
+
+    private double poolGauge(String name, String pool) {
+        return globalRegistry.get("reactor.netty.connection.provider." + name).tag("name", pool).gauge().value();
+    }
+
+    private void createSources() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        simpsonsSource = new SimpsonsQuoteSource(WebClient.builder(), properties, meterRegistry);
+        ninjasSource = new NinjasQuoteSource("dummy-key", WebClient.builder(), properties, meterRegistry);
+    }
+}
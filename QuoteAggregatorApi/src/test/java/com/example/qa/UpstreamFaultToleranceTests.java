@@ -0,0 +1,311 @@
+package com.example.qa;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.repositories.QuoteJdbcRepository;
+import com.example.qa.repositories.QuoteRepository;
+import com.example.qa.repositories.VoteJdbcRepository;
+import com.example.qa.services.CircuitBreaker;
+import com.example.qa.services.NinjasQuoteSource;
+import com.example.qa.services.QuoteAggregatorService;
+import com.example.qa.services.QuoteReadModelService;
+import com.example.qa.services.QuoteSourceRegistry;
+import com.example.qa.services.SimpsonsQuoteSource;
+import com.example.qa.services.UpstreamUnavailableException;
+import com.example.qa.services.VoteWriteBehindBuffer;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Signal;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fault injection: the real sources run against local stub upstreams that hang or answer with
+ * 5xx, and the service has to time out, open the circuit, shed load and fall back to the quotes
+ * stored in the database.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({VoteJdbcRepository.class, QuoteJdbcRepository.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class UpstreamFaultToleranceTests {
+    private static final String SIMPSONS_QUOTE = """
+            [{"quote":"D'oh!","character":"Homer Simpson","image":"","characterDirection":"Right"}]""";
+    private static final String NINJAS_QUOTE = """
+            [{"quote":"Be yourself; everyone else is already taken.","author":"Oscar Wilde","category":"inspirational"}]""";
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @Autowired
+    private QuoteJdbcRepository quoteJdbcRepository;
+
+    @Autowired
+    private VoteJdbcRepository voteJdbcRepository;
+
+    private StubUpstream simpsons;
+    private StubUpstream ninjas;
+    private QuoteAggregatorProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private QuoteReadModelService readModels;
+
+    @BeforeEach
+    public void setUp() {
+        simpsons = new StubUpstream(SIMPSONS_QUOTE);
+        ninjas = new StubUpstream(NINJAS_QUOTE);
+        properties = new QuoteAggregatorProperties();
+        properties.getSources().getSimpsons().setBaseUrl(simpsons.baseUrl());
+        properties.getSources().getNinjas().setBaseUrl(ninjas.baseUrl());
+        properties.getSources().getSimpsons().setTimeout(Duration.ofMillis(300));
+        properties.getSources().getSimpsons().setFailureThreshold(3);
+        properties.getSources().getSimpsons().setOpenFor(Duration.ofMillis(500));
+        properties.getSources().setHedgeEnabled(false);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        simpsons.dispose();
+        ninjas.dispose();
+        quoteRepository.deleteAll();
+    }
+
+    @Test
+    public void testHungUpstreamTimesOutAndServesStoredQuote() {
+        Quote stored = store("Woo-hoo!", "simpsons");
+        QuoteAggregatorService service = service();
+        simpsons.hanging = true;
+
+        long start = System.nanoTime();
+        StepVerifier.create(service.getSimpsonsQuote())
+                .expectNextMatches(quote -> quote.orElseThrow().getId().equals(stored.getId()))
+                .verifyComplete();
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(2)) < 0);
+        assertEquals(1.0, fallbacks("simpsons", "timeout"));
+        assertEquals(1.0, errors("timeout"));
+        assertEquals(1, requests("timeout").count());
+        assertTrue(requests("timeout").totalTime(TimeUnit.MILLISECONDS) >= 300);
+    }
+
+    @Test
+    public void testHungUpstreamWithNothingStoredFailsWithTimeout() {
+        QuoteAggregatorService service = service();
+        simpsons.hanging = true;
+
+        StepVerifier.create(service.getSimpsonsQuote())
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    public void testServerErrorsOpenCircuitAndStopCallingUpstream() {
+        Quote stored = store("Woo-hoo!", "simpsons");
+        store("Be yourself.", "ninjas");
+        QuoteAggregatorService service = service();
+        simpsons.failWith = 503;
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(service.getSimpsonsQuote())
+                    .expectNextMatches(quote -> quote.orElseThrow().getId().equals(stored.getId()))
+                    .verifyComplete();
+        }
+        assertEquals(3.0, fallbacks("simpsons", "error"));
+        assertEquals(1.0, circuitGauge());
+        assertEquals(1.0, transitions("open"));
+
+        // While open, the stub is never reached and only Simpsons quotes are served from the table
+        for (int i = 0; i < 5; i++) {
+            StepVerifier.create(service.getSimpsonsQuote())
+                    .expectNextMatches(quote -> "simpsons".equals(quote.orElseThrow().getSource()))
+                    .verifyComplete();
+        }
+        assertEquals(3, simpsons.requests.get());
+        assertEquals(5.0, fallbacks("simpsons", "unavailable"));
+        // Rejected calls are timed but are not upstream errors
+        assertEquals(3.0, errors("status"));
+        assertEquals(3, requests("error").count());
+        assertEquals(5, requests("rejected").count());
+    }
+
+    @Test
+    public void testOfflineModeServesStoredQuotesWithoutCallingUpstreams() {
+        store("Woo-hoo!", "simpsons", "Homer Simpson");
+        Quote flanders = store("Okily dokily!", "simpsons", "Ned Flanders");
+        Quote ninja = store("Be yourself.", "ninjas", null);
+        properties.getCorpus().setOffline(true);
+        QuoteAggregatorService service = service();
+
+        StepVerifier.create(service.getNinjasQuote())
+                .expectNextMatches(quote -> quote.orElseThrow().getId().equals(ninja.getId()))
+                .verifyComplete();
+        StepVerifier.create(service.getFilteredSimpsonsQuote("flanders"))
+                .expectNextMatches(quote -> quote.orElseThrow().getId().equals(flanders.getId()))
+                .verifyComplete();
+        StepVerifier.create(service.getFilteredSimpsonsQuote("Moe"))
+                .expectErrorMessage("No quotes found for character: Moe")
+                .verify(Duration.ofSeconds(5));
+
+        // Quotes stored through another instance show up after the next resync
+        Quote later = store("Ay caramba!", "simpsons", "Bart Simpson");
+        readModels.resyncCorpus();
+        StepVerifier.create(service.getFilteredSimpsonsQuote("Bart"))
+                .expectNextMatches(quote -> quote.orElseThrow().getId().equals(later.getId()))
+                .verifyComplete();
+
+        assertEquals(0, simpsons.requests.get() + ninjas.requests.get());
+    }
+
+    @Test
+    public void testHalfOpenProbeClosesCircuitOnceUpstreamRecovers() throws InterruptedException {
+        QuoteSourceRegistry registry = registry();
+        simpsons.failWith = 500;
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(registry.fetchQuote("simpsons")).expectError().verify(Duration.ofSeconds(5));
+        }
+        CircuitBreaker circuit = registry.get("simpsons").guard().circuitBreaker();
+        assertEquals(CircuitBreaker.State.OPEN, circuit.state());
+
+        Thread.sleep(600);
+        simpsons.failWith = 0;
+        StepVerifier.create(registry.fetchQuote("simpsons"))
+                .expectNextMatches(quote -> "D'oh!".equals(quote.getQuoteText()))
+                .verifyComplete();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuit.state());
+        assertEquals(1.0, transitions("half_open"));
+        assertEquals(1.0, transitions("closed"));
+    }
+
+    @Test
+    public void testFailedProbeOpensCircuitAgain() throws InterruptedException {
+        QuoteSourceRegistry registry = registry();
+        simpsons.failWith = 502;
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(registry.fetchQuote("simpsons")).expectError().verify(Duration.ofSeconds(5));
+        }
+
+        Thread.sleep(600);
+        StepVerifier.create(registry.fetchQuote("simpsons")).expectError().verify(Duration.ofSeconds(5));
+        StepVerifier.create(registry.fetchQuote("simpsons"))
+                .expectError(UpstreamUnavailableException.class)
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(CircuitBreaker.State.OPEN, registry.get("simpsons").guard().circuitBreaker().state());
+        assertEquals(4, simpsons.requests.get());
+        assertEquals(2.0, transitions("open"));
+    }
+
+    @Test
+    public void testBulkheadRejectsCallsBeyondTheLimit() {
+        properties.getSources().getSimpsons().setMaxConcurrentCalls(2);
+        properties.getSources().getSimpsons().setTimeout(Duration.ofSeconds(1));
+        properties.getSources().getSimpsons().setFailureThreshold(100);
+        QuoteSourceRegistry registry = registry();
+        simpsons.hanging = true;
+
+        // Two calls take the slots and time out against the hung stub; the other three are shed at once
+        List<Class<?>> errors = Flux.range(0, 5)
+                .flatMap(i -> registry.fetchQuote("simpsons").materialize(), 5)
+                .filter(Signal::isOnError)
+                .<Class<?>>map(signal -> signal.getThrowable().getClass())
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(3, errors.stream().filter(UpstreamUnavailableException.class::equals).count());
+        assertEquals(2, errors.stream().filter(TimeoutException.class::equals).count());
+        assertEquals(2, simpsons.requests.get());
+        assertEquals(0, registry.get("simpsons").guard().inFlight());
+    }
+
+    @Test
+    public void testRateGovernorKeepsNinjasCallsWithinBudgetAtTenTimesTheRate() {
+        store("Be yourself.", "ninjas");
+        properties.getSources().getNinjas().setRatePerSecond(20);
+        properties.getSources().getNinjas().setRateBurst(5);
+        QuoteAggregatorService service = service();
+
+        // 200 calls a second for a second: ten times the allowed rate, every one answered
+        long start = System.nanoTime();
+        List<Quote> served = Flux.interval(Duration.ofMillis(5)).take(200)
+                .flatMap(i -> service.getNinjasQuote())
+                .map(Optional::orElseThrow)
+                .collectList()
+                .block(Duration.ofSeconds(10));
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        int upstreamCalls = ninjas.requests.get();
+        assertEquals(200, served.size());
+        assertTrue(upstreamCalls <= 5 + Math.ceil(20 * seconds), upstreamCalls + " calls in " + seconds + " s");
+        assertTrue(upstreamCalls >= 5, "the burst should go out: " + upstreamCalls);
+        assertEquals(200.0 - upstreamCalls, fallbacks("ninjas", "throttled"));
+        assertEquals(upstreamCalls, meterRegistry.get("quotes.source.rate.tokens").tag("source", "ninjas").counter().count());
+        assertEquals(200.0 - upstreamCalls, meterRegistry.get("quotes.source.rate.throttled").tag("source", "ninjas").counter().count());
+        assertEquals(200 - upstreamCalls, meterRegistry.get("quotes.source.requests").tag("source", "ninjas").tag("outcome", "throttled")
+                .timer().count());
+    }
+
+    private Quote store(String text, String source) {
+        return store(text, source, null);
+    }
+
+    private Quote store(String text, String source, String character) {
+        return quoteRepository.save(Quote.builder().quoteText(text).source(source).character(character).votes(0)
+                .contentHash(Quote.contentHash(text)).build());
+    }
+
+    private double fallbacks(String source, String reason) {
+        return meterRegistry.get("quotes.source.fallbacks").tag("source", source).tag("reason", reason).counter().count();
+    }
+
+    private double errors(String reason) {
+        return meterRegistry.get("quotes.source.errors").tag("source", "simpsons").tag("reason", reason).counter().count();
+    }
+
+    private Timer requests(String outcome) {
+        return meterRegistry.get("quotes.source.requests").tag("source", "simpsons").tag("outcome", outcome).timer();
+    }
+
+    private double circuitGauge() {
+        return meterRegistry.get("quotes.source.circuit.state").tag("source", "simpsons").gauge().value();
+    }
+
+    private double transitions(String state) {
+        return meterRegistry.get("quotes.source.circuit.transitions").tag("source", "simpsons").tag("state", state)
+                .counter().count();
+    }
+
+    private QuoteSourceRegistry registry() {
+        return new QuoteSourceRegistry(List.of(
+                new SimpsonsQuoteSource(WebClient.builder(), properties, meterRegistry),
+                new NinjasQuoteSource("dummy-key", WebClient.builder(), properties, meterRegistry)), properties, meterRegistry);
+    }
+
+    private QuoteAggregatorService service() {
+        VoteWriteBehindBuffer buffer = new VoteWriteBehindBuffer(voteJdbcRepository, properties, meterRegistry);
+        readModels = new QuoteReadModelService(quoteRepository, quoteJdbcRepository, buffer, properties, meterRegistry);
+        readModels.resyncCorpus();
+        return new QuoteAggregatorService(registry(), quoteJdbcRepository, readModels, properties, meterRegistry);
+    }
+}
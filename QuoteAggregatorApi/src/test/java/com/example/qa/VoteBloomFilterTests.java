@@ -0,0 +1,83 @@
+package com.example.qa;
+
+import com.example.qa.services.VoteBloomFilter;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VoteBloomFilterTests {
+
+    @Test
+    public void testConcurrentAddsAreNeverLost() {
+        VoteBloomFilter filter = new VoteBloomFilter(100_000, 0.01);
+
+        Flux.range(0, 8)
+                .parallel(8)
+                .runOn(Schedulers.parallel())
+                .doOnNext(thread -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        filter.add(i, "user" + thread + "@example.com");
+                    }
+                })
+                .sequential()
+                .blockLast();
+
+        // A few new pairs find all their bits set already and go uncounted
+        assertTrue(filter.size() > 79_500 && filter.size() <= 80_000, "size " + filter.size());
+        for (int thread = 0; thread < 8; thread++) {
+            for (int i = 0; i < 10_000; i++) {
+                assertTrue(filter.mightContain(i, "user" + thread + "@example.com"));
+            }
+        }
+    }
+
+    @Test
+    public void testRepeatsDoNotCountTowardsTheSize() {
+        VoteBloomFilter filter = new VoteBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 1_000; i++) {
+            filter.add(i, "user@example.com");
+        }
+        long size = filter.size();
+
+        // As when a vote is added on accept and read again by the next resync
+        for (int i = 0; i < 1_000; i++) {
+            filter.add(i, "user@example.com");
+        }
+
+        assertEquals(size, filter.size());
+        assertTrue(size > 990, "size " + size);
+    }
+
+    @Test
+    public void testFalsePositiveRateAtCapacityMatchesTheTarget() {
+        VoteBloomFilter filter = new VoteBloomFilter(200_000, 0.01);
+        for (int i = 0; i < 200_000; i++) {
+            filter.add(i % 5_000, "user" + i / 5_000 + "@example.com");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 200_000; i++) {
+            if (filter.mightContain(i % 5_000, "other" + i / 5_000 + "@example.com")) {
+                falsePositives++;
+            }
+        }
+
+        // 2,000 expected, with a standard deviation of about 45
+        assertTrue(Math.abs(falsePositives - 2_000) < 300, "false positives " + falsePositives);
+        assertEquals(0.01, filter.falsePositiveRate(), 0.002);
+        assertEquals(7, filter.hashFunctions());
+    }
+
+    @Test
+    public void testSizedFromExpectedVotes() {
+        VoteBloomFilter filter = new VoteBloomFilter(10_000_000, 0.01);
+
+        // -n ln p / (ln 2)^2 bits, rounded up to whole words
+        assertEquals(11_981_328, filter.memoryBytes());
+        assertEquals(7, filter.hashFunctions());
+        assertEquals(0.0, filter.falsePositiveRate());
+    }
+}
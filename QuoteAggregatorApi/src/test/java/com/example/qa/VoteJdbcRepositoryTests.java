@@ -0,0 +1,129 @@
+package com.example.qa;
+
+import com.example.qa.entities.Quote;
+import com.example.qa.repositories.QuoteRepository;
+import com.example.qa.repositories.VoteJdbcRepository;
+import com.example.qa.repositories.VoteJdbcRepository.NewVote;
+import com.example.qa.repositories.VoteJdbcRepository.VoteOutcome;
+import com.example.qa.repositories.VoteRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import(VoteJdbcRepository.class)
+// Votes must commit for concurrent transactions to contend on the same row
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class VoteJdbcRepositoryTests {
+
+    @Autowired
+    private VoteJdbcRepository voteJdbcRepository;
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @AfterEach
+    public void tearDown() {
+        voteRepository.deleteAll();
+        quoteRepository.deleteAll();
+    }
+
+    @Test
+    public void testCastVoteReturnsUpdatedQuote() {
+        Quote quote = quoteRepository.save(Quote.builder().quoteText("D'oh!").character("Homer").source("simpsons").votes(4).build());
+
+        Optional<Quote> voted = voteJdbcRepository.castVote(quote.getId(), "test@example.com");
+
+        assertTrue(voted.isPresent());
+        assertEquals(quote.getId(), voted.get().getId());
+        assertEquals("D'oh!", voted.get().getQuoteText());
+        assertEquals("Homer", voted.get().getCharacter());
+        assertEquals(5, voted.get().getVotes());
+    }
+
+    @Test
+    public void testCastVoteRejectsRepeatVoteAndUnknownQuote() {
+        Quote quote = quoteRepository.save(Quote.builder().quoteText("D'oh!").source("simpsons").votes(0).build());
+
+        assertTrue(voteJdbcRepository.castVote(quote.getId(), "test@example.com").isPresent());
+        assertFalse(voteJdbcRepository.castVote(quote.getId(), "test@example.com").isPresent());
+        assertFalse(voteJdbcRepository.castVote(quote.getId() + 1000, "test@example.com").isPresent());
+
+        assertTrue(voteJdbcRepository.quoteExists(quote.getId()));
+        assertFalse(voteJdbcRepository.quoteExists(quote.getId() + 1000));
+        assertEquals(1, quoteRepository.findById(quote.getId()).orElseThrow().getVotes());
+        assertEquals(1, voteRepository.count());
+    }
+
+    @Test
+    public void testCastVotesReportsEachVoteAndAddsAcceptedOnesOnce() {
+        Quote doh = quoteRepository.save(Quote.builder().quoteText("D'oh!").source("simpsons").votes(2).build());
+        Quote woohoo = quoteRepository.save(Quote.builder().quoteText("Woo-hoo!").source("simpsons").votes(0).build());
+        voteJdbcRepository.castVote(doh.getId(), "a@example.com");
+
+        List<VoteOutcome> outcomes = voteJdbcRepository.castVotes(List.of(
+                new NewVote(doh.getId(), "a@example.com"),
+                new NewVote(doh.getId(), "b@example.com"),
+                new NewVote(woohoo.getId(), "a@example.com"),
+                new NewVote(doh.getId(), "b@example.com"),
+                new NewVote(woohoo.getId() + 1000, "a@example.com"),
+                new NewVote(woohoo.getId(), "c@example.com")));
+
+        assertEquals(List.of(VoteOutcome.ALREADY_VOTED, VoteOutcome.ACCEPTED, VoteOutcome.ACCEPTED,
+                VoteOutcome.ALREADY_VOTED, VoteOutcome.QUOTE_NOT_FOUND, VoteOutcome.ACCEPTED), outcomes);
+        assertEquals(4, quoteRepository.findById(doh.getId()).orElseThrow().getVotes());
+        assertEquals(2, quoteRepository.findById(woohoo.getId()).orElseThrow().getVotes());
+        assertEquals(4, voteRepository.count());
+        assertEquals(List.of(), voteJdbcRepository.castVotes(List.of()));
+    }
+
+    @Test
+    public void testParallelDistinctVotersAreAllCounted() throws Exception {
+        Quote quote = quoteRepository.save(Quote.builder().quoteText("D'oh!").source("simpsons").votes(0).build());
+        int voters = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<Quote>>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < voters; i++) {
+                String userId = "user" + i + "@example.com";
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return voteJdbcRepository.castVote(quote.getId(), userId);
+                }));
+            }
+            start.countDown();
+            for (Future<Optional<Quote>> result : results) {
+                assertTrue(result.get().isPresent());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(voters, quoteRepository.findById(quote.getId()).orElseThrow().getVotes());
+        assertEquals(voters, voteRepository.count());
+    }
+}
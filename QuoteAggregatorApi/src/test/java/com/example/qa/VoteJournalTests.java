@@ -0,0 +1,121 @@
+package com.example.qa;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.services.VoteJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VoteJournalTests {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testReplayCountsVotesAcrossSegmentsAndRestarts() {
+        try (VoteJournal journal = journal(4)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append(1 + i % 3, "user" + i + "@example.com", 1_000L + i);
+            }
+            journal.commit();
+        }
+
+        try (VoteJournal reopened = journal(4)) {
+            assertEquals(10, reopened.sequence());
+            reopened.append(3, "late@example.com", 2_000L);
+
+            VoteJournal.Replay replay = reopened.counts();
+            assertEquals(Map.of(1L, 4L, 2L, 3L, 3L, 4L), replay.counts());
+            assertEquals(11, replay.sequence());
+            assertEquals(11, replay.events());
+        }
+        assertEquals(3, files("votes-").size());
+    }
+
+    @Test
+    public void testSnapshotBoundsTheReplayAndDropsCoveredSegments() {
+        try (VoteJournal journal = journal(4)) {
+            journal.seed(Map.of(7L, 100L));
+            for (int i = 0; i < 9; i++) {
+                journal.append(7, "user" + i + "@example.com", 1_000L + i);
+            }
+
+            assertEquals(9, journal.snapshot());
+            journal.append(8, "after@example.com", 2_000L);
+            VoteJournal.Replay replay = journal.counts();
+
+            assertEquals(Map.of(7L, 109L, 8L, 1L), replay.counts());
+            // Only the vote appended after the snapshot is read
+            assertEquals(1, replay.events());
+            assertEquals(List.of("votes-00000000000000000008.journal"), files("votes-"));
+            assertEquals(List.of("snapshot-00000000000000000009.counts"), files("snapshot-"));
+        }
+
+        try (VoteJournal reopened = journal(4)) {
+            assertEquals(10, reopened.sequence());
+            assertEquals(Map.of(7L, 109L, 8L, 1L), reopened.counts().counts());
+        }
+    }
+
+    @Test
+    public void testTornRecordEndsTheJournalAndIsOverwritten() throws IOException {
+        try (VoteJournal journal = journal(8)) {
+            for (int i = 0; i < 4; i++) {
+                journal.append(5, "user" + i + "@example.com", 1_000L + i);
+            }
+        }
+        // A crash halfway through the third record: its quote id made it to disk, the rest did not
+        try (FileChannel segment = FileChannel.open(directory.resolve("votes-00000000000000000000.journal"), StandardOpenOption.WRITE)) {
+            segment.write(ByteBuffer.wrap(new byte[]{9}), 2 * 32L);
+        }
+
+        try (VoteJournal reopened = journal(8)) {
+            assertEquals(2, reopened.sequence());
+            reopened.append(6, "after@example.com", 2_000L);
+            assertEquals(Map.of(5L, 2L, 6L, 1L), reopened.counts().counts());
+        }
+        // The fourth record, intact but written after the torn one, does not come back either
+        try (VoteJournal reopened = journal(8)) {
+            assertEquals(3, reopened.sequence());
+        }
+    }
+
+    @Test
+    public void testOnlyAnEmptyJournalCanBeSeeded() {
+        try (VoteJournal journal = journal(4)) {
+            journal.append(1, "user@example.com", 1_000L);
+
+            assertThrows(IllegalStateException.class, () -> journal.seed(Map.of(1L, 5L)));
+            assertTrue(journal.diskBytes() > 0);
+        }
+    }
+
+    private VoteJournal journal(int segmentRecords) {
+        QuoteAggregatorProperties.Journal config = new QuoteAggregatorProperties.Journal();
+        config.setDirectory(directory.toString());
+        config.setSegmentRecords(segmentRecords);
+        return new VoteJournal(config, new SimpleMeterRegistry());
+    }
+
+    private List<String> files(String prefix) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).filter(name -> name.startsWith(prefix)).sorted().toList();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
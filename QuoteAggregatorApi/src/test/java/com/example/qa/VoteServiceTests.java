@@ -0,0 +1,201 @@
+package com.example.qa;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.repositories.QuoteJdbcRepository;
+import com.example.qa.repositories.QuoteRepository;
+import com.example.qa.repositories.VoteJdbcRepository;
+import com.example.qa.services.QuoteReadModelService;
+import com.example.qa.services.VoteService;
+import com.example.qa.services.VoteWriteBehindBuffer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class VoteServiceTests {
+
+    @Test
+    public void testVoteForQuote() {
+        QuoteRepository quoteRepository = Mockito.mock(QuoteRepository.class);
+        VoteJdbcRepository voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
+
+        Quote votedQuote = new Quote();
+        votedQuote.setId(1L);
+        votedQuote.setQuoteText("Test quote");
+        votedQuote.setVotes(6);
+
+        when(voteJdbcRepository.castVote(1L, "test@example.com")).thenReturn(Optional.of(votedQuote));
+
+        VoteService service = service(quoteRepository, Mockito.mock(QuoteJdbcRepository.class), voteJdbcRepository,
+                disabledWriteBehind(voteJdbcRepository), new QuoteAggregatorProperties(), new SimpleMeterRegistry());
+
+        StepVerifier.create(service.voteForQuote(1L, "test@example.com"))
+                .expectNextMatches(quote -> quote.getVotes() == 6)
+                .verifyComplete();
+        Mockito.verify(voteJdbcRepository, Mockito.never()).quoteExists(anyLong());
+        Mockito.verifyNoInteractions(quoteRepository);
+    }
+
+    @Test
+    public void testVoteForQuote_AlreadyVoted() {
+        QuoteRepository quoteRepository = Mockito.mock(QuoteRepository.class);
+        VoteJdbcRepository voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
+
+        when(voteJdbcRepository.castVote(1L, "test@example.com")).thenReturn(Optional.empty());
+        when(voteJdbcRepository.quoteExists(1L)).thenReturn(true);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        VoteService service = service(quoteRepository, Mockito.mock(QuoteJdbcRepository.class), voteJdbcRepository,
+                disabledWriteBehind(voteJdbcRepository), new QuoteAggregatorProperties(), meterRegistry);
+
+        StepVerifier.create(service.voteForQuote(1L, "test@example.com"))
+                .expectErrorMessage("User has already voted for this quote.")
+                .verify();
+        assertEquals(1, meterRegistry.get("quotes.votes.conflicts").counter().count());
+    }
+
+    @Test
+    public void testVoteForQuote_QuoteNotFound() {
+        QuoteRepository quoteRepository = Mockito.mock(QuoteRepository.class);
+        VoteJdbcRepository voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
+
+        when(voteJdbcRepository.castVote(42L, "test@example.com")).thenReturn(Optional.empty());
+        when(voteJdbcRepository.quoteExists(42L)).thenReturn(false);
+
+        VoteService service = service(quoteRepository, Mockito.mock(QuoteJdbcRepository.class), voteJdbcRepository,
+                disabledWriteBehind(voteJdbcRepository), new QuoteAggregatorProperties(), new SimpleMeterRegistry());
+
+        StepVerifier.create(service.voteForQuote(42L, "test@example.com"))
+                .expectErrorMessage("Quote not found with id: 42")
+                .verify();
+    }
+
+    @Test
+    public void testQueuedVoteSkipsDuplicateCheckUnlessTheVoteFilterMayHaveSeenIt() {
+        QuoteRepository quoteRepository = Mockito.mock(QuoteRepository.class);
+        VoteJdbcRepository voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
+        Quote quote = Quote.builder().id(1L).quoteText("Test quote").votes(3).build();
+        when(quoteRepository.findById(1L)).thenAnswer(invocation -> Optional.of(quote.toBuilder().build()));
+        when(voteJdbcRepository.countVotes()).thenReturn(1L);
+        // One vote already stored
+        when(voteJdbcRepository.forEachVoteAfter(Mockito.eq(0L), any())).thenAnswer(invocation -> {
+            invocation.<Consumer<VoteJdbcRepository.NewVote>>getArgument(1).accept(new VoteJdbcRepository.NewVote(1L, "old@example.com"));
+            return 7L;
+        });
+        when(voteJdbcRepository.hasVoted(1L, "old@example.com")).thenReturn(true);
+
+        QuoteAggregatorProperties properties = new QuoteAggregatorProperties();
+        properties.getWriteBehind().setEnabled(true);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        VoteService service = service(quoteRepository, Mockito.mock(QuoteJdbcRepository.class), voteJdbcRepository,
+                new VoteWriteBehindBuffer(voteJdbcRepository, properties, meterRegistry), properties, meterRegistry);
+        service.loadVoteFilter();
+
+        StepVerifier.create(service.voteForQuote(1L, "new@example.com"))
+                .expectNextMatches(voted -> voted.getVotes() == 4)
+                .verifyComplete();
+        StepVerifier.create(service.voteForQuote(1L, "old@example.com"))
+                .expectErrorMessage("User has already voted for this quote.")
+                .verify();
+
+        Mockito.verify(voteJdbcRepository, Mockito.never()).hasVoted(1L, "new@example.com");
+        Mockito.verify(voteJdbcRepository).hasVoted(1L, "old@example.com");
+        assertEquals(1, meterRegistry.get("quotes.votes.filter.checks").tag("answer", "absent").counter().count());
+        assertEquals(1, meterRegistry.get("quotes.votes.filter.checks").tag("answer", "maybe").counter().count());
+    }
+
+    @Test
+    public void testVoteFilterIsNotLoadedWithoutWriteBehind() {
+        VoteJdbcRepository voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
+        QuoteAggregatorProperties properties = new QuoteAggregatorProperties();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        VoteService service = service(Mockito.mock(QuoteRepository.class), Mockito.mock(QuoteJdbcRepository.class), voteJdbcRepository,
+                new VoteWriteBehindBuffer(voteJdbcRepository, properties, meterRegistry), properties, meterRegistry);
+        service.loadVoteFilter();
+        service.resyncVoteFilter();
+
+        Mockito.verify(voteJdbcRepository, Mockito.never()).countVotes();
+        Mockito.verify(voteJdbcRepository, Mockito.never()).forEachVoteAfter(Mockito.anyLong(), any());
+        assertEquals(0, meterRegistry.get("quotes.votes.filter.memory").gauge().value());
+    }
+
+    @Test
+    public void testRebuildSetsCountersFromTheJournalReplay(@TempDir Path journalDirectory) {
+        QuoteRepository quoteRepository = Mockito.mock(QuoteRepository.class);
+        QuoteJdbcRepository quoteJdbcRepository = Mockito.mock(QuoteJdbcRepository.class);
+        VoteJdbcRepository voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
+        when(voteJdbcRepository.castVote(anyLong(), anyString()))
+                .thenAnswer(invocation -> Optional.of(Quote.builder().id(invocation.getArgument(0)).quoteText("Test quote").votes(1).build()));
+        // Quote 1 drifted up, quote 3 has a counter but no journaled vote
+        when(quoteJdbcRepository.resetVotes(Map.of(1L, 2L, 2L, 1L))).thenReturn(List.of(1L, 3L));
+        when(quoteJdbcRepository.findAllById(List.of(1L, 3L))).thenReturn(List.of(
+                Quote.builder().id(1L).quoteText("Test quote").contentHash("1").votes(2).build(),
+                Quote.builder().id(3L).quoteText("Other quote").contentHash("3").votes(0).build()));
+        when(quoteRepository.findByOrderByVotesDescIdAsc(any())).thenReturn(List.of());
+
+        QuoteAggregatorProperties properties = new QuoteAggregatorProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setDirectory(journalDirectory.toString());
+        properties.getJournal().setSegmentRecords(16);
+        VoteService service = service(quoteRepository, quoteJdbcRepository, voteJdbcRepository,
+                disabledWriteBehind(voteJdbcRepository), properties, new SimpleMeterRegistry());
+        try {
+            service.voteForQuote(1L, "a@example.com").block();
+            service.voteForQuote(1L, "b@example.com").block();
+            service.voteForQuote(2L, "a@example.com").block();
+
+            StepVerifier.create(service.rebuildVoteCounts())
+                    .expectNextMatches(rebuild -> rebuild.sequence() == 3 && rebuild.replayed() == 3
+                            && rebuild.quotes() == 2 && rebuild.corrected() == 2)
+                    .verifyComplete();
+        } finally {
+            service.closeVoteJournal();
+        }
+        // The rebuild never aggregates the votes table
+        Mockito.verify(voteJdbcRepository, Mockito.never()).countVotesByQuote();
+    }
+
+    @Test
+    public void testRebuildNeedsTheJournal() {
+        VoteJdbcRepository voteJdbcRepository = Mockito.mock(VoteJdbcRepository.class);
+        QuoteJdbcRepository quoteJdbcRepository = Mockito.mock(QuoteJdbcRepository.class);
+
+        VoteService service = service(Mockito.mock(QuoteRepository.class), quoteJdbcRepository, voteJdbcRepository,
+                disabledWriteBehind(voteJdbcRepository), new QuoteAggregatorProperties(), new SimpleMeterRegistry());
+
+        StepVerifier.create(service.rebuildVoteCounts())
+                .expectErrorMessage("Vote journal is disabled")
+                .verify();
+        Mockito.verifyNoInteractions(quoteJdbcRepository);
+    }
+
+    private static VoteService service(QuoteRepository quoteRepository, QuoteJdbcRepository quoteJdbcRepository,
+                                       VoteJdbcRepository voteJdbcRepository, VoteWriteBehindBuffer voteWriteBehind,
+                                       QuoteAggregatorProperties properties, MeterRegistry meterRegistry) {
+        QuoteReadModelService readModels = new QuoteReadModelService(quoteRepository, quoteJdbcRepository, voteWriteBehind, properties,
+                meterRegistry);
+        return new VoteService(quoteRepository, quoteJdbcRepository, voteJdbcRepository, voteWriteBehind, readModels, properties, meterRegistry);
+    }
+
+    private static VoteWriteBehindBuffer disabledWriteBehind(VoteJdbcRepository voteJdbcRepository) {
+        return new VoteWriteBehindBuffer(voteJdbcRepository, new QuoteAggregatorProperties(), new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.qa;
+
+import com.example.qa.config.QuoteAggregatorProperties;
+import com.example.qa.entities.Quote;
+import com.example.qa.repositories.QuoteRepository;
+import com.example.qa.repositories.VoteJdbcRepository;
+import com.example.qa.repositories.VoteJdbcRepository.NewVote;
+import com.example.qa.repositories.VoteRepository;
+import com.example.qa.services.VoteQueueFullException;
+import com.example.qa.services.VoteWriteBehindBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import(VoteJdbcRepository.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class VoteWriteBehindBufferTests {
+
+    @Autowired
+    private VoteJdbcRepository voteJdbcRepository;
+
+    @Autowired
+    private QuoteRepository quoteRepository;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @AfterEach
+    public void tearDown() {
+        voteRepository.deleteAll();
+        quoteRepository.deleteAll();
+    }
+
+    @Test
+    public void testPendingVotesAreVisibleUntilFlushedInBatches() throws Exception {
+        Quote hot = quoteRepository.save(Quote.builder().quoteText("D'oh!").source("simpsons").votes(10).build());
+        Quote cold = quoteRepository.save(Quote.builder().quoteText("Woo-hoo!").source("simpsons").votes(0).build());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        // Large batch size and no scheduler, so nothing is written until flush() is called
+        VoteWriteBehindBuffer buffer = new VoteWriteBehindBuffer(voteJdbcRepository, writeBehind(10_000, 5_000), meterRegistry);
+
+        int voters = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < voters; i++) {
+                String userId = "user" + i + "@example.com";
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return buffer.accept(hot.getId(), userId);
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertTrue(buffer.accept(cold.getId(), "user0@example.com"));
+        assertFalse(buffer.accept(hot.getId(), "user0@example.com"));
+        assertTrue(buffer.isPending(hot.getId(), "user0@example.com"));
+
+        assertEquals(voters, buffer.pendingVotes(hot.getId()));
+        assertEquals(List.of(hot.getId(), cold.getId()), buffer.quotesWithPendingVotes().stream().sorted().toList());
+        assertEquals(10, quoteRepository.findById(hot.getId()).orElseThrow().getVotes());
+
+        buffer.flush();
+
+        assertEquals(10 + voters, quoteRepository.findById(hot.getId()).orElseThrow().getVotes());
+        assertEquals(1, quoteRepository.findById(cold.getId()).orElseThrow().getVotes());
+        assertEquals(voters + 1, voteRepository.count());
+        assertEquals(0, buffer.pendingVotes(hot.getId()));
+        assertTrue(buffer.quotesWithPendingVotes().isEmpty());
+        assertFalse(buffer.isPending(hot.getId(), "user0@example.com"));
+        assertEquals(1, meterRegistry.get("quotes.votes.flush.batch.size").summary().count());
+        assertEquals(voters + 1, meterRegistry.get("quotes.votes.flush.batch.size").summary().totalAmount());
+        assertEquals(1, meterRegistry.get("quotes.votes.flush").timer().count());
+    }
+
+    @Test
+    public void testReachingBatchSizeTriggersFlush() throws Exception {
+        Quote quote = quoteRepository.save(Quote.builder().quoteText("D'oh!").source("simpsons").votes(0).build());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        VoteWriteBehindBuffer buffer = new VoteWriteBehindBuffer(voteJdbcRepository, writeBehind(1000, 10), meterRegistry);
+
+        for (int i = 0; i < 25; i++) {
+            buffer.accept(quote.getId(), "user" + i + "@example.com");
+        }
+
+        // Without the scheduled flush, only full batches are written
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> {
+            int stored = quoteRepository.findById(quote.getId()).orElseThrow().getVotes();
+            return stored >= 20 && stored + buffer.pendingVotes(quote.getId()) == 25;
+        });
+        assertTrue(meterRegistry.get("quotes.votes.flush.batch.size").summary().max() <= 10);
+    }
+
+    @Test
+    public void testRejectedVotesDropOutOfPendingCounts() throws Exception {
+        Quote quote = quoteRepository.save(Quote.builder().quoteText("D'oh!").source("simpsons").votes(0).build());
+        VoteWriteBehindBuffer buffer = new VoteWriteBehindBuffer(voteJdbcRepository, writeBehind(100, 100), new SimpleMeterRegistry());
+        voteJdbcRepository.castVote(quote.getId(), "early@example.com");
+
+        buffer.accept(quote.getId(), "early@example.com");
+        buffer.accept(quote.getId() + 1000, "lost@example.com");
+        buffer.accept(quote.getId(), "new@example.com");
+        buffer.flushOnShutdown();
+
+        assertEquals(2, quoteRepository.findById(quote.getId()).orElseThrow().getVotes());
+        assertEquals(2, voteRepository.count());
+        assertEquals(0, buffer.pendingVotes(quote.getId()));
+        assertEquals(0, buffer.pendingVotes(quote.getId() + 1000));
+        assertTrue(buffer.quotesWithPendingVotes().isEmpty());
+    }
+
+    @Test
+    public void testFullQueueRejectsVotesAfterTimeout() throws Exception {
+        Quote quote = quoteRepository.save(Quote.builder().quoteText("D'oh!").source("simpsons").votes(0).build());
+        VoteWriteBehindBuffer buffer = new VoteWriteBehindBuffer(voteJdbcRepository, writeBehind(2, 100), new SimpleMeterRegistry());
+
+        assertTrue(buffer.accept(quote.getId(), "first@example.com"));
+        assertTrue(buffer.accept(quote.getId(), "second@example.com"));
+        VoteQueueFullException rejected = assertThrows(VoteQueueFullException.class, () -> buffer.accept(quote.getId(), "third@example.com"));
+
+        assertEquals("Too many pending votes, please try again later.", rejected.getMessage());
+        assertEquals(Duration.ofMillis(200), rejected.getRetryAfter());
+        assertEquals(2, buffer.pendingVotes(quote.getId()));
+        assertFalse(buffer.isPending(quote.getId(), "third@example.com"));
+
+        buffer.flush();
+        assertTrue(buffer.accept(quote.getId(), "third@example.com"));
+    }
+
+    @Test
+    public void testReadsDuringAFlushNeverCountAVoteTwice() throws Exception {
+        // Stands in for the quote's stored counter
+        AtomicInteger stored = new AtomicInteger(10);
+        CountDownLatch committed = new CountDownLatch(1);
+        VoteJdbcRepository repository = Mockito.mock(VoteJdbcRepository.class);
+        when(repository.applyVoteBatch(anyList())).thenAnswer(invocation -> {
+            List<NewVote> batch = List.copyOf(invocation.getArgument(0));
+            stored.addAndGet(batch.size());
+            committed.countDown();
+            // Keeps the window between the commit and the pending counts catching up open
+            Thread.sleep(200);
+            return batch;
+        });
+        VoteWriteBehindBuffer buffer = new VoteWriteBehindBuffer(repository, writeBehind(100, 100), new SimpleMeterRegistry());
+        for (int i = 0; i < 5; i++) {
+            buffer.accept(1L, "user" + i + "@example.com");
+        }
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> flushing = executor.submit(buffer::flush);
+            assertTrue(committed.await(5, TimeUnit.SECONDS));
+
+            assertEquals(15, buffer.readCounted(() -> stored.get() + buffer.pendingVotes(1L)));
+            flushing.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(15, buffer.readCounted(() -> stored.get() + buffer.pendingVotes(1L)));
+    }
+
+    private static QuoteAggregatorProperties writeBehind(int queueCapacity, int flushBatchSize) {
+        QuoteAggregatorProperties properties = new QuoteAggregatorProperties();
+        properties.getWriteBehind().setEnabled(true);
+        properties.getWriteBehind().setQueueCapacity(queueCapacity);
+        properties.getWriteBehind().setFlushBatchSize(flushBatchSize);
+        properties.getWriteBehind().setEnqueueTimeout(Duration.ofMillis(10));
+        return properties;
+    }
+}
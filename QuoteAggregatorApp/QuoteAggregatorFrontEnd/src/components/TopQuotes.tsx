@@ -1,9 +1,30 @@
 // src/components/TopQuotes.tsx
 import React, { useEffect, useState } from 'react';
-import { Quote } from '../types';
-import { fetchTopQuotes, voteForQuote } from '../services/api';
+import { LeaderboardChange, Quote } from '../types';
+import { fetchTopQuotes, subscribeToTopQuotes, voteForQuote } from '../services/api';
 import { QuoteCard } from './QuoteCard';
 
+// Reconnect backoff and the polling interval while the stream is down
+const RETRY_MIN_MS = 1000;
+const RETRY_MAX_MS = 30000;
+const POLL_INTERVAL_MS = 10000;
+
+// Same order as the server: votes descending, then oldest quote first
+const byRank = (a: Quote, b: Quote) => b.votes - a.votes || a.id - b.id;
+
+const applyChanges = (quotes: Quote[], changes: LeaderboardChange[], limit: number): Quote[] => {
+    const byId = new Map(quotes.map(q => [q.id, q]));
+    for (const change of changes) {
+        const current = change.quote ?? byId.get(change.id);
+        if (change.rank == null || change.rank > limit || !current) {
+            byId.delete(change.id);
+        } else {
+            byId.set(change.id, { ...current, votes: change.votes });
+        }
+    }
+    return [...byId.values()].sort(byRank).slice(0, limit);
+};
+
 export const TopQuotes: React.FC = () => {
     const [topQuotes, setTopQuotes] = useState<Quote[]>([]);
     const [loading, setLoading] = useState(true);
@@ -30,19 +51,66 @@ export const TopQuotes: React.FC = () => {
             // Update the quote in our list
             setTopQuotes(quotes => quotes.map(q =>
                 q.id === updatedQuote.id ? updatedQuote : q
-            ).sort((a, b) => b.votes - a.votes)); // Re-sort after vote
+            ).sort(byRank)); // Re-sort after vote
         } catch (err) {
             console.error('Error voting for quote:', err);
         }
     };
 
     useEffect(() => {
-        loadTopQuotes();
+        // The stream sends the current top on connect and pushes vote changes instead of us polling
+        let stream: EventSource | null = null;
+        let retryDelay = RETRY_MIN_MS;
+        let retryTimer: number | undefined;
+        let pollTimer: number | undefined;
+
+        const stopPolling = () => {
+            window.clearInterval(pollTimer);
+            pollTimer = undefined;
+        };
+
+        // Only while the stream is down
+        const startPolling = () => {
+            if (pollTimer === undefined) {
+                loadTopQuotes();
+                pollTimer = window.setInterval(loadTopQuotes, POLL_INTERVAL_MS);
+            }
+        };
+
+        const connect = () => {
+            const source = subscribeToTopQuotes(
+                limit,
+                quotes => {
+                    setTopQuotes(quotes);
+                    setError('');
+                    setLoading(false);
+                },
+                changes => setTopQuotes(quotes => applyChanges(quotes, changes, limit))
+            );
+            source.onopen = () => {
+                retryDelay = RETRY_MIN_MS;
+                stopPolling();
+            };
+            source.onerror = () => {
+                startPolling();
+                // EventSource retries a dropped connection by itself, but gives up once the server
+                // answers with an error; then we open a new one, backing off between attempts
+                if (source.readyState === EventSource.CLOSED) {
+                    source.close();
+                    retryTimer = window.setTimeout(connect, retryDelay);
+                    retryDelay = Math.min(retryDelay * 2, RETRY_MAX_MS);
+                }
+            };
+            stream = source;
+        };
 
-        // Optionally refresh the top quotes periodically
-        const interval = setInterval(loadTopQuotes, 30000); // Refresh every 30 seconds
-        return () => clearInterval(interval);
-    }, [limit]); // Re-fetch when limit changes
+        connect();
+        return () => {
+            window.clearTimeout(retryTimer);
+            stopPolling();
+            stream?.close();
+        };
+    }, [limit]); // Re-subscribe when limit changes
 
     if (loading && topQuotes.length === 0) {
         return <div className="text-center p-4">Loading top quotes...</div>;
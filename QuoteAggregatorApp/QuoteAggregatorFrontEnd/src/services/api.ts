@@ -1,5 +1,5 @@
 import keycloak from '../keycloak';
-import { Quote } from '../types';
+import { LeaderboardChange, Quote } from '../types';
 
 const API_BASE_URL = 'http://localhost:8080';
 
@@ -47,12 +47,38 @@ export const voteForQuote = async (id: number, userEmail: string): Promise<Quote
   return await response.json();
 };
 
+// Last top quotes per limit with their ETag; an unchanged ranking then comes back as an empty 304
+const topQuotesCache = new Map<number, { eTag: string; quotes: Quote[] }>();
+
 export const fetchTopQuotes = async (limit: number = 10): Promise<Quote[]> => {
-  const response = await fetch(`${API_BASE_URL}/quotes/top?limit=${limit}`);
+  const cached = topQuotesCache.get(limit);
+  const response = await fetch(`${API_BASE_URL}/quotes/top?limit=${limit}`, {
+    headers: cached ? { 'If-None-Match': cached.eTag } : {}
+  });
+  if (response.status === 304 && cached) {
+    return cached.quotes;
+  }
   if (!response.ok) {
     throw new Error('Failed to fetch top quotes');
   }
-  return await response.json();
+  const quotes: Quote[] = await response.json();
+  const eTag = response.headers.get('ETag');
+  if (eTag) {
+    topQuotesCache.set(limit, { eTag, quotes });
+  }
+  return quotes;
+};
+
+// Live leaderboard: the current top on connect, then coalesced vote-count changes
+export const subscribeToTopQuotes = (
+  limit: number,
+  onSnapshot: (quotes: Quote[]) => void,
+  onDelta: (changes: LeaderboardChange[]) => void
+): EventSource => {
+  const source = new EventSource(`${API_BASE_URL}/quotes/top/stream?limit=${limit}`);
+  source.addEventListener('snapshot', event => onSnapshot(JSON.parse((event as MessageEvent).data)));
+  source.addEventListener('delta', event => onDelta(JSON.parse((event as MessageEvent).data)));
+  return source;
 };
 
 export const fetchQuoteSources = async (): Promise<Quote[]> => {
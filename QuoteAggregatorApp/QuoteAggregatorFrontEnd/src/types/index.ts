@@ -8,4 +8,13 @@ export interface Quote {
     category?: string;
     votes: number;
     source: string;
-  }
\ No newline at end of file
+  }
+
+  // One entry of a /quotes/top/stream "delta" event; ranks are 1-based, null when the quote left the top
+  export interface LeaderboardChange {
+    id: number;
+    votes: number;
+    rank?: number;
+    previousRank?: number;
+    quote?: Quote;
+  }